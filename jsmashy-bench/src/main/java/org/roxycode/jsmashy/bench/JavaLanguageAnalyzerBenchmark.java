@@ -0,0 +1,54 @@
+package org.roxycode.jsmashy.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.roxycode.jsmashy.languages.AnalysisResult;
+import org.roxycode.jsmashy.languages.FastJavaLanguageAnalyzer;
+import org.roxycode.jsmashy.languages.JavaLanguageAnalyzer;
+
+/**
+ * Parsing and skeletonizing of generated Java classes of different sizes, with the parser and with the lexer only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JavaLanguageAnalyzerBenchmark {
+
+    /**
+     * Number of methods: about 1 KB, 8 KB and 150 KB of source.
+     */
+    @Param({"2", "20", "400"})
+    public int methods;
+
+    private final JavaLanguageAnalyzer analyzer = new JavaLanguageAnalyzer();
+    private final FastJavaLanguageAnalyzer fastAnalyzer = new FastJavaLanguageAnalyzer();
+    private String source;
+
+    @Setup
+    public void setUp() {
+        source = new SyntheticRepoGenerator(42).javaSource(methods);
+    }
+
+    @Benchmark
+    public AnalysisResult analyze() {
+        return analyzer.analyze(source);
+    }
+
+    @Benchmark
+    public AnalysisResult analyzeLexerOnly() {
+        return fastAnalyzer.analyze(source);
+    }
+}
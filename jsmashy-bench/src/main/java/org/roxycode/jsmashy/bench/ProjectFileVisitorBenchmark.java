@@ -0,0 +1,68 @@
+package org.roxycode.jsmashy.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.roxycode.jsmashy.core.ContentMode;
+import org.roxycode.jsmashy.core.ProjectFile;
+import org.roxycode.jsmashy.core.ProjectFileVisitor;
+
+/**
+ * Traversal of a synthetic repository of 2000 files with one .gitignore per directory level,
+ * measuring ignore evaluation and file reading without analysis.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProjectFileVisitorBenchmark {
+
+    @Param({"1", "8", "32"})
+    public int depth;
+
+    private Path root;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("jsmashy-bench");
+        new SyntheticRepoGenerator(42).writeRepository(root, depth, 2000, 10);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<ProjectFile> traverse() throws IOException {
+        List<ProjectFile> files = new ArrayList<>();
+        ProjectFileVisitor visitor = new ProjectFileVisitor(root, files);
+        visitor.setContentMode(ContentMode.LAZY);
+        Files.walkFileTree(root, visitor);
+        return files;
+    }
+}
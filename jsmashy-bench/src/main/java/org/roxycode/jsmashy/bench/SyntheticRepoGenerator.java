@@ -0,0 +1,153 @@
+package org.roxycode.jsmashy.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.roxycode.jsmashy.core.ProjectFile;
+
+/**
+ * Generates reproducible synthetic repositories and sources for the benchmarks.
+ * The same seed always produces the same files, so results of different runs are comparable.
+ */
+public class SyntheticRepoGenerator {
+    private static final String[] WORDS = {
+            "alpha", "beta", "gamma", "delta", "index", "cache", "token", "parser", "visitor", "format",
+            "stream", "buffer", "node", "tree", "scan", "value", "result", "config", "option", "entry"
+    };
+    private static final String[] IGNORE_RULES = {
+            "*.tmp", "*.bak", "/generated", "docs/**/*.pdf", "!keep.log", "*.class", "target/", "out/",
+            "node_modules/", ".idea", "*.iml", "src/**/Test*.java", "[Bb]in/", "?.swp", "/local.properties"
+    };
+
+    private final Random random;
+
+    public SyntheticRepoGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Writes a repository whose files are spread over a chain of nested directories, each with its own
+     * .gitignore, so entries at the bottom are checked against {@code depth + 1} ignore files.
+     * Every directory also contains an ignored {@code build} directory and ignored log files.
+     * @param root the directory to write to; created if missing.
+     * @param depth the number of nested directories below the root.
+     * @param fileCount the number of files to distribute over the directories.
+     * @param rulesPerIgnoreFile the number of rules in each .gitignore besides the fixed ones.
+     * @throws IOException if writing fails.
+     */
+    public void writeRepository(Path root, int depth, int fileCount, int rulesPerIgnoreFile) throws IOException {
+        List<Path> dirs = new ArrayList<>();
+        Path dir = root;
+        for (int level = 0; level <= depth; level++) {
+            Files.createDirectories(dir);
+            dirs.add(dir);
+            writeIgnoreFile(dir, rulesPerIgnoreFile);
+            Path build = Files.createDirectories(dir.resolve("build"));
+            Files.writeString(build.resolve("output.txt"), sentence(20));
+            dir = dir.resolve("level" + (level + 1));
+        }
+        for (int i = 0; i < fileCount; i++) {
+            Path target = dirs.get(i % dirs.size());
+            switch (i % 4) {
+                case 0, 1 -> Files.writeString(target.resolve("Type" + i + ".java"), javaSource(3));
+                case 2 -> Files.writeString(target.resolve("notes" + i + ".md"), sentence(60));
+                default -> Files.writeString(target.resolve("debug" + i + ".log"), sentence(30));
+            }
+        }
+    }
+
+    private void writeIgnoreFile(Path dir, int rules) throws IOException {
+        StringBuilder content = new StringBuilder("build/\n*.log\n");
+        for (int i = 0; i < rules; i++) {
+            content.append(IGNORE_RULES[random.nextInt(IGNORE_RULES.length)]).append('\n');
+        }
+        Files.writeString(dir.resolve(".gitignore"), content.toString());
+    }
+
+    /**
+     * Generates a syntactically valid Java class.
+     * @param methods the number of methods; the source grows linearly with it.
+     * @return the source code.
+     */
+    public String javaSource(int methods) {
+        String className = capitalize(word()) + capitalize(word()) + random.nextInt(1000);
+        StringBuilder sb = new StringBuilder();
+        sb.append("package org.example.").append(word()).append(";\n\n");
+        sb.append("import java.util.ArrayList;\nimport java.util.List;\nimport java.util.Map;\n\n");
+        sb.append("/**\n * ").append(sentence(12)).append("\n */\n");
+        sb.append("public class ").append(className).append(" {\n");
+        sb.append("    private final List<String> items = new ArrayList<>();\n");
+        sb.append("    private int count;\n\n");
+        sb.append("    public ").append(className).append("(int count) {\n        this.count = count;\n    }\n");
+        for (int m = 0; m < methods; m++) {
+            String name = word() + capitalize(word()) + m;
+            sb.append("\n    /**\n     * ").append(sentence(8)).append("\n     */\n");
+            sb.append("    public String ").append(name).append("(Map<String, Integer> values, int limit) {\n");
+            sb.append("        StringBuilder result = new StringBuilder();\n");
+            sb.append("        for (int i = 0; i < limit; i++) {\n");
+            sb.append("            if (values.containsKey(\"").append(word()).append("\" + i)) {\n");
+            sb.append("                result.append(values.get(\"").append(word()).append("\")).append(',');\n");
+            sb.append("            } else {\n");
+            sb.append("                items.add(String.valueOf(i * count));\n");
+            sb.append("            }\n");
+            sb.append("        }\n");
+            sb.append("        items.removeIf(s -> s.length() > ").append(random.nextInt(20)).append(");\n");
+            sb.append("        return result.toString();\n");
+            sb.append("    }\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Generates in-memory project files spread over a directory hierarchy.
+     * @param count the number of files.
+     * @return the files, in generation order.
+     */
+    public List<ProjectFile> projectFiles(int count) {
+        List<ProjectFile> files = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String dir = "src/" + WORDS[i % WORDS.length] + "/" + WORDS[(i / WORDS.length) % WORDS.length] + "/" + (i / 400);
+            files.add(new ProjectFile(dir + "/File" + i + ".java", sentence(40)));
+        }
+        return files;
+    }
+
+    private String sentence(int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(word());
+        }
+        return sb.toString();
+    }
+
+    private String word() {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    /**
+     * Writes a synthetic repository for manual experiments.
+     * Usage: {@code SyntheticRepoGenerator <dir> [depth] [files] [seed]}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: SyntheticRepoGenerator <dir> [depth] [files] [seed]");
+            System.exit(1);
+        }
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int files = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        new SyntheticRepoGenerator(seed).writeRepository(Paths.get(args[0]), depth, files, 5);
+    }
+}
@@ -0,0 +1,62 @@
+package org.roxycode.jsmashy.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.roxycode.jsmashy.core.ProjectFile;
+import org.roxycode.jsmashy.core.SmashWriter;
+import org.roxycode.jsmashy.formatters.XmlSmashFormatter;
+
+/**
+ * Formatting of synthetic file lists into the XML document, streamed to a discarding writer.
+ * Run with {@code -prof gc} to see the allocation per document in {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class XmlSmashFormatterBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int fileCount;
+
+    private final XmlSmashFormatter formatter = new XmlSmashFormatter();
+    private List<ProjectFile> files;
+    private List<ProjectFile> sortedFiles;
+
+    @Setup
+    public void setUp() {
+        files = new SyntheticRepoGenerator(42).projectFiles(fileCount);
+        sortedFiles = new ArrayList<>(files);
+        sortedFiles.sort(ProjectFile.TREE_ORDER);
+    }
+
+    @Benchmark
+    public void format() throws IOException {
+        formatter.format(files, Writer.nullWriter());
+    }
+
+    @Benchmark
+    public void stream() throws IOException {
+        SmashWriter writer = formatter.open(Writer.nullWriter());
+        for (ProjectFile file : sortedFiles) {
+            writer.write(file);
+        }
+        writer.finish();
+    }
+}
@@ -0,0 +1,57 @@
+#!/bin/bash
+# Compares the wall time of one jsmashy-cli run on the JIT, with the AppCDS archive and as a native image.
+# Build the variants first:
+#   mvn package -pl jsmashy-lib,jsmashy-cli -am -Pcds          (target/jsmashy.jar and target/jsmashy.jsa)
+#   mvn package -pl jsmashy-lib,jsmashy-cli -am -Pnative       (target/jsmashy, needs GraalVM)
+# Variants that were not built are skipped.
+
+set -e
+
+if [ "$#" -lt 1 ]; then
+    echo "Usage: ./jsmashy-bench/startup-bench.sh <input-dir> [runs] [-- jsmashy options]"
+    exit 1
+fi
+
+INPUT=$1
+RUNS=${2:-10}
+shift $(( $# < 2 ? $# : 2 ))
+[ "$1" = "--" ] && shift
+OPTIONS="$*"
+
+TARGET=$(cd "$(dirname "$0")/../jsmashy-cli/target" && pwd)
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+OUTPUT=$(mktemp)
+trap 'rm -f "$OUTPUT"' EXIT
+
+# Prints the median wall time of the command in milliseconds
+measure() {
+    local times=()
+    for _ in $(seq "$RUNS"); do
+        local start=$(date +%s%N)
+        "$@" $OPTIONS "$INPUT" "$OUTPUT" > /dev/null 2>&1
+        times+=($(( ($(date +%s%N) - start) / 1000000 )))
+    done
+    printf '%s\n' "${times[@]}" | sort -n | awk '{ t[NR] = $1 } END { print t[int((NR + 1) / 2)] }'
+}
+
+report() {
+    printf '%-8s %8s ms\n' "$1" "$2"
+}
+
+if [ ! -f "$TARGET/jsmashy.jar" ]; then
+    echo "Missing $TARGET/jsmashy.jar; run mvn package -pl jsmashy-lib,jsmashy-cli -am first"
+    exit 1
+fi
+
+echo "Median of $RUNS runs on $INPUT"
+report jit "$(measure "$JAVA" -jar "$TARGET/jsmashy.jar")"
+if [ -f "$TARGET/jsmashy.jsa" ]; then
+    report cds "$(measure "$JAVA" -XX:SharedArchiveFile="$TARGET/jsmashy.jsa" -jar "$TARGET/jsmashy.jar")"
+else
+    echo "cds      skipped, build with -Pcds"
+fi
+if [ -x "$TARGET/jsmashy" ]; then
+    report native "$(measure "$TARGET/jsmashy")"
+else
+    echo "native   skipped, build with -Pnative"
+fi
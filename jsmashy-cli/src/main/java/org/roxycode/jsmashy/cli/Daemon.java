@@ -0,0 +1,150 @@
+package org.roxycode.jsmashy.cli;
+
+import org.roxycode.jsmashy.core.ScanManifest;
+import org.roxycode.jsmashy.languages.LanguageAnalyzer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A long-lived scan server listening on a Unix domain socket, so repeated scans skip JVM startup.
+ * <p>
+ * Analyzers are created once per configuration and stay warm, along with the DFA caches ANTLR
+ * builds while parsing. The manifest of each scanned root is kept in memory, so a repeated scan
+ * only reads and analyzes the files changed since the previous one. Each connection is served on
+ * its own virtual thread.
+ */
+class Daemon {
+    private static final Logger logger = LoggerFactory.getLogger(Daemon.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path socket;
+    private final Map<String, LanguageAnalyzer> analyzers = new ConcurrentHashMap<>();
+    private final Map<Path, ScanManifest> manifests = new ConcurrentHashMap<>();
+    private volatile ServerSocketChannel server;
+
+    Daemon(Path socket) {
+        this.socket = socket.toAbsolutePath();
+    }
+
+    /**
+     * Serves requests until a client asks the daemon to stop.
+     * @throws IOException if another daemon is listening on the socket, or it cannot be bound.
+     */
+    void run() throws IOException {
+        if (socket.getParent() != null) {
+            Files.createDirectories(socket.getParent());
+        }
+        if (Files.exists(socket)) {
+            if (DaemonClient.isListening(socket)) {
+                throw new IOException("A daemon is already listening on " + socket);
+            }
+            // Left behind by a daemon that did not shut down cleanly
+            Files.delete(socket);
+        }
+        try (ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.bind(UnixDomainSocketAddress.of(socket));
+            server = channel;
+            logger.info("Listening on {}", socket);
+            while (channel.isOpen()) {
+                SocketChannel connection;
+                try {
+                    connection = channel.accept();
+                } catch (AsynchronousCloseException e) {
+                    break;
+                }
+                Thread.ofVirtual().name("jsmashy-daemon").start(() -> serve(connection));
+            }
+        } finally {
+            Files.deleteIfExists(socket);
+        }
+        logger.info("Daemon stopped");
+    }
+
+    private void serve(SocketChannel connection) {
+        try (connection) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(connection)));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(connection), BUFFER_SIZE));
+            byte kind = in.readByte();
+            if (kind == DaemonProtocol.STOP) {
+                logger.info("Stop requested");
+                out.writeBoolean(true);
+                out.flush();
+                server.close();
+                return;
+            }
+            if (kind != DaemonProtocol.SCAN) {
+                throw new IOException("Unknown request: " + kind);
+            }
+            Path workingDir = Paths.get(in.readUTF());
+            int count = in.readInt();
+            List<String> args = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                args.add(in.readUTF());
+            }
+            scan(workingDir, args, out);
+        } catch (EOFException e) {
+            // A client checking whether the daemon is up
+            logger.debug("Connection closed without a request");
+        } catch (IOException e) {
+            logger.warn("Request failed: {}", e.getMessage());
+        }
+    }
+
+    private void scan(Path workingDir, List<String> args, DataOutputStream out) throws IOException {
+        long startTime = System.currentTimeMillis();
+        DaemonProtocol.ChunkOutputStream chunks = new DaemonProtocol.ChunkOutputStream(out);
+        int files;
+        String report;
+        try {
+            ScanCommand command = ScanCommand.parse(args, workingDir);
+            command.getOptions().setManifests(manifests);
+            LanguageAnalyzer analyzer = analyzers.computeIfAbsent(command.analyzerKey(), key -> command.createAnalyzer());
+            Writer writer = new BufferedWriter(new OutputStreamWriter(chunks, StandardCharsets.UTF_8), BUFFER_SIZE);
+            files = command.run(analyzer, writer);
+            report = command.statsReport();
+            // Ends the document
+            writer.close();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Scan failed: {}", e.getMessage(), e);
+            // Whatever was sent of the document is discarded by the client
+            chunks.close();
+            out.writeBoolean(false);
+            out.writeUTF(String.valueOf(e.getMessage()));
+            out.flush();
+            return;
+        }
+        out.writeBoolean(true);
+        out.writeInt(files);
+        // The client logs the report; the daemon's log is not where the user looks
+        out.writeBoolean(report != null);
+        if (report != null) {
+            DaemonProtocol.writeString(out, report);
+        }
+        out.flush();
+        logger.info("Served {} files in {} ms", files, System.currentTimeMillis() - startTime);
+    }
+}
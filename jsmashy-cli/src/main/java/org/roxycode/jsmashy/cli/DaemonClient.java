@@ -0,0 +1,109 @@
+package org.roxycode.jsmashy.cli;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.SocketException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Sends requests to a {@link Daemon} and receives its responses.
+ */
+final class DaemonClient {
+    private static final Logger logger = LoggerFactory.getLogger(DaemonClient.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private DaemonClient() {
+    }
+
+    /**
+     * Has the daemon run a scan and writes the document it streams back to the command's output file.
+     * @param socket the daemon's socket.
+     * @param workingDir the directory relative paths in the arguments are resolved against.
+     * @param args the arguments the command was parsed from.
+     * @param command the parsed command, naming the output file.
+     * @return the number of files, or of changes for a delta.
+     * @throws IOException if no daemon is listening, the scan fails or the output cannot be written.
+     */
+    static int scan(Path socket, Path workingDir, List<String> args, ScanCommand command) throws IOException {
+        try (SocketChannel channel = connect(socket)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeByte(DaemonProtocol.SCAN);
+            out.writeUTF(workingDir.toString());
+            out.writeInt(args.size());
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (OutputStream file = Files.newOutputStream(command.getOutputFile())) {
+                for (int length = in.readInt(); length > 0; length = in.readInt()) {
+                    while (length > 0) {
+                        int read = in.read(buffer, 0, Math.min(length, buffer.length));
+                        if (read < 0) {
+                            throw new IOException("Daemon closed the connection mid-document");
+                        }
+                        file.write(buffer, 0, read);
+                        length -= read;
+                    }
+                }
+            }
+            if (!in.readBoolean()) {
+                Files.deleteIfExists(command.getOutputFile());
+                throw new IOException("Daemon scan failed: " + in.readUTF());
+            }
+            int count = in.readInt();
+            if (in.readBoolean()) {
+                logger.info("Scan statistics:\n{}", DaemonProtocol.readString(in));
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Asks the daemon to stop once the scans in progress are done.
+     * @param socket the daemon's socket.
+     * @throws IOException if no daemon is listening.
+     */
+    static void stop(Path socket) throws IOException {
+        try (SocketChannel channel = connect(socket)) {
+            DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+            out.writeByte(DaemonProtocol.STOP);
+            out.flush();
+            new DataInputStream(Channels.newInputStream(channel)).readBoolean();
+        }
+    }
+
+    /**
+     * @return true if a daemon accepts connections on the socket.
+     */
+    static boolean isListening(Path socket) {
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(socket)).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static SocketChannel connect(Path socket) throws IOException {
+        try {
+            return SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        } catch (SocketException e) {
+            throw new IOException("No daemon is listening on " + socket + "; start one with --daemon", e);
+        }
+    }
+}
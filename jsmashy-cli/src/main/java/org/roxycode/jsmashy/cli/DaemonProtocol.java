@@ -0,0 +1,88 @@
+package org.roxycode.jsmashy.cli;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The messages exchanged between {@link DaemonClient} and {@link Daemon} over a Unix domain socket.
+ * <p>
+ * A request is a kind byte; a scan request follows it with the client's working directory and its
+ * arguments. The response to a scan is the document in length-prefixed chunks, ended by an empty
+ * chunk, then whether the scan succeeded and either the number of files and the optional stats
+ * report, or the error message.
+ */
+final class DaemonProtocol {
+    static final byte SCAN = 1;
+    static final byte STOP = 2;
+
+    private DaemonProtocol() {
+    }
+
+    /**
+     * Writes a string of any length as length-prefixed UTF-8; writeUTF is limited to 64KB.
+     */
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the socket used when none is given, {@code ~/.jsmashy/daemon.sock}.
+     */
+    static Path defaultSocket() {
+        return Paths.get(System.getProperty("user.home"), ".jsmashy", "daemon.sock");
+    }
+
+    /**
+     * Writes everything written to it as chunks; {@link #close()} writes the empty chunk ending the
+     * document but leaves the underlying stream open for the status that follows.
+     */
+    static final class ChunkOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private boolean closed;
+
+        ChunkOutputStream(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > 0) {
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            out.writeInt(0);
+            out.flush();
+        }
+    }
+}
@@ -1,46 +1,71 @@
 package org.roxycode.jsmashy.cli;
 
-import org.roxycode.jsmashy.core.ProjectFile;
-import org.roxycode.jsmashy.core.RepositoryScanner;
-import org.roxycode.jsmashy.formatters.XmlSmashFormatter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Writer;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
 
 public class Main {
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
 
-    public static void main(String[] args) {
-        if (args.length < 2) {
-            logger.error("Usage: jsmashy <input-dir> <output-file>");
-            System.exit(1);
-        }
-
-        Path inputDir = Paths.get(args[0]);
-        Path outputFile = Paths.get(args[1]);
+    private static final String USAGE = "Usage: jsmashy [--parallelism <n>] [--manifest <file>] [--symbol-index <file>] [--no-skeleton-cache] [--git-index] [--revision <rev>] [--since <rev>] [--content-mode <memory|lazy|mapped>] [--max-file-size <bytes>] [--token-budget <tokens>] [--skeleton [<glob>=]<level>] [--short-body-lines <n>] [--fast] [--dedup] [--stats] [--connect] [--socket <file>] <input-dir> <output-file>\n"
+            + "       jsmashy --daemon|--stop-daemon [--socket <file>]";
 
-        if (!Files.exists(inputDir)) {
-            logger.error("Input directory does not exist: {}", inputDir);
+    public static void main(String[] args) {
+        List<String> scanArgs = new ArrayList<>();
+        Path socket = DaemonProtocol.defaultSocket();
+        String mode = null;
+        Path workingDir = Paths.get("").toAbsolutePath();
+        ScanCommand command = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--daemon", "--stop-daemon", "--connect" -> mode = args[i];
+                    case "--socket" -> socket = Paths.get(ScanCommand.requireValue(List.of(args), ++i));
+                    default -> scanArgs.add(args[i]);
+                }
+            }
+            if (mode == null || mode.equals("--connect")) {
+                command = ScanCommand.parse(scanArgs, workingDir);
+            }
+        } catch (IllegalArgumentException e) {
+            logger.error("{}\n{}", e.getMessage(), USAGE);
             System.exit(1);
         }
 
         try {
-            logger.info("Scanning directory: {}", inputDir);
-            RepositoryScanner scanner = new RepositoryScanner();
-            List<ProjectFile> files = scanner.scan(inputDir);
-
-            logger.info("Formatting output...");
-            XmlSmashFormatter formatter = new XmlSmashFormatter();
-            String xml = formatter.format(files);
-
-            logger.info("Writing to: {}", outputFile);
-            Files.writeString(outputFile, xml);
+            if ("--daemon".equals(mode)) {
+                new Daemon(socket).run();
+                return;
+            }
+            if ("--stop-daemon".equals(mode)) {
+                DaemonClient.stop(socket);
+                logger.info("Daemon on {} stopped", socket);
+                return;
+            }
 
-            logger.info("Done! Processed {} files.", files.size());
+            logger.info("Writing to: {}", command.getOutputFile());
+            int count;
+            if ("--connect".equals(mode)) {
+                count = DaemonClient.scan(socket, workingDir, scanArgs, command);
+            } else {
+                try (Writer writer = Files.newBufferedWriter(command.getOutputFile())) {
+                    count = command.run(command.createAnalyzer(), writer);
+                }
+                if (command.statsReport() != null) {
+                    logger.info("Scan statistics:\n{}", command.statsReport());
+                }
+            }
+            if (command.isDelta()) {
+                logger.info("Done! {} changed files.", count);
+            } else {
+                logger.info("Done! Processed {} files.", count);
+            }
         } catch (Exception e) {
             logger.error("Error: {}", e.getMessage(), e);
             System.exit(1);
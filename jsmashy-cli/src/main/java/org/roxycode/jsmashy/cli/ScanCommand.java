@@ -0,0 +1,194 @@
+package org.roxycode.jsmashy.cli;
+
+import org.roxycode.jsmashy.core.CodebaseDelta;
+import org.roxycode.jsmashy.core.ContentMode;
+import org.roxycode.jsmashy.core.RepositoryScanner;
+import org.roxycode.jsmashy.core.ScanOptions;
+import org.roxycode.jsmashy.core.ScanStats;
+import org.roxycode.jsmashy.core.SkeletonCache;
+import org.roxycode.jsmashy.formatters.XmlDeltaFormatter;
+import org.roxycode.jsmashy.formatters.XmlSmashFormatter;
+import org.roxycode.jsmashy.languages.FastJavaLanguageAnalyzer;
+import org.roxycode.jsmashy.languages.JavaLanguageAnalyzer;
+import org.roxycode.jsmashy.languages.LanguageAnalyzer;
+import org.roxycode.jsmashy.languages.SkeletonLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A scan requested on the command line, either run in this process or sent to a {@link Daemon}.
+ */
+class ScanCommand {
+    private static final Logger logger = LoggerFactory.getLogger(ScanCommand.class);
+
+    private final ScanOptions options = new ScanOptions();
+    private String revision;
+    private String since;
+    private int shortBodyLines = JavaLanguageAnalyzer.DEFAULT_SHORT_BODY_LINES;
+    private boolean fast;
+    private boolean dedup;
+    private Path inputDir;
+    private Path outputFile;
+
+    private ScanCommand() {
+        options.setSkeletonCache(SkeletonCache.getDefault());
+    }
+
+    /**
+     * @param args the scan options followed by the input directory and the output file.
+     * @param workingDir the directory relative paths are resolved against.
+     * @return the command.
+     * @throws IllegalArgumentException if an option is invalid or an argument is missing.
+     */
+    static ScanCommand parse(List<String> args, Path workingDir) {
+        ScanCommand command = new ScanCommand();
+        ScanOptions options = command.options;
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.size(); i++) {
+            switch (args.get(i)) {
+                case "-j", "--parallelism" -> options.setParallelism(Integer.parseInt(requireValue(args, ++i)));
+                case "--manifest" -> options.setManifestFile(workingDir.resolve(requireValue(args, ++i)));
+                case "--symbol-index" -> options.setSymbolIndexFile(workingDir.resolve(requireValue(args, ++i)));
+                case "--no-skeleton-cache" -> options.setSkeletonCache(null);
+                case "--git-index" -> options.setGitIndex(true);
+                case "--revision" -> command.revision = requireValue(args, ++i);
+                case "--since" -> command.since = requireValue(args, ++i);
+                case "--max-file-size" -> options.setMaxFileSize(parseSize(requireValue(args, ++i)));
+                case "--token-budget" -> options.setTokenBudget(Long.parseLong(requireValue(args, ++i)));
+                case "--skeleton" -> addSkeletonLevel(options, requireValue(args, ++i));
+                case "--short-body-lines" -> command.shortBodyLines = Integer.parseInt(requireValue(args, ++i));
+                case "--fast" -> command.fast = true;
+                case "--dedup" -> command.dedup = true;
+                case "--stats" -> options.setStats(new ScanStats());
+                case "--content-mode" -> options.setContentMode(ContentMode.valueOf(requireValue(args, ++i).toUpperCase()));
+                default -> positional.add(args.get(i));
+            }
+        }
+        if (positional.size() < 2) {
+            throw new IllegalArgumentException("Missing input directory or output file");
+        }
+        command.inputDir = workingDir.resolve(positional.get(0));
+        command.outputFile = workingDir.resolve(positional.get(1));
+        // The output is opened before the scan, so it may be walked while it is being written
+        options.addExcludedPath(command.outputFile);
+        return command;
+    }
+
+    ScanOptions getOptions() {
+        return options;
+    }
+
+    Path getInputDir() {
+        return inputDir;
+    }
+
+    Path getOutputFile() {
+        return outputFile;
+    }
+
+    /**
+     * @return true if the document is a delta, whose count is of changed files.
+     */
+    boolean isDelta() {
+        return since != null;
+    }
+
+    /**
+     * @return the report of the stats recorded by {@link #run}, or null if {@code --stats} was not given.
+     */
+    String statsReport() {
+        return options.getStats() != null ? options.getStats().report() : null;
+    }
+
+    /**
+     * Identifies the analyzer this command needs, so a daemon can reuse a warm instance.
+     */
+    String analyzerKey() {
+        return (fast ? "fast/" : "parser/") + shortBodyLines;
+    }
+
+    LanguageAnalyzer createAnalyzer() {
+        return fast ? new FastJavaLanguageAnalyzer(shortBodyLines) : new JavaLanguageAnalyzer(shortBodyLines);
+    }
+
+    /**
+     * Scans the input directory and writes the document.
+     * @param analyzer the Java analyzer, as created by {@link #createAnalyzer()}.
+     * @param writer the destination of the document.
+     * @return the number of files written.
+     * @throws IOException if the input directory does not exist, or the scan or writing fails.
+     */
+    int run(LanguageAnalyzer analyzer, Writer writer) throws IOException {
+        if (!Files.exists(inputDir)) {
+            throw new IOException("Input directory does not exist: " + inputDir);
+        }
+        logger.info("Scanning directory: {}", inputDir);
+        RepositoryScanner scanner = new RepositoryScanner(List.of(analyzer), options);
+        ScanStats stats = options.getStats();
+        int count;
+        if (since != null) {
+            CodebaseDelta delta = scanner.scanDelta(inputDir, since, revision != null ? revision : "HEAD");
+            long start = System.nanoTime();
+            long startCpu = ScanStats.cpuTime();
+            new XmlDeltaFormatter().format(delta, writer);
+            if (stats != null) {
+                stats.record(ScanStats.Phase.FORMAT, start, startCpu);
+            }
+            count = delta.getChanges().size();
+        } else {
+            XmlSmashFormatter formatter = new XmlSmashFormatter();
+            if (dedup) {
+                formatter.useDeduplication(XmlSmashFormatter.DEFAULT_MIN_DUPLICATE_CHARS);
+            }
+            formatter.useStats(stats);
+            count = scanner.scanAndFormat(inputDir, revision, formatter, writer);
+        }
+        return count;
+    }
+
+    /**
+     * Parses a skeleton level for the files matching a glob, or for all other files when there is no glob.
+     */
+    private static void addSkeletonLevel(ScanOptions options, String value) {
+        int separator = value.lastIndexOf('=');
+        SkeletonLevel level = SkeletonLevel.valueOf(value.substring(separator + 1).toUpperCase());
+        if (separator < 0) {
+            options.getSkeletonLevels().setDefaultLevel(level);
+        } else {
+            options.getSkeletonLevels().add(value.substring(0, separator), level);
+        }
+    }
+
+    /**
+     * Parses a byte count with an optional k, m or g suffix.
+     */
+    private static long parseSize(String value) {
+        String number = value.toLowerCase();
+        long unit = 1;
+        if (number.endsWith("k")) {
+            unit = 1024;
+        } else if (number.endsWith("m")) {
+            unit = 1024 * 1024;
+        } else if (number.endsWith("g")) {
+            unit = 1024 * 1024 * 1024;
+        }
+        if (unit > 1) {
+            number = number.substring(0, number.length() - 1);
+        }
+        return Long.parseLong(number) * unit;
+    }
+
+    static String requireValue(List<String> args, int index) {
+        if (index >= args.size()) {
+            throw new IllegalArgumentException("Missing value for option " + args.get(index - 1));
+        }
+        return args.get(index);
+    }
+}
@@ -0,0 +1,88 @@
+package org.roxycode.jsmashy.core;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Recognizes binary files cheaply, by extension or by the first bytes of their content,
+ * so they can be skipped without being read completely.
+ */
+public final class BinaryDetector {
+    /**
+     * Number of leading bytes inspected by {@link #looksBinary(byte[], int, boolean)} during a scan.
+     */
+    public static final int PREFIX_SIZE = 8192;
+
+    private static final Set<String> BINARY_EXTENSIONS = Set.of(
+            // Archives and packages
+            "jar", "war", "ear", "zip", "gz", "tgz", "bz2", "xz", "zst", "7z", "rar", "tar", "iso", "dmg", "deb", "rpm", "apk", "aar",
+            // Compiled code and native libraries
+            "class", "pyc", "pyo", "o", "obj", "a", "lib", "so", "dylib", "dll", "exe", "bin", "wasm", "dex",
+            // Images
+            "png", "jpg", "jpeg", "gif", "bmp", "ico", "icns", "webp", "tif", "tiff", "psd", "heic",
+            // Audio and video
+            "mp3", "wav", "ogg", "flac", "aac", "m4a", "mp4", "m4v", "mov", "avi", "mkv", "webm",
+            // Fonts
+            "ttf", "otf", "woff", "woff2", "eot",
+            // Documents and data
+            "pdf", "doc", "docx", "xls", "xlsx", "ppt", "pptx", "odt", "ods", "sqlite", "db", "parquet",
+            // Key stores
+            "jks", "keystore", "p12", "pfx"
+    );
+
+    private BinaryDetector() {
+    }
+
+    /**
+     * @param fileName the file name.
+     * @return true if the extension belongs to a well-known binary format.
+     */
+    public static boolean hasBinaryExtension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        if (dot < 0 || dot == fileName.length() - 1) {
+            return false;
+        }
+        return BINARY_EXTENSIONS.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Checks the start of a file for NUL bytes and malformed UTF-8.
+     * @param prefix the leading bytes of the file.
+     * @param length the number of valid bytes in {@code prefix}.
+     * @param complete whether {@code prefix} holds the whole file; if not, a multi-byte sequence cut off at the end is accepted.
+     * @return true if the content is not UTF-8 text.
+     */
+    public static boolean looksBinary(byte[] prefix, int length, boolean complete) {
+        int i = 0;
+        while (i < length) {
+            int b = prefix[i] & 0xFF;
+            if (b == 0) {
+                return true;
+            }
+            if (b < 0x80) {
+                i++;
+                continue;
+            }
+            int continuation;
+            if (b >= 0xC2 && b <= 0xDF) {
+                continuation = 1;
+            } else if (b >= 0xE0 && b <= 0xEF) {
+                continuation = 2;
+            } else if (b >= 0xF0 && b <= 0xF4) {
+                continuation = 3;
+            } else {
+                return true;
+            }
+            for (int k = 1; k <= continuation; k++) {
+                if (i + k >= length) {
+                    return complete;
+                }
+                if ((prefix[i + k] & 0xC0) != 0x80) {
+                    return true;
+                }
+            }
+            i += continuation + 1;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,50 @@
+package org.roxycode.jsmashy.core;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The files that were added, modified or deleted between two scans of a codebase, with the new
+ * skeleton or content of every file that is still present, see {@link RepositoryScanner#scanDelta}. Sending a delta refreshes a model's
+ * view of a codebase it has already seen without sending the whole codebase again.
+ */
+public final class CodebaseDelta {
+
+    public enum ChangeType {
+        ADDED,
+        MODIFIED,
+        DELETED
+    }
+
+    /**
+     * A changed file.
+     * @param type the kind of change.
+     * @param path the path relative to the scan root.
+     * @param file the new file, or null if it was deleted.
+     */
+    public record Change(ChangeType type, String path, ProjectFile file) {
+    }
+
+    private final List<Change> changes;
+
+    /**
+     * @param changes the changes, in any order.
+     */
+    public CodebaseDelta(List<Change> changes) {
+        List<Change> sorted = new ArrayList<>(changes);
+        sorted.sort(Comparator.comparing(Change::path, ProjectFile::comparePaths));
+        this.changes = List.copyOf(sorted);
+    }
+
+    /**
+     * @return the changes in {@link ProjectFile#TREE_ORDER} of their paths.
+     */
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+}
@@ -0,0 +1,24 @@
+package org.roxycode.jsmashy.core;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectInserter;
+
+/**
+ * Computes content hashes for scanned files.
+ * Hashes are git blob ids, so a file's hash equals the object id git stores for the same bytes.
+ */
+public final class ContentHash {
+
+    private ContentHash() {
+    }
+
+    /**
+     * @param content the raw file bytes.
+     * @return the hex encoded git blob id of the content.
+     */
+    public static String of(byte[] content) {
+        try (ObjectInserter.Formatter formatter = new ObjectInserter.Formatter()) {
+            return formatter.idFor(Constants.OBJ_BLOB, content).name();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.roxycode.jsmashy.core;
+
+/**
+ * How a scan keeps the content of files that are not reduced to a skeleton.
+ * Skeletons are always held in memory since they cannot be re-read from disk.
+ */
+public enum ContentMode {
+    /**
+     * The content is held in memory as UTF-8 bytes.
+     */
+    MEMORY,
+    /**
+     * Only the path is held; the file is read again when the content is formatted.
+     */
+    LAZY,
+    /**
+     * The file is memory-mapped, keeping its content off the Java heap.
+     */
+    MAPPED
+}
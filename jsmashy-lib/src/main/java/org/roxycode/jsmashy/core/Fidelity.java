@@ -0,0 +1,26 @@
+package org.roxycode.jsmashy.core;
+
+/**
+ * How much of a file a formatted codebase contains, from most to least.
+ */
+public enum Fidelity {
+    /**
+     * The complete file content, which a scan keeps for files no analyzer supports.
+     */
+    FULL,
+
+    /**
+     * The skeleton produced by the file's analyzer, at the level {@link SkeletonLevels} selects for it.
+     */
+    SKELETON,
+
+    /**
+     * Declarations only, without bodies or comments.
+     */
+    SIGNATURES,
+
+    /**
+     * The path alone; the file is listed without content.
+     */
+    PATH_ONLY
+}
@@ -0,0 +1,59 @@
+package org.roxycode.jsmashy.core;
+
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Orders files from most to least important for a {@link TokenBudgetPlanner}, which degrades the
+ * least important files first.
+ */
+public final class FilePriority {
+    private static final Set<String> TEST_DIRECTORIES = Set.of("test", "tests", "__tests__", "spec", "testdata", "fixtures");
+
+    /**
+     * Agent instructions before everything else, so AGENTS.md keeps its content as long as possible.
+     */
+    public static final Comparator<TokenBudgetPlanner.Candidate> AGENT_INSTRUCTIONS_FIRST =
+            Comparator.comparing(candidate -> !candidate.file().getPath().equalsIgnoreCase("AGENTS.md"));
+
+    /**
+     * Main code before tests and test data.
+     */
+    public static final Comparator<TokenBudgetPlanner.Candidate> MAIN_BEFORE_TEST =
+            Comparator.comparing(candidate -> isTest(candidate.file().getPath()));
+
+    /**
+     * Small files before large ones, so a few large files, often generated or data, are degraded before many small ones.
+     */
+    public static final Comparator<TokenBudgetPlanner.Candidate> SMALLER_FIRST =
+            Comparator.comparingLong(TokenBudgetPlanner.Candidate::tokens);
+
+    /**
+     * Agent instructions, then main code before tests, then smaller files first.
+     */
+    public static final Comparator<TokenBudgetPlanner.Candidate> DEFAULT =
+            AGENT_INSTRUCTIONS_FIRST.thenComparing(MAIN_BEFORE_TEST).thenComparing(SMALLER_FIRST);
+
+    private FilePriority() {
+    }
+
+    /**
+     * Recognizes tests by directory names such as {@code test} and by common test file name patterns.
+     * @param path the path relative to the project root.
+     * @return true if the path looks like a test or test data.
+     */
+    public static boolean isTest(String path) {
+        String[] segments = path.replace('\\', '/').split("/");
+        for (int i = 0; i < segments.length - 1; i++) {
+            if (TEST_DIRECTORIES.contains(segments[i].toLowerCase(Locale.ROOT))) {
+                return true;
+            }
+        }
+        String name = segments[segments.length - 1];
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return base.endsWith("Test") || base.endsWith("Tests") || base.endsWith("IT")
+                || base.startsWith("test_") || base.endsWith("_test") || base.endsWith(".test") || base.endsWith(".spec");
+    }
+}
@@ -0,0 +1,313 @@
+package org.roxycode.jsmashy.core;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.dircache.DirCacheIterator;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.CoreConfig;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.WorkingTreeIterator;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.OrTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Enumerates files through JGit instead of listing every directory, either from the index and
+ * work tree of a repository or from the tree of a revision.
+ * <p>
+ * In a work tree, untracked directories that git ignores, such as build output or
+ * {@code node_modules}, are never descended into. Files whose stat data matches their index entry
+ * are unchanged since they were staged, so their content hash is the blob id recorded in the
+ * index. Racily clean entries, modified within the timestamp resolution of the index, are verified
+ * by content as git does. The visitor receives the known hash and can reuse cached results
+ * without reading the file.
+ * <p>
+ * A revision is read from the object database alone, without touching the work tree. Blob ids
+ * are content hashes too, so skeletons already cached for a revision are never computed again.
+ * <p>
+ * Files are visited in {@link ProjectFile#TREE_ORDER}, and the visitor still applies its own
+ * ignore rules, so the result matches a file system walk apart from the pruned directories.
+ */
+final class GitWalker {
+    private static final Logger logger = LoggerFactory.getLogger(GitWalker.class);
+
+    /**
+     * A file to visit: known stat data and hash from the index, or the blob of a revision.
+     */
+    private record Entry(String path, long size, long lastModified, String blobId, ObjectId blob) {
+    }
+
+    private GitWalker() {
+    }
+
+    /**
+     * Visits the files of the work tree below {@code rootDir}.
+     * @param rootDir the absolute, normalized scan root.
+     * @param visitor the visitor receiving directories and files.
+     * @return false, without visiting anything, if the root is not inside a git work tree.
+     * @throws IOException if the index or the work tree cannot be read.
+     */
+    static boolean walkIndex(Path rootDir, ProjectFileVisitor visitor) throws IOException {
+        FileRepositoryBuilder builder = new FileRepositoryBuilder().findGitDir(rootDir.toFile());
+        if (builder.getGitDir() == null) {
+            logger.info("Not inside a git work tree, walking the file system: {}", rootDir);
+            return false;
+        }
+        List<Entry> entries;
+        try (Repository repository = builder.build()) {
+            if (repository.isBare()) {
+                logger.info("Repository has no work tree, walking the file system: {}", rootDir);
+                return false;
+            }
+            entries = listWorkTree(repository, prefix(repository, rootDir));
+        }
+        logger.debug("Git index lists {} candidate files below {}", entries.size(), rootDir);
+        visit(rootDir, entries, visitor, null);
+        return true;
+    }
+
+    /**
+     * Visits the files below {@code rootDir} as they are in a revision, reading them from the
+     * object database. Ignore files are taken from the revision too, but only those inside the
+     * scanned directory apply.
+     * @param rootDir the absolute, normalized scan root inside the work tree of a repository.
+     * @param revision a revision git understands, such as a branch, a tag or a commit id.
+     * @param onlyPaths if not null, the paths relative to the root of the only files to visit besides ignore files.
+     * @param visitor the visitor receiving directories and files; its pending files are awaited
+     *                before the repository is closed.
+     * @throws IOException if the root is not inside a repository, the revision does not exist, or reading fails.
+     */
+    static void walkRevision(Path rootDir, String revision, Set<String> onlyPaths, ProjectFileVisitor visitor) throws IOException {
+        try (Repository repository = openRepository(rootDir)) {
+            ObjectId tree = resolveTree(repository, revision);
+            String prefix = repository.isBare() ? "" : prefix(repository, rootDir);
+            Map<String, ObjectId> ignoreFiles = new HashMap<>();
+            List<Entry> entries = listTree(repository, tree, prefix, onlyPaths, ignoreFiles);
+            logger.debug("Revision {} has {} files below {}", revision, entries.size(), rootDir);
+            visitor.useIgnoreMatcher(new IgnoreMatcher(rootDir, file -> {
+                ObjectId id = ignoreFiles.get(rootDir.relativize(file).toString().replace('\\', '/'));
+                if (id == null) {
+                    return null;
+                }
+                try (Reader reader = new InputStreamReader(repository.open(id, Constants.OBJ_BLOB).openStream(), StandardCharsets.UTF_8)) {
+                    return IgnoreRules.parse(reader);
+                }
+            }));
+            visit(rootDir, entries, visitor, repository);
+            visitor.awaitPending();
+        }
+    }
+
+    /**
+     * Lists the files below {@code rootDir} that differ between two revisions.
+     * @param rootDir the absolute, normalized scan root inside the work tree of a repository.
+     * @param fromRevision the older revision.
+     * @param toRevision the newer revision.
+     * @return the change of every differing file, by path relative to the root with '/' separators.
+     * @throws IOException if the root is not inside a repository, a revision does not exist, or reading fails.
+     */
+    static Map<String, CodebaseDelta.ChangeType> diff(Path rootDir, String fromRevision, String toRevision) throws IOException {
+        Map<String, CodebaseDelta.ChangeType> changes = new HashMap<>();
+        try (Repository repository = openRepository(rootDir); TreeWalk walk = new TreeWalk(repository)) {
+            String prefix = repository.isBare() ? "" : prefix(repository, rootDir);
+            int strip = prefix.isEmpty() ? 0 : prefix.length() + 1;
+            walk.addTree(resolveTree(repository, fromRevision));
+            walk.addTree(resolveTree(repository, toRevision));
+            walk.setRecursive(true);
+            walk.setFilter(prefix.isEmpty() ? TreeFilter.ANY_DIFF : AndTreeFilter.create(PathFilter.create(prefix), TreeFilter.ANY_DIFF));
+            for (DiffEntry entry : DiffEntry.scan(walk)) {
+                switch (entry.getChangeType()) {
+                    case ADD -> changes.put(entry.getNewPath().substring(strip), CodebaseDelta.ChangeType.ADDED);
+                    case MODIFY -> changes.put(entry.getNewPath().substring(strip), CodebaseDelta.ChangeType.MODIFIED);
+                    case DELETE -> {
+                        if (isFile(entry.getOldMode())) {
+                            changes.put(entry.getOldPath().substring(strip), CodebaseDelta.ChangeType.DELETED);
+                        }
+                    }
+                    default -> throw new IllegalStateException("Unexpected change without rename detection: " + entry);
+                }
+            }
+        }
+        return changes;
+    }
+
+    private static Repository openRepository(Path rootDir) throws IOException {
+        FileRepositoryBuilder builder = new FileRepositoryBuilder().findGitDir(rootDir.toFile());
+        if (builder.getGitDir() == null) {
+            throw new IOException("Not inside a git repository: " + rootDir);
+        }
+        return builder.build();
+    }
+
+    private static ObjectId resolveTree(Repository repository, String revision) throws IOException {
+        ObjectId tree = repository.resolve(revision + "^{tree}");
+        if (tree == null) {
+            throw new IOException("Unknown revision: " + revision);
+        }
+        return tree;
+    }
+
+    private static String prefix(Repository repository, Path rootDir) throws IOException {
+        Path workTree = repository.getWorkTree().toPath().toRealPath();
+        return workTree.relativize(rootDir.toRealPath()).toString().replace('\\', '/');
+    }
+
+    private static List<Entry> listWorkTree(Repository repository, String prefix) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        int strip = prefix.isEmpty() ? 0 : prefix.length() + 1;
+        try (ObjectReader reader = repository.newObjectReader(); TreeWalk walk = new TreeWalk(repository, reader)) {
+            walk.addTree(new DirCacheIterator(repository.readDirCache()));
+            walk.addTree(new FileTreeIterator(repository));
+            if (!prefix.isEmpty()) {
+                walk.setFilter(PathFilter.create(prefix));
+            }
+            while (walk.next()) {
+                DirCacheIterator index = walk.getTree(0, DirCacheIterator.class);
+                WorkingTreeIterator work = walk.getTree(1, WorkingTreeIterator.class);
+                if (work == null || (index == null && work.isEntryIgnored())) {
+                    // Deleted from the work tree, or untracked and ignored
+                    continue;
+                }
+                if (walk.isSubtree()) {
+                    walk.enterSubtree();
+                    continue;
+                }
+                if (!isFile(walk.getFileMode(1))) {
+                    continue;
+                }
+                String blobId = null;
+                if (index != null && storedAsIs(walk, work) && !work.isModified(index.getDirCacheEntry(), false, reader)) {
+                    blobId = index.getEntryObjectId().name();
+                }
+                entries.add(new Entry(walk.getPathString().substring(strip), work.getEntryLength(),
+                        work.getEntryLastModifiedInstant().toEpochMilli(), blobId, null));
+            }
+        }
+        return entries;
+    }
+
+    private static List<Entry> listTree(Repository repository, ObjectId tree, String prefix, Set<String> onlyPaths,
+                                        Map<String, ObjectId> ignoreFiles) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        int strip = prefix.isEmpty() ? 0 : prefix.length() + 1;
+        try (ObjectReader reader = repository.newObjectReader(); TreeWalk walk = new TreeWalk(repository, reader)) {
+            walk.addTree(tree);
+            walk.setRecursive(true);
+            TreeFilter filter = prefix.isEmpty() ? TreeFilter.ALL : PathFilter.create(prefix);
+            if (onlyPaths != null) {
+                String base = prefix.isEmpty() ? "" : prefix + "/";
+                List<TreeFilter> wanted = new ArrayList<>();
+                wanted.add(PathSuffixFilter.create(Constants.DOT_GIT_IGNORE));
+                wanted.add(PathSuffixFilter.create(".jsmashyignore"));
+                if (!onlyPaths.isEmpty()) {
+                    wanted.add(PathFilterGroup.createFromStrings(onlyPaths.stream().map(path -> base + path).toList()));
+                }
+                filter = AndTreeFilter.create(filter, OrTreeFilter.create(wanted));
+            }
+            walk.setFilter(filter);
+            while (walk.next()) {
+                if (!isFile(walk.getFileMode(0))) {
+                    continue;
+                }
+                String path = walk.getPathString().substring(strip);
+                ObjectId blob = walk.getObjectId(0);
+                String name = walk.getNameString();
+                if (name.equals(Constants.DOT_GIT_IGNORE) || name.equals(".jsmashyignore")) {
+                    ignoreFiles.put(path, blob);
+                } else if (onlyPaths != null && !onlyPaths.contains(path)) {
+                    continue;
+                }
+                entries.add(new Entry(path, reader.getObjectSize(blob, Constants.OBJ_BLOB), 0, blob.name(), blob));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Symbolic links and nested repositories are skipped.
+     */
+    private static boolean isFile(FileMode mode) {
+        return mode == FileMode.REGULAR_FILE || mode == FileMode.EXECUTABLE_FILE;
+    }
+
+    /**
+     * The index blob equals the file's bytes only if no line ending conversion or clean filter applies.
+     */
+    private static boolean storedAsIs(TreeWalk walk, WorkingTreeIterator work) throws IOException {
+        return work.getEolStreamType() == CoreConfig.EolStreamType.DIRECT
+                && walk.getFilterCommand(Constants.ATTR_FILTER_TYPE_CLEAN) == null;
+    }
+
+    /**
+     * Replays the entries in tree order as a tree walk: directories are entered and left as the
+     * paths change, and entries below a directory the visitor skips are dropped.
+     * @param repository the repository blobs are read from, or null to read files from disk.
+     */
+    private static void visit(Path rootDir, List<Entry> entries, ProjectFileVisitor visitor, Repository repository) throws IOException {
+        entries.sort((a, b) -> ProjectFile.comparePaths(a.path(), b.path()));
+        if (visitor.preVisitDirectory(rootDir, null) != FileVisitResult.CONTINUE) {
+            return;
+        }
+        List<Path> openDirs = new ArrayList<>();
+        String skipped = null;
+        for (Entry entry : entries) {
+            if (skipped != null && entry.path().startsWith(skipped)) {
+                continue;
+            }
+            skipped = null;
+            String[] parts = entry.path().split("/");
+            int depth = parts.length - 1;
+            int common = 0;
+            while (common < openDirs.size() && common < depth && openDirs.get(common).getFileName().toString().equals(parts[common])) {
+                common++;
+            }
+            while (openDirs.size() > common) {
+                visitor.postVisitDirectory(openDirs.remove(openDirs.size() - 1), null);
+            }
+            Path dir = common == 0 ? rootDir : openDirs.get(common - 1);
+            for (int i = common; i < depth && skipped == null; i++) {
+                dir = dir.resolve(parts[i]);
+                if (visitor.preVisitDirectory(dir, null) == FileVisitResult.CONTINUE) {
+                    openDirs.add(dir);
+                } else {
+                    skipped = String.join("/", List.of(parts).subList(0, i + 1)) + "/";
+                }
+            }
+            if (skipped != null) {
+                continue;
+            }
+            Path file = dir.resolve(parts[depth]);
+            if (repository == null) {
+                visitor.visitFile(file, entry.size(), entry.lastModified(), entry.blobId());
+            } else {
+                ObjectId blob = entry.blob();
+                visitor.visitBlob(file, entry.size(), entry.blobId(), () -> repository.open(blob, Constants.OBJ_BLOB).openStream());
+            }
+        }
+        for (int i = openDirs.size() - 1; i >= 0; i--) {
+            visitor.postVisitDirectory(openDirs.get(i), null);
+        }
+        visitor.postVisitDirectory(rootDir, null);
+    }
+}
@@ -0,0 +1,203 @@
+package org.roxycode.jsmashy.core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Evaluates .gitignore and .jsmashyignore rules incrementally while a walker descends a tree.
+ * <p>
+ * Ignore files are compiled once when their directory is entered and dropped when it is left.
+ * Entry paths are tracked as strings relative to the scan root, so no {@link Path} relativization
+ * is needed per entry and ignore file. Semantics are those of JGit's {@code IgnoreNode}: the
+ * deepest ignore file with a matching rule decides, and within a file the last matching rule wins.
+ * Ignore files in the parent directories of the root, up to the enclosing git repository, apply too.
+ */
+public class IgnoreMatcher {
+    private static final Logger logger = LoggerFactory.getLogger(IgnoreMatcher.class);
+    private static final String[] IGNORE_FILES = {".gitignore", ".jsmashyignore"};
+
+    /**
+     * Rules of one ignore file, positioned relative to the scan root.
+     * Paths relative to the ignore file's directory are {@code prefix + rootRelative.substring(offset)}.
+     */
+    private record Frame(IgnoreRules rules, String prefix, int offset, int depth) {
+    }
+
+    /**
+     * Reads the rules of an ignore file.
+     */
+    interface RulesLoader {
+        /**
+         * @param file the ignore file.
+         * @return the rules, or null if the file does not exist or has no rules.
+         */
+        IgnoreRules load(Path file) throws IOException;
+    }
+
+    private final Path rootDir;
+    private final RulesLoader loader;
+    private final Deque<Frame> frames = new ArrayDeque<>();
+    private final Deque<String> dirPaths = new ArrayDeque<>();
+    private final Deque<Integer> frameCounts = new ArrayDeque<>();
+
+    public IgnoreMatcher(Path rootDir) {
+        this(rootDir, IgnoreRules::load);
+        loadParentIgnoreFiles();
+    }
+
+    /**
+     * Creates a matcher reading ignore files through a loader, such as from a git revision
+     * instead of the disk. Ignore files above the root are not applied.
+     * @param rootDir the scan root.
+     * @param loader reads the ignore files of the directories entered.
+     */
+    IgnoreMatcher(Path rootDir, RulesLoader loader) {
+        this.rootDir = rootDir;
+        this.loader = loader;
+    }
+
+    /**
+     * Called before descending into a directory.
+     * @param dir the directory; the first call must be for the scan root.
+     * @return false if the directory is ignored and must not be descended into.
+     * @throws IOException if an ignore file in the directory cannot be read.
+     */
+    public boolean enterDirectory(Path dir) throws IOException {
+        String relativePath;
+        int depth;
+        if (dirPaths.isEmpty()) {
+            relativePath = "";
+            depth = 0;
+        } else {
+            String name = dir.getFileName().toString();
+            String parent = dirPaths.peek();
+            relativePath = parent.isEmpty() ? name : parent + "/" + name;
+            depth = frameDepth(relativePath);
+        }
+        Path name = dir.getFileName();
+        if (name != null && isIgnored(relativePath, name.toString(), depth, true)) {
+            return false;
+        }
+
+        int before = frames.size();
+        int offset = relativePath.isEmpty() ? 0 : relativePath.length() + 1;
+        for (String fileName : IGNORE_FILES) {
+            IgnoreRules rules = loader.load(dir.resolve(fileName));
+            if (rules != null) {
+                frames.push(new Frame(rules, "", offset, depth));
+            }
+        }
+        dirPaths.push(relativePath);
+        frameCounts.push(frames.size() - before);
+        return true;
+    }
+
+    /**
+     * Called after all entries of a directory accepted by {@link #enterDirectory(Path)} were visited.
+     */
+    public void exitDirectory() {
+        int pushed = frameCounts.pop();
+        for (int i = 0; i < pushed; i++) {
+            frames.pop();
+        }
+        dirPaths.pop();
+    }
+
+    /**
+     * Checks a file in the directory most recently entered.
+     * @param fileName the file's name.
+     * @return true if the file is ignored.
+     */
+    public boolean isIgnoredFile(String fileName) {
+        String parent = dirPaths.peek();
+        String relativePath = parent.isEmpty() ? fileName : parent + "/" + fileName;
+        return isIgnored(relativePath, fileName, frameDepth(relativePath), false);
+    }
+
+    private boolean isIgnored(String relativePath, String name, int depth, boolean isDir) {
+        // Hardcoded defaults
+        if (name.equals(".git") || name.equals(".jsmashyignore")) return true;
+
+        for (Frame frame : frames) {
+            boolean nested;
+            String path = null;
+            if (frame.prefix().isEmpty()) {
+                nested = depth > frame.depth() + 1;
+            } else {
+                // Ignore file above the scan root
+                nested = !relativePath.isEmpty() || frame.prefix().indexOf('/') < frame.prefix().length() - 1;
+            }
+            if (frame.rules().needsPath()) {
+                path = frame.prefix() + relativePath.substring(Math.min(frame.offset(), relativePath.length()));
+                if (isDir && !path.endsWith("/")) {
+                    path += "/";
+                }
+            }
+            Boolean result = frame.rules().check(name, path, isDir, nested);
+            if (result != null) {
+                return result;
+            }
+        }
+        return false;
+    }
+
+    private static int frameDepth(String relativePath) {
+        if (relativePath.isEmpty()) {
+            return 0;
+        }
+        int depth = 1;
+        for (int i = 0; i < relativePath.length(); i++) {
+            if (relativePath.charAt(i) == '/') {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    private void loadParentIgnoreFiles() {
+        Path gitRoot = findGitRoot(rootDir);
+        List<Path> parents = new ArrayList<>();
+        Path current = rootDir.getParent();
+
+        while (current != null) {
+            parents.add(current);
+            if (current.equals(gitRoot)) break;
+            current = current.getParent();
+        }
+
+        // Reverse to push higher level ignore files first (bottom of stack)
+        Collections.reverse(parents);
+        for (Path p : parents) {
+            String prefix = p.relativize(rootDir).toString().replace('\\', '/') + "/";
+            for (String fileName : IGNORE_FILES) {
+                try {
+                    IgnoreRules rules = IgnoreRules.load(p.resolve(fileName));
+                    if (rules != null) {
+                        frames.push(new Frame(rules, prefix, 0, 0));
+                    }
+                } catch (IOException e) {
+                    logger.warn("Failed to load parent ignore file in {}: {}", p, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private Path findGitRoot(Path startPath) {
+        Path current = startPath;
+        while (current != null) {
+            if (Files.exists(current.resolve(".git"))) {
+                return current;
+            }
+            current = current.getParent();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,180 @@
+package org.roxycode.jsmashy.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import org.eclipse.jgit.ignore.FastIgnoreRule;
+
+/**
+ * The rules of a single ignore file, pre-compiled for fast evaluation.
+ * <p>
+ * Matching follows JGit's {@code IgnoreNode} exactly: the last matching rule wins. Name-only rules
+ * that are plain literals ({@code target/}, {@code .idea}) or simple suffixes ({@code *.log}) are
+ * indexed by name and suffix, so they are resolved with hash lookups on the entry's base name.
+ * All other rules are evaluated with JGit's matchers, but only if they are declared after the
+ * best indexed match and could therefore override it.
+ */
+final class IgnoreRules {
+
+    private final FastIgnoreRule[] rules;
+    private final boolean[] anchored;
+    private final Map<String, int[]> literalRules;
+    private final Map<String, int[]> suffixRules;
+    private final int[] suffixLengths;
+    // Indices of rules that need JGit's matcher, in descending order
+    private final int[] generalRules;
+
+    private IgnoreRules(List<FastIgnoreRule> parsed) {
+        int count = parsed.size();
+        rules = parsed.toArray(new FastIgnoreRule[0]);
+        anchored = new boolean[count];
+        Map<String, List<Integer>> literals = new HashMap<>();
+        Map<String, List<Integer>> suffixes = new HashMap<>();
+        List<Integer> general = new ArrayList<>();
+        for (int i = count - 1; i >= 0; i--) {
+            FastIgnoreRule rule = rules[i];
+            String pattern = matcherPattern(rule);
+            boolean beginning = pattern.startsWith("/");
+            String name = beginning ? pattern.substring(1) : pattern;
+            if (!rule.getNameOnly() || name.isEmpty() || name.equals("**") || hasAny(name, "/\\")) {
+                general.add(i);
+            } else if (!hasAny(name, "*?[")) {
+                anchored[i] = beginning;
+                literals.computeIfAbsent(name, k -> new ArrayList<>()).add(i);
+            } else if (!beginning && name.length() > 1 && name.lastIndexOf('*') == 0 && !hasAny(name, "?[")) {
+                suffixes.computeIfAbsent(name.substring(1), k -> new ArrayList<>()).add(i);
+            } else {
+                general.add(i);
+            }
+        }
+        literalRules = toArrays(literals);
+        suffixRules = toArrays(suffixes);
+        TreeSet<Integer> lengths = new TreeSet<>();
+        suffixes.keySet().forEach(s -> lengths.add(s.length()));
+        suffixLengths = lengths.stream().mapToInt(Integer::intValue).toArray();
+        generalRules = general.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Parses an ignore file, or returns null if it does not exist or has no rules.
+     */
+    static IgnoreRules load(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (Reader reader = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+    /**
+     * Parses ignore rules with the same line handling as {@code IgnoreNode.parse}.
+     * @return the compiled rules, or null if there are none.
+     */
+    static IgnoreRules parse(Reader reader) throws IOException {
+        List<FastIgnoreRule> parsed = new ArrayList<>();
+        BufferedReader br = new BufferedReader(reader);
+        String line;
+        while ((line = br.readLine()) != null) {
+            if (!line.isEmpty() && !line.startsWith("#") && !line.equals("/")) {
+                FastIgnoreRule rule = new FastIgnoreRule(line);
+                if (!rule.isEmpty()) {
+                    parsed.add(rule);
+                }
+            }
+        }
+        return parsed.isEmpty() ? null : new IgnoreRules(parsed);
+    }
+
+    /**
+     * @return true if some rule needs the full relative path, not just the base name.
+     */
+    boolean needsPath() {
+        return generalRules.length > 0;
+    }
+
+    /**
+     * Evaluates the rules for one entry.
+     * @param name the entry's base name.
+     * @param path the path relative to the ignore file's directory, with a trailing slash for
+     *             directories; only required if {@link #needsPath()} is true.
+     * @param isDir whether the entry is a directory.
+     * @param nested whether the entry is below a subdirectory of the ignore file's directory.
+     * @return TRUE if ignored, FALSE if explicitly not ignored, null if no rule matches.
+     */
+    Boolean check(String name, String path, boolean isDir, boolean nested) {
+        int best = -1;
+        int[] candidates = literalRules.get(name);
+        if (candidates != null) {
+            for (int i : candidates) {
+                if ((!anchored[i] || !nested) && (isDir || !rules[i].dirOnly())) {
+                    best = i;
+                    break;
+                }
+            }
+        }
+        for (int length : suffixLengths) {
+            if (length > name.length()) {
+                break;
+            }
+            candidates = suffixRules.get(name.substring(name.length() - length));
+            if (candidates != null) {
+                for (int i : candidates) {
+                    if (i <= best) {
+                        break;
+                    }
+                    if (isDir || !rules[i].dirOnly()) {
+                        best = i;
+                        break;
+                    }
+                }
+            }
+        }
+        for (int i : generalRules) {
+            if (i < best) {
+                break;
+            }
+            if (rules[i].isMatch(path, isDir, true)) {
+                best = i;
+                break;
+            }
+        }
+        return best < 0 ? null : rules[best].getResult();
+    }
+
+    // The pattern handed to JGit's matcher: without negation and without the directory slash
+    private static String matcherPattern(FastIgnoreRule rule) {
+        String pattern = rule.toString();
+        if (rule.getNegation()) {
+            pattern = pattern.substring(1);
+        }
+        if (rule.dirOnly()) {
+            pattern = pattern.substring(0, pattern.length() - 1);
+        }
+        return pattern;
+    }
+
+    private static boolean hasAny(String value, String chars) {
+        for (int i = 0; i < chars.length(); i++) {
+            if (value.indexOf(chars.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<String, int[]> toArrays(Map<String, List<Integer>> map) {
+        Map<String, int[]> result = new HashMap<>();
+        map.forEach((key, value) -> result.put(key, value.stream().mapToInt(Integer::intValue).toArray()));
+        return result;
+    }
+}
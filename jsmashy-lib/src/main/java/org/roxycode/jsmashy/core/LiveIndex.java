@@ -0,0 +1,425 @@
+package org.roxycode.jsmashy.core;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.roxycode.jsmashy.languages.LanguageAnalyzer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An index of a directory that stays current while the directory changes.
+ * <p>
+ * {@link #start()} scans the directory once and registers every directory it enters with a
+ * {@link WatchService}, so ignored directories are not watched. Changes are collected until none
+ * arrive for the debounce interval, then only the touched paths are read and analyzed again.
+ * A changed ignore file, or events lost by the watch service, cause a full rescan. Files and
+ * totals can be read from any thread at any time without waiting for a scan.
+ * <p>
+ * The index applies the analyzers, skeleton cache, skeleton levels, content mode and file size
+ * limit of its options. Token budgets, manifests and the git index do not apply: every file is
+ * kept at full fidelity and the work tree is walked.
+ */
+public class LiveIndex implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(LiveIndex.class);
+
+    /**
+     * Default quiet period after which a burst of changes is applied.
+     */
+    public static final Duration DEFAULT_DEBOUNCE = Duration.ofMillis(250);
+
+    // While changes keep arriving, they are applied after at most this many debounce intervals
+    private static final int MAX_DEBOUNCE_INTERVALS = 10;
+    private static final Set<String> IGNORE_FILES = Set.of(".gitignore", ".jsmashyignore");
+
+    /**
+     * Sizes of the indexed files.
+     * @param files the number of files.
+     * @param bytes their size on disk.
+     * @param chars the characters of their skeletons or contents, as they are emitted.
+     * @param tokens the estimated tokens of those characters.
+     */
+    public record Totals(int files, long bytes, long chars, long tokens) {
+    }
+
+    private record Entry(ProjectFile file, long bytes, long chars) {
+    }
+
+    /**
+     * Drives a visitor over the paths to process.
+     */
+    private interface Walk {
+        void run(FileVisitor<Path> visitor) throws IOException;
+    }
+
+    private final Path rootDir;
+    private final List<LanguageAnalyzer> analyzers;
+    private final ScanOptions options;
+    private final Duration debounce;
+    private final ConcurrentSkipListMap<String, Entry> entries = new ConcurrentSkipListMap<>(ProjectFile::comparePaths);
+    private final Set<Consumer<Totals>> listeners = new CopyOnWriteArraySet<>();
+    private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+    private volatile Totals totals = new Totals(0, 0, 0, 0);
+    private WatchService watchService;
+
+    public LiveIndex(Path rootDir, List<LanguageAnalyzer> analyzers, ScanOptions options) {
+        this(rootDir, analyzers, options, DEFAULT_DEBOUNCE);
+    }
+
+    /**
+     * @param rootDir the directory to index.
+     * @param analyzers the analyzers producing skeletons.
+     * @param options the scan options.
+     * @param debounce the quiet period after which a burst of changes is applied.
+     */
+    public LiveIndex(Path rootDir, List<LanguageAnalyzer> analyzers, ScanOptions options, Duration debounce) {
+        this.rootDir = rootDir.toAbsolutePath().normalize();
+        this.analyzers = analyzers;
+        this.options = options;
+        this.debounce = debounce;
+    }
+
+    /**
+     * Scans the directory and starts following its changes on a background thread.
+     * @throws IOException if the scan fails.
+     */
+    public synchronized void start() throws IOException {
+        if (watchService != null) {
+            throw new IllegalStateException("Index of " + rootDir + " already started");
+        }
+        watchService = rootDir.getFileSystem().newWatchService();
+        long startTime = System.currentTimeMillis();
+        rescan();
+        logger.info("Indexed {} files of {} in {} ms, watching {} directories", totals.files(), rootDir,
+                System.currentTimeMillis() - startTime, watchedDirs.size());
+        Thread.ofPlatform().daemon().name("jsmashy-watch").start(this::watch);
+    }
+
+    /**
+     * Stops following changes. The files indexed so far remain readable.
+     */
+    @Override
+    public synchronized void close() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close the watch service of {}: {}", rootDir, e.getMessage());
+        }
+    }
+
+    public Path getRootDir() {
+        return rootDir;
+    }
+
+    /**
+     * @return the indexed files in {@link ProjectFile#TREE_ORDER}.
+     */
+    public List<ProjectFile> getFiles() {
+        List<ProjectFile> files = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            files.add(entry.file());
+        }
+        return files;
+    }
+
+    /**
+     * @param path the file's path relative to the root, as in {@link ProjectFile#getPath()}.
+     * @return the indexed file, or null if it is not indexed.
+     */
+    public ProjectFile get(String path) {
+        Entry entry = entries.get(path);
+        return entry != null ? entry.file() : null;
+    }
+
+    /**
+     * @return the totals after the last applied change.
+     */
+    public Totals getTotals() {
+        return totals;
+    }
+
+    /**
+     * Registers a listener called with the new totals, on the watching thread, whenever a batch
+     * of changes was applied. Adding a listener twice has no effect.
+     * @param listener the listener.
+     */
+    public void addListener(Consumer<Totals> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<Totals> listener) {
+        listeners.remove(listener);
+    }
+
+    private void watch() {
+        long debounceNanos = debounce.toNanos();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                long deadline = System.nanoTime() + MAX_DEBOUNCE_INTERVALS * debounceNanos;
+                Set<Path> touched = new HashSet<>();
+                boolean rescan = false;
+                while (key != null) {
+                    rescan |= collect(key, touched);
+                    long remaining = Math.min(debounceNanos, deadline - System.nanoTime());
+                    key = remaining > 0 ? watchService.poll(remaining, TimeUnit.NANOSECONDS) : watchService.poll();
+                }
+                apply(touched, rescan);
+            }
+        } catch (ClosedWatchServiceException e) {
+            logger.debug("Stopped watching {}", rootDir);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Adds the paths of a key's events to the touched paths.
+     * @return true if the events require a full rescan.
+     */
+    private boolean collect(WatchKey key, Set<Path> touched) {
+        Path dir = watchedDirs.get(key);
+        boolean rescan = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                rescan = true;
+                continue;
+            }
+            if (dir == null) {
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            // The content of a directory is covered by the events of its entries
+            if (event.kind() == StandardWatchEventKinds.ENTRY_MODIFY && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                continue;
+            }
+            rescan |= IGNORE_FILES.contains(path.getFileName().toString());
+            touched.add(rootDir.relativize(path));
+        }
+        if (!key.reset()) {
+            watchedDirs.remove(key);
+        }
+        return rescan;
+    }
+
+    private void apply(Set<Path> touched, boolean rescan) {
+        long startTime = System.currentTimeMillis();
+        try {
+            if (rescan) {
+                rescan();
+            } else {
+                update(touched);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to update the index of {}: {}", rootDir, e.getMessage());
+            return;
+        }
+        logger.debug("Index of {} updated in {} ms: {} paths changed{}", rootDir, System.currentTimeMillis() - startTime,
+                touched.size(), rescan ? ", rescanned" : "");
+        Totals current = totals;
+        for (Consumer<Totals> listener : listeners) {
+            listener.accept(current);
+        }
+    }
+
+    private void rescan() throws IOException {
+        watchedDirs.keySet().forEach(WatchKey::cancel);
+        watchedDirs.clear();
+        Map<String, Entry> found = process(visitor -> Files.walkFileTree(rootDir, visitor));
+        entries.keySet().retainAll(found.keySet());
+        entries.putAll(found);
+        updateTotals();
+    }
+
+    private void update(Set<Path> touched) throws IOException {
+        List<Path> paths = new ArrayList<>(touched);
+        paths.sort((a, b) -> ProjectFile.comparePaths(a.toString(), b.toString()));
+        Map<String, Entry> found = process(visitor -> replay(paths, visitor));
+        for (Path path : paths) {
+            removeTree(path.toString());
+        }
+        entries.putAll(found);
+        updateTotals();
+    }
+
+    /**
+     * Visits the touched paths in tree order, entering their parent directories as the paths change
+     * so ignore rules apply. Touched directories are walked whole; paths that no longer exist are skipped.
+     */
+    private void replay(List<Path> paths, FileVisitor<Path> visitor) throws IOException {
+        if (visitor.preVisitDirectory(rootDir, null) != FileVisitResult.CONTINUE) {
+            return;
+        }
+        List<Path> openDirs = new ArrayList<>();
+        for (Path path : paths) {
+            int depth = path.getNameCount() - 1;
+            int common = 0;
+            while (common < openDirs.size() && common < depth && openDirs.get(common).getFileName().equals(path.getName(common))) {
+                common++;
+            }
+            while (openDirs.size() > common) {
+                visitor.postVisitDirectory(openDirs.remove(openDirs.size() - 1), null);
+            }
+            Path dir = common == 0 ? rootDir : openDirs.get(common - 1);
+            boolean skipped = false;
+            for (int i = common; i < depth && !skipped; i++) {
+                dir = dir.resolve(path.getName(i));
+                if (Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS) && visitor.preVisitDirectory(dir, null) == FileVisitResult.CONTINUE) {
+                    openDirs.add(dir);
+                } else {
+                    skipped = true;
+                }
+            }
+            if (skipped) {
+                continue;
+            }
+            Path target = rootDir.resolve(path);
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(target, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (NoSuchFileException e) {
+                continue;
+            }
+            if (attrs.isDirectory()) {
+                SortedTreeWalker.walk(target, visitor);
+            } else if (attrs.isRegularFile()) {
+                visitor.visitFile(target, attrs);
+            }
+        }
+        for (int i = openDirs.size() - 1; i >= 0; i--) {
+            visitor.postVisitDirectory(openDirs.get(i), null);
+        }
+        visitor.postVisitDirectory(rootDir, null);
+    }
+
+    /**
+     * Reads and analyzes the files a walk visits, registering the directories it enters.
+     * @return the processed files by path.
+     */
+    private Map<String, Entry> process(Walk walk) throws IOException {
+        Map<String, long[]> sizes = new ConcurrentHashMap<>();
+        Map<String, Entry> found = new HashMap<>();
+        int parallelism = options.effectiveParallelism();
+        ExecutorService executor = parallelism > 1
+                ? Executors.newFixedThreadPool(parallelism, Thread.ofPlatform().daemon().name("jsmashy-index-", 1).factory())
+                : null;
+        try {
+            ProjectFileVisitor visitor = new ProjectFileVisitor(rootDir, file -> {
+                long[] size = sizes.remove(file.getPath());
+                found.put(file.getPath(), new Entry(file, size != null ? size[0] : 0, size != null ? size[1] : 0));
+            }, analyzers, executor);
+            visitor.setContentMode(options.getContentMode());
+            visitor.setMaxFileSize(options.getMaxFileSize());
+            visitor.useSkeletonLevels(options.getSkeletonLevels());
+            if (options.getSkeletonCache() != null) {
+                visitor.useSkeletonCache(options.getSkeletonCache());
+            }
+            visitor.useSizeListener((path, size, chars) -> sizes.put(path, new long[] {size, chars}));
+            // Excluded directories are not watched either, so writing there starts no update
+            options.getExcludedPaths().forEach(visitor::exclude);
+            walk.run(new WatchingVisitor(visitor));
+            visitor.awaitPending();
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Removes a path and, if it was a directory, everything below it.
+     */
+    private void removeTree(String path) {
+        entries.remove(path);
+        // Tree order keeps the paths below a directory together, right after the directory itself
+        Iterator<String> below = entries.tailMap(path, false).keySet().iterator();
+        while (below.hasNext()) {
+            String next = below.next();
+            if (next.length() <= path.length() || !next.startsWith(path)
+                    || (next.charAt(path.length()) != '/' && next.charAt(path.length()) != '\\')) {
+                break;
+            }
+            below.remove();
+        }
+    }
+
+    private void updateTotals() {
+        int files = 0;
+        long bytes = 0;
+        long chars = 0;
+        for (Entry entry : entries.values()) {
+            files++;
+            bytes += entry.bytes();
+            chars += entry.chars();
+        }
+        totals = new Totals(files, bytes, chars, Math.round(chars / options.getCharsPerToken()));
+    }
+
+    /**
+     * Registers the directories the scanning visitor enters with the watch service.
+     */
+    private class WatchingVisitor implements FileVisitor<Path> {
+        private final ProjectFileVisitor visitor;
+
+        WatchingVisitor(ProjectFileVisitor visitor) {
+            this.visitor = visitor;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+            FileVisitResult result = visitor.preVisitDirectory(dir, attrs);
+            if (result == FileVisitResult.CONTINUE) {
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                watchedDirs.put(key, dir);
+            }
+            return result;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            return visitor.visitFile(file, attrs);
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+            // Files may disappear while they are being indexed; their deletion is reported separately
+            logger.debug("Skipping unreadable file: {} - {}", file, exc.getMessage());
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+            return visitor.postVisitDirectory(dir, exc);
+        }
+    }
+}
@@ -1,19 +1,130 @@
 package org.roxycode.jsmashy.core;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+
+/**
+ * A file of the scanned project. The content is materialized when {@link #getContent()} is
+ * called, which formatters do one file at a time while writing their output; depending on how
+ * the file was created, it is kept as a string, as UTF-8 bytes, in a memory mapping or not at all.
+ */
 public class ProjectFile {
+    @FunctionalInterface
+    private interface ContentSource {
+        String load() throws IOException;
+    }
+
+    /**
+     * Orders files as they appear in the formatted tree: segment by segment, each segment by name,
+     * so the files of a directory are contiguous and directories sort by name among files.
+     */
+    public static final Comparator<ProjectFile> TREE_ORDER = (a, b) -> comparePaths(a.getPath(), b.getPath());
+
+    private static final ContentSource OMITTED = () -> "";
+
     private final String path;
-    private final String content;
+    private final ContentSource content;
 
     public ProjectFile(String path, String content) {
+        this(path, () -> content);
+    }
+
+    private ProjectFile(String path, ContentSource content) {
         this.path = path;
         this.content = content;
     }
 
+    /**
+     * Creates a file whose content is kept as UTF-8 bytes and decoded when it is read.
+     * @param path the path relative to the project root.
+     * @param content the UTF-8 encoded content.
+     * @return the file.
+     */
+    public static ProjectFile ofUtf8(String path, byte[] content) {
+        return new ProjectFile(path, () -> new String(content, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Creates a file that is listed without its content, for instance to fit a token budget.
+     * @param path the path relative to the project root.
+     * @return the file; its content is empty.
+     */
+    public static ProjectFile omitted(String path) {
+        return new ProjectFile(path, OMITTED);
+    }
+
+    /**
+     * Creates a file whose content is read from disk whenever it is requested, so none of it is held in memory.
+     * @param path the path relative to the project root.
+     * @param file the file to read.
+     * @return the file.
+     */
+    public static ProjectFile lazy(String path, Path file) {
+        return new ProjectFile(path, () -> Files.readString(file));
+    }
+
+    /**
+     * Creates a file backed by a read-only memory mapping, which lives outside the Java heap.
+     * @param path the path relative to the project root.
+     * @param file the file to map.
+     * @return the file.
+     * @throws IOException if the file cannot be mapped.
+     */
+    public static ProjectFile mapped(String path, Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return new ProjectFile(path, () -> StandardCharsets.UTF_8.decode(buffer.duplicate()).toString());
+    }
+
+    /**
+     * Compares paths segment by segment in one pass without copying: a separator sorts before
+     * every other character, so a segment that is a prefix of another sorts first, just as it does
+     * when whole segments are compared.
+     */
+    static int comparePaths(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            int result = Character.compare(sortKey(a.charAt(i)), sortKey(b.charAt(i)));
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(a.length(), b.length());
+    }
+
+    private static char sortKey(char c) {
+        return c == '/' || c == '\\' ? 0 : c;
+    }
+
     public String getPath() {
         return path;
     }
 
+    /**
+     * @return true if only the path of the file is known, see {@link #omitted(String)}.
+     */
+    public boolean isContentOmitted() {
+        return content == OMITTED;
+    }
+
+    /**
+     * @return the content, loaded or decoded on each call.
+     * @throws UncheckedIOException if file-backed content can no longer be read.
+     */
     public String getContent() {
-        return content;
+        try {
+            return content.load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load content of " + path, e);
+        }
     }
-}
\ No newline at end of file
+}
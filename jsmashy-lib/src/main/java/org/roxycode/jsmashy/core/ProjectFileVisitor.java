@@ -1,175 +1,558 @@
 package org.roxycode.jsmashy.core;
 
-import org.eclipse.jgit.ignore.IgnoreNode;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import org.roxycode.jsmashy.languages.LanguageAnalyzer;
 import org.roxycode.jsmashy.languages.AnalysisResult;
+import org.roxycode.jsmashy.languages.SkeletonLevel;
+import org.roxycode.jsmashy.languages.SourceSymbols;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
 /**
- * File visitor that collects files into a list of ProjectFile objects.
- * Respects .gitignore rules using JGit.
+ * File visitor that collects files into a list of ProjectFile objects, or hands them to a sink.
+ * Respects .gitignore and .jsmashyignore rules, see {@link IgnoreMatcher}.
+ * <p>
+ * When constructed with an executor, traversal and ignore evaluation stay on the walking thread
+ * while reading and analysis are submitted to the executor. Results are delivered in traversal
+ * order as they complete; call {@link #awaitPending()} after the walk to deliver the rest.
  */
 public class ProjectFileVisitor extends SimpleFileVisitor<Path> {
     private static final Logger logger = LoggerFactory.getLogger(ProjectFileVisitor.class);
 
     private final Path rootDir;
-    private final List<ProjectFile> files;
+    private final Consumer<ProjectFile> sink;
     private final List<LanguageAnalyzer> analyzers;
-    
-    private static class IgnoreEntry {
-        final Path dir;
-        final IgnoreNode node;
-        IgnoreEntry(Path dir, IgnoreNode node) { this.dir = dir; this.node = node; }
+    private final ExecutorService executor;
+    private final Deque<Future<ProjectFile>> pending = new ArrayDeque<>();
+    private int maxPending = Integer.MAX_VALUE;
+    private ScanManifest previousManifest;
+    private ScanManifest nextManifest;
+    private final Set<Path> excludedPaths = new HashSet<>();
+    private SkeletonCache skeletonCache;
+    private SkeletonLevels skeletonLevels = new SkeletonLevels();
+    private ContentMode contentMode = ContentMode.MEMORY;
+    private long maxFileSize = Long.MAX_VALUE;
+    private IgnoreMatcher ignoreMatcher;
+    private ScanStats stats;
+    private SizeListener sizeListener;
+    private SymbolIndex symbolIndex;
+    private List<LanguageAnalyzer> symbolAnalyzers = List.of();
+    private final AtomicInteger partialSkeletons = new AtomicInteger();
+    private final AtomicInteger unparsedFiles = new AtomicInteger();
+    private final AtomicLong unparsedChars = new AtomicLong();
+
+    /**
+     * Opens the content of a file that is not read from disk.
+     */
+    interface ContentOpener {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Receives the size of each file that is delivered, on the thread that processed it.
+     */
+    interface SizeListener {
+        void fileSized(String relativePath, long size, long charsOut);
     }
-    
-    private final Deque<IgnoreEntry> ignoreStack = new ArrayDeque<>();
 
     public ProjectFileVisitor(Path rootDir, List<ProjectFile> files) {
         this(rootDir, files, new java.util.ArrayList<>());
     }
 
     public ProjectFileVisitor(Path rootDir, List<ProjectFile> files, List<LanguageAnalyzer> analyzers) {
+        this(rootDir, files, analyzers, null);
+    }
+
+    public ProjectFileVisitor(Path rootDir, List<ProjectFile> files, List<LanguageAnalyzer> analyzers, ExecutorService executor) {
+        this(rootDir, (Consumer<ProjectFile>) files::add, analyzers, executor);
+    }
+
+    /**
+     * @param rootDir the root of the walk.
+     * @param sink receives the processed files in traversal order, on the walking thread.
+     * @param analyzers the analyzers producing skeletons.
+     * @param executor the executor reading and analyzing files, or null to do so on the walking thread.
+     */
+    public ProjectFileVisitor(Path rootDir, Consumer<ProjectFile> sink, List<LanguageAnalyzer> analyzers, ExecutorService executor) {
         this.rootDir = rootDir;
-        this.files = files;
+        this.sink = sink;
         this.analyzers = analyzers;
-        loadParentIgnoreFiles();
-    }
-
-    private boolean isIgnored(Path path, boolean isDir) {
-        String name = path.getFileName() != null ? path.getFileName().toString() : "";
-        // Hardcoded defaults
-        if (name.equals(".git") || name.equals(".jsmashyignore")) return true;
-
-        for (IgnoreEntry entry : ignoreStack) {
-            try {
-                Path relativePath = entry.dir.relativize(path);
-                String pathString = relativePath.toString().replace('\\', '/');
-                if (pathString.isEmpty()) continue;
-                
-                if (isDir && !pathString.endsWith("/")) {
-                    pathString += "/";
-                }
-                
-                IgnoreNode.MatchResult result = entry.node.isIgnored(pathString, isDir);
-                if (result == IgnoreNode.MatchResult.IGNORED) return true;
-                if (result == IgnoreNode.MatchResult.NOT_IGNORED) return false;
-            } catch (IllegalArgumentException e) {
-                // Path is not relative to this entry.dir, skip
-            }
-        }
-        return false;
+        this.executor = executor;
+        this.ignoreMatcher = new IgnoreMatcher(rootDir);
     }
 
-        private void loadIgnoreFile(Path dir, String fileName) throws IOException {
-        Path ignoreFile = dir.resolve(fileName);
-        if (Files.exists(ignoreFile)) {
-            IgnoreNode node = new IgnoreNode();
-            try (InputStream is = Files.newInputStream(ignoreFile)) {
-                node.parse(is);
-            }
-            ignoreStack.push(new IgnoreEntry(dir, node));
-        }
+    /**
+     * Enables incremental scanning: files recorded as unchanged in the previous manifest are not
+     * re-analyzed, and every processed file is recorded in the next manifest.
+     * @param previous the manifest of the last scan.
+     * @param next the manifest being built by this scan.
+     */
+    public void useManifest(ScanManifest previous, ScanManifest next) {
+        this.previousManifest = previous;
+        this.nextManifest = next;
+    }
+
+    /**
+     * Consults a content-addressed cache before running an analyzer, and stores new results in it.
+     * @param skeletonCache the cache to use.
+     */
+    public void useSkeletonCache(SkeletonCache skeletonCache) {
+        this.skeletonCache = skeletonCache;
+    }
+
+    /**
+     * Sets how much of each file its skeleton keeps.
+     * @param skeletonLevels the skeleton levels.
+     */
+    public void useSkeletonLevels(SkeletonLevels skeletonLevels) {
+        this.skeletonLevels = skeletonLevels;
+    }
+
+    /**
+     * Records the time spent evaluating ignore rules, reading and analyzing, and the size of each file.
+     * @param stats the stats to add to, or null to measure nothing.
+     */
+    public void useStats(ScanStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Records the symbols of every file one of the given analyzers supports in an index. Symbols are
+     * taken from the analysis of the file, the index's previous version or the skeleton cache, and
+     * the file is only parsed again if none of them knows its content.
+     * @param symbolIndex the index to fill.
+     * @param symbolAnalyzers the analyzers collecting symbols, which need not be the ones producing skeletons.
+     */
+    public void useSymbolIndex(SymbolIndex symbolIndex, List<LanguageAnalyzer> symbolAnalyzers) {
+        this.symbolIndex = symbolIndex;
+        this.symbolAnalyzers = symbolAnalyzers;
+    }
+
+    /**
+     * @param sizeListener receives the size read and emitted of every file that is delivered.
+     */
+    void useSizeListener(SizeListener sizeListener) {
+        this.sizeListener = sizeListener;
+    }
+
+    /**
+     * Sets how the content of files that are not reduced to a skeleton is kept.
+     * @param contentMode the content mode.
+     */
+    public void setContentMode(ContentMode contentMode) {
+        this.contentMode = contentMode;
+    }
+
+    /**
+     * Limits how many files may be submitted to the executor but not yet delivered. When the limit is
+     * reached the walk waits for the oldest file, so it never runs far ahead of the workers or the sink.
+     * @param maxPending the maximum number of files in flight.
+     */
+    public void setMaxPending(int maxPending) {
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Skips files larger than the given size without reading them.
+     * @param maxFileSize the maximum size in bytes.
+     */
+    public void setMaxFileSize(long maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * Replaces the matcher for .gitignore and .jsmashyignore rules read from disk.
+     * @param ignoreMatcher the matcher to use; no directory must have been entered yet.
+     */
+    void useIgnoreMatcher(IgnoreMatcher ignoreMatcher) {
+        this.ignoreMatcher = ignoreMatcher;
+    }
+
+    /**
+     * @return the number of files with syntax errors that were reduced to a partial skeleton.
+     */
+    public int getPartialSkeletons() {
+        return partialSkeletons.get();
+    }
+
+    /**
+     * @return the number of files with syntax errors that were kept whole because no skeleton could be recovered.
+     */
+    public int getUnparsedFiles() {
+        return unparsedFiles.get();
+    }
+
+    /**
+     * @return the characters of the files counted by {@link #getUnparsedFiles()}.
+     */
+    public long getUnparsedChars() {
+        return unparsedChars.get();
+    }
+
+    /**
+     * Excludes a file or a directory from the scan, such as the manifest file itself.
+     * @param path the absolute path of the file or directory to skip.
+     */
+    public void exclude(Path path) {
+        excludedPaths.add(path);
     }
 
     @Override
     public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-        if (isIgnored(dir, true)) {
+        if (excludedPaths.contains(dir)) {
+            logger.debug("Skipping excluded directory: {}", dir);
+            return FileVisitResult.SKIP_SUBTREE;
+        }
+        long start = stats != null ? System.nanoTime() : 0;
+        boolean entered = ignoreMatcher.enterDirectory(dir);
+        if (stats != null) {
+            stats.record(ScanStats.Phase.IGNORE, start, -1);
+        }
+        if (!entered) {
             logger.debug("Skipping ignored directory: {}", dir);
             return FileVisitResult.SKIP_SUBTREE;
         }
-
-        loadIgnoreFile(dir, ".gitignore");
-        loadIgnoreFile(dir, ".jsmashyignore");
-        
         return FileVisitResult.CONTINUE;
     }
 
     @Override
     public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
-        while (!ignoreStack.isEmpty() && ignoreStack.peek().dir.equals(dir)) {
-            ignoreStack.pop();
-        }
+        ignoreMatcher.exitDirectory();
         return FileVisitResult.CONTINUE;
     }
 
     @Override
     public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-        if (isIgnored(file, false)) {
+        visitFile(file, attrs.size(), attrs.lastModifiedTime().toMillis(), null);
+        return FileVisitResult.CONTINUE;
+    }
+
+    /**
+     * Visits a file whose attributes are already known, in the directory most recently entered.
+     * @param file the file.
+     * @param size the file size in bytes.
+     * @param lastModified the modification time in milliseconds.
+     * @param knownHash the file's {@link ContentHash}, if known without reading it, or null.
+     * @throws IOException if delivering a processed file fails.
+     */
+    public void visitFile(Path file, long size, long lastModified, String knownHash) throws IOException {
+        visit(file, size, lastModified, knownHash, null);
+    }
+
+    /**
+     * Visits a file whose content is not read from disk, such as a blob of a git revision.
+     * Its raw content is always kept in memory, and it is not recorded in the manifest.
+     * @param file the path the file would have on disk.
+     * @param size the content size in bytes.
+     * @param hash the content's {@link ContentHash}.
+     * @param opener opens the content; called on a worker thread when the visitor has an executor.
+     * @throws IOException if delivering a processed file fails.
+     */
+    void visitBlob(Path file, long size, String hash, ContentOpener opener) throws IOException {
+        visit(file, size, 0, hash, opener);
+    }
+
+    private void visit(Path file, long size, long lastModified, String knownHash, ContentOpener opener) throws IOException {
+        long start = stats != null ? System.nanoTime() : 0;
+        boolean ignored = excludedPaths.contains(file) || ignoreMatcher.isIgnoredFile(file.getFileName().toString());
+        if (stats != null) {
+            stats.record(ScanStats.Phase.IGNORE, start, -1);
+        }
+        if (ignored) {
             logger.debug("Skipping ignored file: {}", file);
-            return FileVisitResult.CONTINUE;
+            return;
         }
         
         String relativePath = rootDir.relativize(file).toString();
-        String content;
+        if (executor == null) {
+            ProjectFile projectFile = processFile(file, relativePath, size, lastModified, knownHash, opener);
+            if (projectFile != null) {
+                sink.accept(projectFile);
+            }
+        } else {
+            pending.add(executor.submit(() -> processFile(file, relativePath, size, lastModified, knownHash, opener)));
+            while (!pending.isEmpty() && (pending.peek().isDone() || pending.size() > maxPending)) {
+                deliver(pending.poll());
+            }
+        }
+    }
+
+    /**
+     * Waits for files still being processed by the executor and delivers them in traversal order.
+     * Does nothing when the visitor runs sequentially.
+     * @throws IOException if a worker failed with an I/O error.
+     */
+    public void awaitPending() throws IOException {
+        try {
+            while (!pending.isEmpty()) {
+                deliver(pending.poll());
+            }
+        } finally {
+            pending.forEach(future -> future.cancel(true));
+            pending.clear();
+        }
+    }
+
+    private void deliver(Future<ProjectFile> future) throws IOException {
         try {
-            content = Files.readString(file);
+            ProjectFile projectFile = future.get();
+            if (projectFile != null) {
+                sink.accept(projectFile);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for file analysis", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("File analysis failed", e.getCause());
+        }
+    }
+
+    private ProjectFile processFile(Path file, String relativePath, long size, long lastModified, String knownHash, ContentOpener opener) {
+        if (size > maxFileSize) {
+            logger.debug("Skipping file larger than {} bytes: {}", maxFileSize, relativePath);
+            return null;
+        }
+        if (BinaryDetector.hasBinaryExtension(file.getFileName().toString())) {
+            logger.debug("Skipping binary file: {}", relativePath);
+            return null;
+        }
+        boolean onDisk = opener == null;
+        long startWall = stats != null ? System.nanoTime() : 0;
+        long startCpu = stats != null ? ScanStats.cpuTime() : -1;
+        ScanManifest.Entry cached = previousManifest != null && onDisk ? previousManifest.get(relativePath) : null;
+        LanguageAnalyzer symbolAnalyzer = symbolIndex != null ? findAnalyzer(symbolAnalyzers, file.getFileName().toString()) : null;
+        try {
+            if (cached != null && previousManifest.isUnchanged(cached, size, lastModified)) {
+                nextManifest.put(cached);
+                logger.debug("Unchanged: {}", relativePath);
+                indexSymbols(symbolAnalyzer, relativePath, cached.contentHash(), null, () -> Files.newInputStream(file));
+                if (cached.skeleton() != null) {
+                    recordFile(relativePath, size, cached.skeleton().length(), 0);
+                    return new ProjectFile(relativePath, cached.skeleton());
+                }
+                byte[] bytes = contentMode == ContentMode.MEMORY ? Files.readAllBytes(file) : null;
+                if (stats != null) {
+                    stats.record(ScanStats.Phase.READ, startWall, startCpu);
+                }
+                recordFile(relativePath, size, size, 0);
+                return rawFile(file, relativePath, bytes);
+            }
+            LanguageAnalyzer analyzer = findAnalyzer(file.getFileName().toString());
+            SkeletonLevel level = analyzer != null ? skeletonLevels.levelFor(relativePath) : null;
+            if (knownHash != null) {
+                String skeleton = knownSkeleton(cached, analyzer, level, knownHash);
+                if (skeleton != null) {
+                    indexSymbols(symbolAnalyzer, relativePath, knownHash, null, onDisk ? () -> Files.newInputStream(file) : opener);
+                    if (nextManifest != null && onDisk) {
+                        nextManifest.put(new ScanManifest.Entry(relativePath, size, lastModified, knownHash, skeleton));
+                    }
+                    logger.debug("Skeleton known for content hash: {}", relativePath);
+                    recordFile(relativePath, size, skeleton.length(), 0);
+                    return new ProjectFile(relativePath, skeleton);
+                }
+            }
+
+            byte[] bytes = readText(onDisk ? Files.newInputStream(file) : opener.open());
+            if (bytes == null) {
+                logger.debug("Skipping binary file: {}", relativePath);
+                return null;
+            }
+            String content = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes)).toString();
+            String hash = knownHash;
+            if (hash == null && (nextManifest != null || (analyzer != null && skeletonCache != null) || symbolAnalyzer != null)) {
+                hash = ContentHash.of(bytes);
+            }
+            if (stats != null) {
+                stats.record(ScanStats.Phase.READ, startWall, startCpu);
+            }
+            String skeleton;
+            AnalysisResult analyzed = null;
+            if (cached != null && cached.contentHash().equals(hash)) {
+                skeleton = cached.skeleton();
+            } else if (analyzer != null) {
+                long analyzeWall = stats != null ? System.nanoTime() : 0;
+                long analyzeCpu = stats != null ? ScanStats.cpuTime() : -1;
+                analyzed = analyze(analyzer, level, content, hash);
+                skeleton = analyzed.hasSkeleton() ? analyzed.skeleton() : null;
+                if (stats != null) {
+                    stats.record(ScanStats.Phase.ANALYZE, analyzeWall, analyzeCpu);
+                }
+            } else {
+                skeleton = null;
+            }
+            if (symbolAnalyzer != null) {
+                AnalysisResult sameAnalysis = analyzed != null && analyzer.version().equals(symbolAnalyzer.version()) ? analyzed : null;
+                indexSymbols(symbolAnalyzer, relativePath, hash, sameAnalysis, () -> new ByteArrayInputStream(bytes));
+            }
+            if (nextManifest != null && onDisk) {
+                nextManifest.put(new ScanManifest.Entry(relativePath, size, lastModified, hash, skeleton));
+            }
+            logger.debug("Processed: {}", relativePath);
+            recordFile(relativePath, size, skeleton != null ? skeleton.length() : content.length(), System.nanoTime() - startWall);
+            if (skeleton != null) {
+                return new ProjectFile(relativePath, skeleton);
+            }
+            return onDisk ? rawFile(file, relativePath, bytes) : ProjectFile.ofUtf8(relativePath, bytes);
         } catch (IOException e) {
-            logger.warn("Skipping file due to read error (possibly binary): {} - {}", relativePath, e.getMessage());
-            return FileVisitResult.CONTINUE;
+            logger.warn("Skipping file due to read error: {} - {}", relativePath, e.getMessage());
+            return null;
         }
-        String fileName = file.getFileName().toString();
+    }
 
+    /**
+     * Reads content unless its first bytes show that it is binary.
+     * @param stream the content, closed when done.
+     * @return the content, or null for binary content.
+     */
+    private static byte[] readText(InputStream stream) throws IOException {
+        try (InputStream in = stream) {
+            byte[] prefix = in.readNBytes(BinaryDetector.PREFIX_SIZE);
+            boolean complete = prefix.length < BinaryDetector.PREFIX_SIZE;
+            if (BinaryDetector.looksBinary(prefix, prefix.length, complete)) {
+                return null;
+            }
+            if (complete) {
+                return prefix;
+            }
+            byte[] rest = in.readAllBytes();
+            byte[] bytes = Arrays.copyOf(prefix, prefix.length + rest.length);
+            System.arraycopy(rest, 0, bytes, prefix.length, rest.length);
+            return bytes;
+        }
+    }
+
+    private void recordFile(String relativePath, long size, long charsOut, long nanos) {
+        if (stats != null) {
+            stats.recordFile(relativePath, size, charsOut, nanos);
+        }
+        if (sizeListener != null) {
+            sizeListener.fileSized(relativePath, size, charsOut);
+        }
+    }
+
+    private ProjectFile rawFile(Path file, String relativePath, byte[] bytes) throws IOException {
+        return switch (contentMode) {
+            case MEMORY -> ProjectFile.ofUtf8(relativePath, bytes);
+            case LAZY -> ProjectFile.lazy(relativePath, file);
+            case MAPPED -> ProjectFile.mapped(relativePath, file);
+        };
+    }
+
+    private LanguageAnalyzer findAnalyzer(String fileName) {
+        return findAnalyzer(analyzers, fileName);
+    }
+
+    private static LanguageAnalyzer findAnalyzer(List<LanguageAnalyzer> analyzers, String fileName) {
         if (analyzers != null) {
             for (LanguageAnalyzer analyzer : analyzers) {
                 if (analyzer.supports(fileName)) {
-                    AnalysisResult result = analyzer.analyze(content);
-                    if (!result.hasErrors()) {
-                        content = result.skeleton();
-                    }
-                    break;
+                    return analyzer;
                 }
             }
         }
-        files.add(new ProjectFile(relativePath, content));
-        logger.info("Processed: {}", relativePath);
-        
-        return FileVisitResult.CONTINUE;
+        return null;
     }
 
-    private void loadParentIgnoreFiles() {
-        Path gitRoot = findGitRoot(rootDir);
-        List<Path> parents = new java.util.ArrayList<>();
-        Path current = rootDir.getParent();
-        
-        while (current != null) {
-            parents.add(current);
-            if (current.equals(gitRoot)) break;
-            current = current.getParent();
+    /**
+     * Looks up the skeleton of content identified by its hash, without reading the file.
+     * @return the skeleton, or null if it is not cached or the file is kept as is.
+     */
+    private String knownSkeleton(ScanManifest.Entry cached, LanguageAnalyzer analyzer, SkeletonLevel level, String hash) {
+        if (cached != null && hash.equals(cached.contentHash())) {
+            return cached.skeleton();
         }
-        
-        // Reverse to push higher level ignore files first (bottom of stack)
-        java.util.Collections.reverse(parents);
-        for (Path p : parents) {
-            try {
-                loadIgnoreFile(p, ".gitignore");
-                loadIgnoreFile(p, ".jsmashyignore");
-            } catch (IOException e) {
-                logger.warn("Failed to load parent ignore file in {}: {}", p, e.getMessage());
-            }
+        if (analyzer == null || skeletonCache == null) {
+            return null;
+        }
+        AnalysisResult result = skeletonCache.get(analyzer.version(level), hash);
+        if (result == null || !result.hasSkeleton()) {
+            return null;
+        }
+        if (result.isPartial()) {
+            partialSkeletons.incrementAndGet();
         }
+        return result.skeleton();
     }
 
-    private Path findGitRoot(Path startPath) {
-        Path current = startPath;
-        while (current != null) {
-            if (Files.exists(current.resolve(".git"))) {
-                return current;
+    /**
+     * Records a file's symbols in the symbol index, if one of its analyzers supports the file.
+     * @param analyzed the result of analyzing the content with that analyzer, or null if it was not analyzed.
+     * @param opener opens the content, if it has to be parsed after all.
+     */
+    private void indexSymbols(LanguageAnalyzer analyzer, String relativePath, String hash, AnalysisResult analyzed, ContentOpener opener) throws IOException {
+        if (analyzer == null) {
+            return;
+        }
+        if (analyzed != null) {
+            symbolIndex.put(relativePath, hash, analyzed.symbols());
+            return;
+        }
+        SourceSymbols previous = symbolIndex.previous(hash);
+        if (previous != null) {
+            symbolIndex.put(relativePath, hash, previous);
+            return;
+        }
+        // Symbols do not depend on the skeleton level, so any level's cache entry would do
+        String version = analyzer.version(SkeletonLevel.SIGNATURES_WITH_DOCS);
+        AnalysisResult result = skeletonCache != null ? skeletonCache.get(version, hash) : null;
+        if (result == null) {
+            byte[] bytes = readText(opener.open());
+            if (bytes == null) {
+                return;
+            }
+            result = analyzer.analyze(StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes)).toString(), SkeletonLevel.SIGNATURES_WITH_DOCS);
+            if (skeletonCache != null) {
+                skeletonCache.put(version, hash, result);
             }
-            current = current.getParent();
         }
-        return null;
+        symbolIndex.put(relativePath, hash, result.symbols());
     }
 
-}
\ No newline at end of file
+    private AnalysisResult analyze(LanguageAnalyzer analyzer, SkeletonLevel level, String content, String hash) {
+        AnalysisResult result = skeletonCache != null ? skeletonCache.get(analyzer.version(level), hash) : null;
+        if (result == null) {
+            long start = System.nanoTime();
+            result = analyzer.analyze(content, level);
+            if (stats != null) {
+                stats.recordAnalysis(analyzer.version(level), System.nanoTime() - start);
+            }
+            if (skeletonCache != null) {
+                skeletonCache.put(analyzer.version(level), hash, result);
+            }
+        }
+        if (result.isPartial()) {
+            partialSkeletons.incrementAndGet();
+            logger.debug("Partial skeleton for a file with errors: {}", result.errors().get(0));
+        } else if (result.hasErrors()) {
+            unparsedFiles.incrementAndGet();
+            unparsedChars.addAndGet(content.length());
+            logger.debug("Keeping a file with errors whole: {}", result.errors().get(0));
+        }
+        return result;
+    }
+}
@@ -3,7 +3,22 @@ package org.roxycode.jsmashy.core;
 import java.io.IOException;
 import java.nio.file.*;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import org.roxycode.jsmashy.languages.LanguageAnalyzer;
 import org.roxycode.jsmashy.languages.JavaLanguageAnalyzer;
 import org.slf4j.Logger;
@@ -12,21 +27,413 @@ import org.slf4j.LoggerFactory;
 public class RepositoryScanner {
     private static final Logger logger = LoggerFactory.getLogger(RepositoryScanner.class);
     private final List<LanguageAnalyzer> analyzers;
+    private final ScanOptions options;
 
-    public RepositoryScanner(List<LanguageAnalyzer> analyzers) {
+    public RepositoryScanner(List<LanguageAnalyzer> analyzers, ScanOptions options) {
         this.analyzers = analyzers;
+        this.options = options;
+    }
+
+    public RepositoryScanner(List<LanguageAnalyzer> analyzers) {
+        this(analyzers, new ScanOptions());
+    }
+
+    public RepositoryScanner(ScanOptions options) {
+        this(List.of(new JavaLanguageAnalyzer()), options);
     }
 
     public RepositoryScanner() {
-        this(List.of(new JavaLanguageAnalyzer()));
+        this(new ScanOptions());
     }
 
     public List<ProjectFile> scan(Path rootDir) throws IOException {
-        logger.info("Starting repository scan: {}", rootDir);
-        Path absoluteRoot = rootDir.toAbsolutePath().normalize();
+        return scan(rootDir, null);
+    }
+
+    /**
+     * Scans a directory, or the directory as it is in a git revision. A revision is read from the
+     * object database without touching the work tree. The manifest is not used; the skeleton cache is, keyed by blob id.
+     * @param rootDir a directory in the work tree of a repository, or the repository itself.
+     * @param revision the revision to read, such as a branch, a tag or a commit id, or null for the work tree.
+     * @return the files, in tree order when a revision is read.
+     * @throws IOException if the revision cannot be resolved or reading fails.
+     */
+    public List<ProjectFile> scan(Path rootDir, String revision) throws IOException {
         List<ProjectFile> files = new ArrayList<>();
-        Files.walkFileTree(absoluteRoot, new ProjectFileVisitor(absoluteRoot, files, analyzers));
+        run(rootDir, revision, null, files::add, false);
         logger.info("Scan complete. Found {} files.", files.size());
         return files;
     }
+
+    /**
+     * Compares a directory between two git revisions, as two full scans at those revisions would
+     * see it. Only the files that differ are read and analyzed. A file counts as added or deleted
+     * when it starts or stops being scanned, also because it became binary, too large or ignored.
+     * When an ignore file differs, every file is listed at both revisions, since a file may start or
+     * stop being ignored without changing itself.
+     * @param rootDir a directory in the work tree of a repository, or the repository itself.
+     * @param fromRevision the revision the consumer has already seen.
+     * @param toRevision the revision to bring the consumer up to.
+     * @return the delta.
+     * @throws IOException if a revision cannot be resolved or reading fails.
+     */
+    public CodebaseDelta scanDelta(Path rootDir, String fromRevision, String toRevision) throws IOException {
+        Path absoluteRoot = rootDir.toAbsolutePath().normalize();
+        Map<String, CodebaseDelta.ChangeType> changed = GitWalker.diff(absoluteRoot, fromRevision, toRevision);
+        boolean rulesChanged = changed.keySet().stream().anyMatch(RepositoryScanner::isIgnoreFile);
+        Set<String> candidates = rulesChanged ? null : changed.keySet();
+        Set<String> before = scannedPaths(absoluteRoot, fromRevision, candidates);
+        Set<String> after = rulesChanged ? scannedPaths(absoluteRoot, toRevision, null) : null;
+
+        Set<String> wanted = new HashSet<>();
+        if (rulesChanged) {
+            for (String path : after) {
+                if (changed.containsKey(path) || !before.contains(path)) {
+                    wanted.add(path);
+                }
+            }
+        } else {
+            changed.forEach((path, type) -> {
+                if (type != CodebaseDelta.ChangeType.DELETED) {
+                    wanted.add(path);
+                }
+            });
+        }
+        Map<String, ProjectFile> files = new HashMap<>();
+        if (!wanted.isEmpty()) {
+            run(rootDir, toRevision, wanted, file -> {
+                String path = file.getPath().replace('\\', '/');
+                if (wanted.contains(path)) {
+                    files.put(path, file);
+                }
+            }, false);
+        }
+
+        List<CodebaseDelta.Change> changes = new ArrayList<>();
+        files.forEach((path, file) -> changes.add(new CodebaseDelta.Change(
+                before.contains(path) ? CodebaseDelta.ChangeType.MODIFIED : CodebaseDelta.ChangeType.ADDED, file.getPath(), file)));
+        for (String path : before) {
+            if (!files.containsKey(path) && (after == null || !after.contains(path))) {
+                changes.add(new CodebaseDelta.Change(CodebaseDelta.ChangeType.DELETED, path, null));
+            }
+        }
+        logger.info("Delta {}..{} complete. {} changed files.", fromRevision, toRevision, changes.size());
+        return new CodebaseDelta(changes);
+    }
+
+    private static boolean isIgnoreFile(String path) {
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        return name.equals(".gitignore") || name.equals(".jsmashyignore");
+    }
+
+    /**
+     * Lists the files a scan at a revision would produce, without analyzing them.
+     * @param onlyPaths if not null, the only paths to consider.
+     * @return the paths with '/' separators.
+     */
+    private Set<String> scannedPaths(Path absoluteRoot, String revision, Set<String> onlyPaths) throws IOException {
+        Set<String> paths = new HashSet<>();
+        if (onlyPaths == null || !onlyPaths.isEmpty()) {
+            walk(absoluteRoot, revision, onlyPaths, file -> {
+                String path = file.getPath().replace('\\', '/');
+                // Ignore files are always visited, since they decide what else is
+                if (onlyPaths == null || onlyPaths.contains(path)) {
+                    paths.add(path);
+                }
+            }, false, false);
+        }
+        return paths;
+    }
+
+    /**
+     * Returns a publisher that scans the directory once per subscriber, on a background thread,
+     * and publishes the files in {@link ProjectFile#TREE_ORDER} as soon as they are analyzed.
+     * At most {@link ScanOptions#getQueueDepth()} files are analyzed ahead of the subscriber and
+     * as many are buffered for it; beyond that the scan waits for the subscriber to catch up.
+     * @param rootDir the directory to scan.
+     * @return the publisher; a scan failure is signalled through {@code onError}.
+     */
+    public Flow.Publisher<ProjectFile> publish(Path rootDir) {
+        return publish(rootDir, null);
+    }
+
+    /**
+     * Like {@link #publish(Path)}, for the directory as it is in a git revision.
+     * @param rootDir the directory to scan.
+     * @param revision the revision to read, or null for the work tree.
+     * @return the publisher.
+     * @see #scan(Path, String)
+     */
+    public Flow.Publisher<ProjectFile> publish(Path rootDir, String revision) {
+        return subscriber -> {
+            SubmissionPublisher<ProjectFile> publisher = new SubmissionPublisher<>(
+                    task -> Thread.ofVirtual().name("jsmashy-publish").start(task), options.getQueueDepth());
+            publisher.subscribe(subscriber);
+            Thread.ofPlatform().daemon().name("jsmashy-walk").start(() -> {
+                try {
+                    run(rootDir, revision, null, file -> {
+                        if (publisher.getNumberOfSubscribers() == 0) {
+                            throw new CancellationException("Subscriber cancelled the scan");
+                        }
+                        publisher.submit(file);
+                    }, true);
+                    publisher.close();
+                } catch (CancellationException e) {
+                    logger.debug("Scan of {} cancelled", rootDir);
+                    publisher.close();
+                } catch (Throwable e) {
+                    publisher.closeExceptionally(e);
+                }
+            });
+        };
+    }
+
+    /**
+     * Creates an index of a directory that follows its changes, with this scanner's analyzers and options.
+     * @param rootDir the directory to index.
+     * @return the index; {@link LiveIndex#start()} scans the directory and starts watching it.
+     */
+    public LiveIndex watch(Path rootDir) {
+        return new LiveIndex(rootDir, analyzers, options);
+    }
+
+    /**
+     * Scans the directory and formats it in one pipeline: traversal, analysis and formatting
+     * overlap, and memory stays bounded by the queue depth instead of the repository size.
+     * With a {@link ScanOptions#setTokenBudget(long) token budget} the files are formatted once all
+     * are scanned, since the budget can only be shared out then.
+     * @param rootDir the directory to scan.
+     * @param formatter the formatter producing the document.
+     * @param out the destination of the document.
+     * @return the number of files written.
+     * @throws IOException if the scan or writing the document fails.
+     */
+    public int scanAndFormat(Path rootDir, SmashFormatter formatter, Appendable out) throws IOException {
+        return scanAndFormat(rootDir, null, formatter, out);
+    }
+
+    /**
+     * Like {@link #scanAndFormat(Path, SmashFormatter, Appendable)}, for the directory as it is in a git revision.
+     * @param rootDir the directory to scan.
+     * @param revision the revision to read, or null for the work tree.
+     * @param formatter the formatter producing the document.
+     * @param out the destination of the document.
+     * @return the number of files written.
+     * @throws IOException if the scan or writing the document fails.
+     * @see #scan(Path, String)
+     */
+    public int scanAndFormat(Path rootDir, String revision, SmashFormatter formatter, Appendable out) throws IOException {
+        ScanStats stats = options.getStats();
+        if (options.getTokenBudget() > 0) {
+            // The planner holds every file anyway, and the formatter can then see which were left out
+            List<ProjectFile> files = scan(rootDir, revision);
+            long start = stats != null ? System.nanoTime() : 0;
+            long startCpu = stats != null ? ScanStats.cpuTime() : -1;
+            formatter.format(files, out);
+            if (stats != null) {
+                stats.record(ScanStats.Phase.FORMAT, start, startCpu);
+            }
+            return files.size();
+        }
+        SmashWriter writer = formatter.open(out);
+        CompletableFuture<Integer> done = new CompletableFuture<>();
+        publish(rootDir, revision).subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+            private int count;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ProjectFile file) {
+                long start = stats != null ? System.nanoTime() : 0;
+                long startCpu = stats != null ? ScanStats.cpuTime() : -1;
+                try {
+                    writer.write(file);
+                    if (stats != null) {
+                        stats.record(ScanStats.Phase.FORMAT, start, startCpu);
+                    }
+                    count++;
+                } catch (IOException | RuntimeException e) {
+                    subscription.cancel();
+                    done.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                long start = stats != null ? System.nanoTime() : 0;
+                long startCpu = stats != null ? ScanStats.cpuTime() : -1;
+                try {
+                    writer.finish();
+                    if (stats != null) {
+                        stats.record(ScanStats.Phase.FORMAT, start, startCpu);
+                    }
+                    done.complete(count);
+                } catch (IOException e) {
+                    done.completeExceptionally(e);
+                }
+            }
+        });
+
+        try {
+            int count = done.get();
+            logger.info("Scan complete. Formatted {} files.", count);
+            return count;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while scanning " + rootDir, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Scan of " + rootDir + " failed", e.getCause());
+        }
+    }
+
+    private void run(Path rootDir, String revision, Set<String> onlyPaths, Consumer<ProjectFile> sink, boolean sorted) throws IOException {
+        if (revision != null) {
+            logger.info("Starting repository scan: {} at {}", rootDir, revision);
+        } else {
+            logger.info("Starting repository scan: {}", rootDir);
+        }
+        Path absoluteRoot = rootDir.toAbsolutePath().normalize();
+        if (options.getTokenBudget() <= 0) {
+            walk(absoluteRoot, revision, onlyPaths, sink, sorted, true);
+            return;
+        }
+
+        // The planner reduces the scanned files, and can only choose which once it has seen all of them
+        List<ProjectFile> files = new ArrayList<>();
+        walk(absoluteRoot, revision, onlyPaths, files::add, sorted, true);
+        TokenBudgetPlanner planner = new TokenBudgetPlanner(analyzers, options.getSkeletonCache(), options.getSkeletonLevels(),
+                options.getFilePriority(), options.getCharsPerToken());
+        planner.fit(files, options.getTokenBudget()).forEach(sink);
+    }
+
+    private void walk(Path absoluteRoot, String revision, Set<String> onlyPaths, Consumer<ProjectFile> sink, boolean sorted,
+                      boolean analyze) throws IOException {
+        long startTime = System.currentTimeMillis();
+        Path manifestFile = options.getManifestFile() != null && revision == null ? options.getManifestFile().toAbsolutePath().normalize() : null;
+        Map<Path, ScanManifest> manifests = revision == null ? options.getManifests() : null;
+        // A manifest records skeletons, so only scans that analyze files keep it up to date
+        boolean useManifest = (manifestFile != null || manifests != null) && analyze;
+        ScanManifest previous = null;
+        ScanManifest next = null;
+        if (useManifest) {
+            String fingerprint = fingerprint();
+            previous = manifests != null ? manifests.get(absoluteRoot) : null;
+            if (previous == null || !previous.getFingerprint().equals(fingerprint)) {
+                previous = manifestFile != null ? ScanManifest.load(manifestFile, fingerprint) : new ScanManifest(fingerprint, 0);
+            }
+            next = new ScanManifest(fingerprint, startTime);
+        }
+        Path symbolIndexFile = options.getSymbolIndexFile() != null && revision == null ? options.getSymbolIndexFile() : null;
+        SymbolIndex symbolIndex = symbolIndexFile != null ? SymbolIndex.load(symbolIndexFile).next() : null;
+
+        int parallelism = options.effectiveParallelism();
+        ExecutorService executor = null;
+        if (parallelism > 1) {
+            logger.info("Scanning with {} worker threads", parallelism);
+            executor = Executors.newFixedThreadPool(parallelism, new WorkerThreadFactory());
+        }
+        try {
+            ProjectFileVisitor visitor = new ProjectFileVisitor(absoluteRoot, sink, analyze ? analyzers : List.of(), executor);
+            visitor.setContentMode(options.getContentMode());
+            visitor.setMaxFileSize(options.getMaxFileSize());
+            visitor.useSkeletonLevels(options.getSkeletonLevels());
+            if (options.getSkeletonCache() != null) {
+                visitor.useSkeletonCache(options.getSkeletonCache());
+            }
+            if (useManifest) {
+                visitor.useManifest(previous, next);
+            }
+            // Files the scan writes while it runs must not be read back into it
+            if (manifestFile != null) {
+                visitor.exclude(manifestFile);
+            }
+            if (options.getSymbolIndexFile() != null) {
+                visitor.exclude(options.getSymbolIndexFile().toAbsolutePath().normalize());
+            }
+            options.getExcludedPaths().forEach(visitor::exclude);
+            if (symbolIndex != null) {
+                visitor.useSymbolIndex(symbolIndex, analyzers.stream().map(LanguageAnalyzer::symbolAnalyzer).toList());
+            }
+            if (sorted) {
+                visitor.setMaxPending(options.getQueueDepth());
+            }
+            // Walks that only list paths, as for a delta, are not the scan being measured
+            ScanStats stats = analyze ? options.getStats() : null;
+            visitor.useStats(stats);
+            ScanStats.Span span = stats != null ? stats.begin() : null;
+            if (revision != null) {
+                GitWalker.walkRevision(absoluteRoot, revision, onlyPaths, visitor);
+            } else if (options.isGitIndex() && GitWalker.walkIndex(absoluteRoot, visitor)) {
+                logger.info("Enumerated files from the git index");
+            } else if (sorted) {
+                SortedTreeWalker.walk(absoluteRoot, visitor);
+            } else {
+                Files.walkFileTree(absoluteRoot, visitor);
+            }
+            visitor.awaitPending();
+            if (stats != null) {
+                stats.end(ScanStats.Phase.WALK, span);
+            }
+            reportSyntaxErrors(visitor);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        if (useManifest && manifests != null) {
+            manifests.put(absoluteRoot, next);
+            logger.debug("Manifest of {} kept in memory ({} entries)", absoluteRoot, next.size());
+        }
+        if (useManifest && manifestFile != null) {
+            next.save(manifestFile);
+            logger.info("Manifest updated: {} ({} entries)", manifestFile, next.size());
+        }
+        if (symbolIndex != null) {
+            symbolIndex.save(symbolIndexFile);
+            logger.info("Symbol index updated: {} ({} files)", symbolIndexFile, symbolIndex.size());
+        }
+    }
+
+    private void reportSyntaxErrors(ProjectFileVisitor visitor) {
+        if (visitor.getPartialSkeletons() > 0) {
+            logger.info("{} files with syntax errors were reduced to partial skeletons", visitor.getPartialSkeletons());
+        }
+        if (visitor.getUnparsedFiles() > 0) {
+            logger.warn("{} files with syntax errors were kept whole, costing about {} tokens", visitor.getUnparsedFiles(),
+                    Math.round(visitor.getUnparsedChars() / options.getCharsPerToken()));
+        }
+    }
+
+    /**
+     * Identifies the analyzer configuration, so manifests produced by other analyzers or skeleton levels are discarded.
+     */
+    private String fingerprint() {
+        String versions = analyzers.stream().map(LanguageAnalyzer::version).collect(Collectors.joining(","));
+        return options.getSkeletonLevels().isDefault() ? versions : versions + "|" + options.getSkeletonLevels();
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "jsmashy-scan-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
@@ -0,0 +1,178 @@
+package org.roxycode.jsmashy.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent record of a previous scan, used to skip reading and analyzing unchanged files.
+ * <p>
+ * Each entry stores the file's size, modification time, content hash and, for analyzed files,
+ * the skeleton that was produced. A manifest is only valid for the analyzer configuration
+ * described by its fingerprint; loading it with a different fingerprint yields an empty manifest.
+ */
+public class ScanManifest {
+    private static final Logger logger = LoggerFactory.getLogger(ScanManifest.class);
+    private static final int FORMAT_VERSION = 1;
+    // The coarsest modification time resolution in common use; FAT records even seconds
+    private static final long MODIFIED_TIME_GRANULARITY_MILLIS = 2000;
+
+    /**
+     * A manifest entry for one file.
+     * @param path the path relative to the scan root.
+     * @param size the file size in bytes.
+     * @param lastModified the modification time in milliseconds.
+     * @param contentHash the git blob id of the file content.
+     * @param skeleton the analyzer output, or null if the raw content is used.
+     */
+    public record Entry(String path, long size, long lastModified, String contentHash, String skeleton) {
+    }
+
+    private final String fingerprint;
+    private final long timestamp;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an empty manifest.
+     * @param fingerprint identifies the analyzer configuration the entries were produced with.
+     * @param timestamp the time the scan producing this manifest started, in milliseconds.
+     */
+    public ScanManifest(String fingerprint, long timestamp) {
+        this.fingerprint = fingerprint;
+        this.timestamp = timestamp;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Entry get(String path) {
+        return entries.get(path);
+    }
+
+    public void put(Entry entry) {
+        entries.put(entry.path(), entry);
+    }
+
+    public Collection<Entry> entries() {
+        return entries.values();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Checks whether an entry's metadata can be trusted without hashing the file again.
+     * Files modified shortly before the previous scan started may have changed again after being
+     * read without their modification time changing, since file systems round it to as much as
+     * two seconds. They are treated as suspect, like racily clean entries in git.
+     * @param entry the stored entry.
+     * @param size the current file size.
+     * @param lastModified the current modification time in milliseconds.
+     * @return true if the file is unchanged since the entry was recorded.
+     */
+    public boolean isUnchanged(Entry entry, long size, long lastModified) {
+        return entry.size() == size && entry.lastModified() == lastModified
+                && lastModified < timestamp - MODIFIED_TIME_GRANULARITY_MILLIS;
+    }
+
+    /**
+     * Loads a manifest from disk.
+     * @param file the manifest file.
+     * @param fingerprint the analyzer configuration expected by the caller.
+     * @return the stored manifest, or an empty one if the file is missing, unreadable or stale.
+     */
+    public static ScanManifest load(Path file, String fingerprint) {
+        if (!Files.exists(file)) {
+            return new ScanManifest(fingerprint, 0);
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                logger.info("Ignoring manifest with unsupported format: {}", file);
+                return new ScanManifest(fingerprint, 0);
+            }
+            String storedFingerprint = in.readUTF();
+            if (!storedFingerprint.equals(fingerprint)) {
+                logger.info("Ignoring manifest built with different analyzers: {}", file);
+                return new ScanManifest(fingerprint, 0);
+            }
+            ScanManifest manifest = new ScanManifest(fingerprint, in.readLong());
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                String hash = in.readUTF();
+                String skeleton = in.readBoolean() ? readString(in) : null;
+                manifest.put(new Entry(path, size, lastModified, hash, skeleton));
+            }
+            return manifest;
+        } catch (IOException e) {
+            logger.warn("Failed to read manifest {}, starting from scratch: {}", file, e.getMessage());
+            return new ScanManifest(fingerprint, 0);
+        }
+    }
+
+    /**
+     * Writes the manifest to disk, replacing any previous version atomically.
+     * @param file the manifest file.
+     * @throws IOException if the manifest cannot be written.
+     */
+    public void save(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(fingerprint);
+                out.writeLong(timestamp);
+                out.writeInt(entries.size());
+                for (Entry entry : entries.values()) {
+                    out.writeUTF(entry.path());
+                    out.writeLong(entry.size());
+                    out.writeLong(entry.lastModified());
+                    out.writeUTF(entry.contentHash());
+                    out.writeBoolean(entry.skeleton() != null);
+                    if (entry.skeleton() != null) {
+                        writeString(out, entry.skeleton());
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // writeUTF is limited to 64KB, so large skeletons are stored as length-prefixed UTF-8
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
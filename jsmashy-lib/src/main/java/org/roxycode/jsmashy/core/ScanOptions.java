@@ -0,0 +1,303 @@
+package org.roxycode.jsmashy.core;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tunable settings for a {@link RepositoryScanner} run.
+ */
+public class ScanOptions {
+    /**
+     * Parallelism value meaning "one worker per available processor".
+     */
+    public static final int AUTO_PARALLELISM = 0;
+
+    /**
+     * Default size above which files are skipped.
+     */
+    public static final long DEFAULT_MAX_FILE_SIZE = 10L * 1024 * 1024;
+
+    /**
+     * Default number of files in flight between the stages of a pipelined scan.
+     */
+    public static final int DEFAULT_QUEUE_DEPTH = 256;
+
+    private int parallelism = 1;
+    private Path manifestFile;
+    private Map<Path, ScanManifest> manifests;
+    private SkeletonCache skeletonCache;
+    private ContentMode contentMode = ContentMode.MEMORY;
+    private long maxFileSize = DEFAULT_MAX_FILE_SIZE;
+    private int queueDepth = DEFAULT_QUEUE_DEPTH;
+    private boolean gitIndex;
+    private SkeletonLevels skeletonLevels = new SkeletonLevels();
+    private long tokenBudget;
+    private double charsPerToken = TokenBudgetPlanner.DEFAULT_CHARS_PER_TOKEN;
+    private Comparator<TokenBudgetPlanner.Candidate> filePriority = FilePriority.DEFAULT;
+    private ScanStats stats;
+    private Path symbolIndexFile;
+    private final Set<Path> excludedPaths = new LinkedHashSet<>();
+
+    /**
+     * @return the number of worker threads used to read and analyze files.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of worker threads used to read and analyze files.
+     * A value of 1 scans sequentially on the calling thread, {@link #AUTO_PARALLELISM} uses all processors.
+     * @param parallelism the number of workers.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 0) {
+            throw new IllegalArgumentException("Parallelism must not be negative: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return the effective worker count, resolving {@link #AUTO_PARALLELISM}.
+     */
+    public int effectiveParallelism() {
+        return parallelism == AUTO_PARALLELISM ? Runtime.getRuntime().availableProcessors() : parallelism;
+    }
+
+    /**
+     * @return the manifest file used for incremental scans, or null for a full scan.
+     */
+    public Path getManifestFile() {
+        return manifestFile;
+    }
+
+    /**
+     * Enables incremental scanning backed by the given manifest file.
+     * The manifest is read before the scan and rewritten after it.
+     * @param manifestFile the manifest location, or null to disable incremental scanning.
+     */
+    public void setManifestFile(Path manifestFile) {
+        this.manifestFile = manifestFile;
+    }
+
+    /**
+     * @return the in-memory manifests of incremental scans, by absolute scan root, or null if not kept in memory.
+     */
+    public Map<Path, ScanManifest> getManifests() {
+        return manifests;
+    }
+
+    /**
+     * Enables incremental scanning backed by manifests held in memory, for a long-lived process
+     * scanning the same roots repeatedly. The manifest of each root is replaced after every scan.
+     * When a manifest file is also set, it is read if the root has no manifest in memory yet, and
+     * is still rewritten after the scan.
+     * @param manifests a thread-safe map from absolute scan root to manifest, or null to disable.
+     */
+    public void setManifests(Map<Path, ScanManifest> manifests) {
+        this.manifests = manifests;
+    }
+
+    /**
+     * @return the content-addressed cache of analyzer results, or null if disabled.
+     */
+    public SkeletonCache getSkeletonCache() {
+        return skeletonCache;
+    }
+
+    /**
+     * Sets the content-addressed cache consulted before running an analyzer.
+     * @param skeletonCache the cache, or null to always analyze.
+     */
+    public void setSkeletonCache(SkeletonCache skeletonCache) {
+        this.skeletonCache = skeletonCache;
+    }
+
+    /**
+     * @return how the content of files without a skeleton is kept until it is formatted.
+     */
+    public ContentMode getContentMode() {
+        return contentMode;
+    }
+
+    /**
+     * Sets how the content of files without a skeleton is kept until it is formatted.
+     * @param contentMode the content mode.
+     */
+    public void setContentMode(ContentMode contentMode) {
+        this.contentMode = contentMode;
+    }
+
+    /**
+     * @return the size in bytes above which files are skipped.
+     */
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    /**
+     * Skips files larger than the given size without reading them, such as bundled assets or data dumps.
+     * @param maxFileSize the maximum size in bytes, or {@link Long#MAX_VALUE} for no limit.
+     */
+    public void setMaxFileSize(long maxFileSize) {
+        if (maxFileSize <= 0) {
+            throw new IllegalArgumentException("Maximum file size must be positive: " + maxFileSize);
+        }
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * @return the number of files in flight between the stages of a pipelined scan.
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Bounds the files a pipelined scan holds: up to this many are analyzed ahead of the consumer,
+     * and as many are buffered for it.
+     * @param queueDepth the queue depth.
+     */
+    public void setQueueDepth(int queueDepth) {
+        if (queueDepth <= 0) {
+            throw new IllegalArgumentException("Queue depth must be positive: " + queueDepth);
+        }
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * @return true if files of a git work tree are enumerated from the git index.
+     */
+    public boolean isGitIndex() {
+        return gitIndex;
+    }
+
+    /**
+     * Enumerates the files of a git work tree from the git index and the untracked files git does not
+     * ignore, instead of listing every directory. Ignored directories are never descended into, and files
+     * unchanged since they were staged are recognized by their stat data. Roots outside a git work tree
+     * are scanned from the file system.
+     * @param gitIndex whether to use the git index.
+     */
+    public void setGitIndex(boolean gitIndex) {
+        this.gitIndex = gitIndex;
+    }
+
+    /**
+     * @return the skeleton level of each file.
+     */
+    public SkeletonLevels getSkeletonLevels() {
+        return skeletonLevels;
+    }
+
+    /**
+     * Sets how much of each file its skeleton keeps, by path glob.
+     * @param skeletonLevels the skeleton levels.
+     */
+    public void setSkeletonLevels(SkeletonLevels skeletonLevels) {
+        this.skeletonLevels = skeletonLevels;
+    }
+
+    /**
+     * @return the maximum estimated tokens of the formatted codebase, or 0 for no limit.
+     */
+    public long getTokenBudget() {
+        return tokenBudget;
+    }
+
+    /**
+     * Fits the scan into a token budget by reducing the scanned skeletons to signatures, then files
+     * to their paths, least important first. See {@link TokenBudgetPlanner}.
+     * @param tokenBudget the maximum estimated tokens, or 0 for no limit.
+     */
+    public void setTokenBudget(long tokenBudget) {
+        if (tokenBudget < 0) {
+            throw new IllegalArgumentException("Token budget must not be negative: " + tokenBudget);
+        }
+        this.tokenBudget = tokenBudget;
+    }
+
+    /**
+     * @return the characters per token used to estimate the size of the formatted codebase.
+     */
+    public double getCharsPerToken() {
+        return charsPerToken;
+    }
+
+    /**
+     * Sets the characters per token used to estimate the size of the formatted codebase.
+     * @param charsPerToken the characters per token.
+     */
+    public void setCharsPerToken(double charsPerToken) {
+        if (!(charsPerToken > 0)) {
+            throw new IllegalArgumentException("Characters per token must be positive: " + charsPerToken);
+        }
+        this.charsPerToken = charsPerToken;
+    }
+
+    /**
+     * @return the order of files from most to least important when fitting a token budget.
+     */
+    public Comparator<TokenBudgetPlanner.Candidate> getFilePriority() {
+        return filePriority;
+    }
+
+    /**
+     * Sets the order of files from most to least important when fitting a token budget.
+     * @param filePriority the order, such as {@link FilePriority#DEFAULT}.
+     */
+    public void setFilePriority(Comparator<TokenBudgetPlanner.Candidate> filePriority) {
+        this.filePriority = filePriority;
+    }
+
+    /**
+     * @return the stats scans record into, or null if not recorded.
+     */
+    public ScanStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Records measurements of every scan with these options, see {@link ScanStats}.
+     * @param stats the stats to add to, or null to measure nothing.
+     */
+    public void setStats(ScanStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * @return the file the symbol index of working tree scans is kept in, or null if no index is built.
+     */
+    public Path getSymbolIndexFile() {
+        return symbolIndexFile;
+    }
+
+    /**
+     * Builds a {@link SymbolIndex} of the declarations in every working tree scan. The index is read
+     * before the scan, so unchanged files keep their symbols without being parsed, and rewritten after it.
+     * @param symbolIndexFile the index location, or null to build no index.
+     */
+    public void setSymbolIndexFile(Path symbolIndexFile) {
+        this.symbolIndexFile = symbolIndexFile;
+    }
+
+    /**
+     * @return the absolute paths every scan skips, besides the manifest and symbol index files.
+     */
+    public Set<Path> getExcludedPaths() {
+        return Collections.unmodifiableSet(excludedPaths);
+    }
+
+    /**
+     * Skips a file, or a directory with everything in it, such as the document a scan is written to
+     * while it runs.
+     * @param path the path to skip; a relative path is resolved against the working directory.
+     */
+    public void addExcludedPath(Path path) {
+        excludedPaths.add(path.toAbsolutePath().normalize());
+    }
+}
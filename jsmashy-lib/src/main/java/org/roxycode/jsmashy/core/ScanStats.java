@@ -0,0 +1,347 @@
+package org.roxycode.jsmashy.core;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measurements of one or more scans, recorded by a {@link RepositoryScanner} given these stats
+ * through {@link ScanOptions#setStats(ScanStats)}.
+ * <p>
+ * Records the time spent per {@link Phase}, a latency histogram per analyzer, bytes in and out per
+ * language, the slowest files and the content saved by writing duplicates as references. Recording takes a few clock reads per file and no locks on the
+ * common path, so it can stay enabled. CPU time is read only around work of at least a whole file,
+ * and is unavailable on virtual threads. All methods are thread-safe.
+ */
+public class ScanStats {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported();
+
+    /**
+     * Default number of slowest files remembered.
+     */
+    public static final int DEFAULT_SLOWEST_FILES = 10;
+
+    /**
+     * The phases of a scan. They are exclusive: time spent reading a file on the walking thread
+     * counts as {@link #READ}, not {@link #WALK}. Ignore rules are evaluated too often to read the
+     * CPU clock each time, so {@link #IGNORE} has wall time only and its CPU time counts as the walk's.
+     */
+    public enum Phase {
+        // Enumerating directories and files, including waiting for workers
+        WALK,
+        IGNORE,
+        READ,
+        ANALYZE,
+        FORMAT
+    }
+
+    /**
+     * Bytes read from and characters emitted for the files of one language.
+     */
+    public record LanguageStats(String language, long files, long bytesIn, long charsOut) {
+    }
+
+    /**
+     * Time spent on one file, from reading it to having its skeleton.
+     */
+    public record SlowFile(String path, long nanos) {
+    }
+
+    /**
+     * The start of a phase that encloses others, see {@link #begin()}.
+     */
+    public record Span(long wall, long cpu, long nestedWall, long nestedCpu) {
+    }
+
+    /**
+     * Latencies in power-of-two buckets of microseconds.
+     */
+    public static final class Histogram {
+        private static final int BUCKETS = 32;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder totalNanos = new LongAdder();
+
+        void record(long nanos) {
+            long micros = nanos / 1000;
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            counts.incrementAndGet(bucket);
+            totalNanos.add(nanos);
+        }
+
+        public long count() {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += counts.get(i);
+            }
+            return count;
+        }
+
+        public long totalNanos() {
+            return totalNanos.sum();
+        }
+
+        /**
+         * @param quantile between 0 and 1.
+         * @return the upper bound of the bucket holding the quantile, in microseconds, or 0 when empty.
+         */
+        public long percentileMicros(double quantile) {
+            long count = count();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= Math.max(1, rank)) {
+                    return 1L << i;
+                }
+            }
+            return 1L << (BUCKETS - 1);
+        }
+    }
+
+    private static final class PhaseTime {
+        final LongAdder wall = new LongAdder();
+        final LongAdder cpu = new LongAdder();
+    }
+
+    private static final class Language {
+        final LongAdder files = new LongAdder();
+        final LongAdder bytesIn = new LongAdder();
+        final LongAdder charsOut = new LongAdder();
+    }
+
+    private final Map<Phase, PhaseTime> phases = new EnumMap<>(Phase.class);
+    private final Map<String, Histogram> analyzers = new ConcurrentHashMap<>();
+    private final Map<String, Language> languages = new ConcurrentHashMap<>();
+    private final int slowestCount;
+    private final PriorityQueue<SlowFile> slowest = new PriorityQueue<>(Comparator.comparingLong(SlowFile::nanos));
+    private volatile long slowestThreshold;
+    private final LongAdder duplicateFiles = new LongAdder();
+    private final LongAdder duplicateChars = new LongAdder();
+    // Time recorded on this thread, so an enclosing span can exclude it
+    private final ThreadLocal<long[]> nested = ThreadLocal.withInitial(() -> new long[2]);
+
+    public ScanStats() {
+        this(DEFAULT_SLOWEST_FILES);
+    }
+
+    /**
+     * @param slowestCount the number of slowest files to remember.
+     */
+    public ScanStats(int slowestCount) {
+        this.slowestCount = slowestCount;
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new PhaseTime());
+        }
+    }
+
+    /**
+     * @return the CPU time of the current thread in nanoseconds, or -1 if it cannot be measured.
+     */
+    public static long cpuTime() {
+        return CPU_TIME && !Thread.currentThread().isVirtual() ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    /**
+     * Records the time since a start taken with {@link System#nanoTime()} and {@link #cpuTime()}.
+     * @param phase the phase.
+     * @param startWall the wall clock at the start.
+     * @param startCpu the CPU time at the start, or -1 to record wall time only.
+     */
+    public void record(Phase phase, long startWall, long startCpu) {
+        long wall = System.nanoTime() - startWall;
+        long cpu = startCpu >= 0 ? cpuTime() - startCpu : 0;
+        add(phase, wall, cpu);
+    }
+
+    /**
+     * Starts a phase that encloses others recorded on the current thread, such as the walk.
+     * @return the start, for {@link #end(Phase, Span)}.
+     */
+    public Span begin() {
+        long[] totals = nested.get();
+        return new Span(System.nanoTime(), cpuTime(), totals[0], totals[1]);
+    }
+
+    /**
+     * Records the time since {@link #begin()}, minus the time recorded on this thread in between.
+     * @param phase the phase.
+     * @param span the start.
+     */
+    public void end(Phase phase, Span span) {
+        long[] totals = nested.get();
+        long wall = System.nanoTime() - span.wall() - (totals[0] - span.nestedWall());
+        long cpu = span.cpu() >= 0 ? cpuTime() - span.cpu() - (totals[1] - span.nestedCpu()) : 0;
+        add(phase, Math.max(0, wall), Math.max(0, cpu));
+    }
+
+    private void add(Phase phase, long wall, long cpu) {
+        PhaseTime time = phases.get(phase);
+        time.wall.add(wall);
+        time.cpu.add(cpu);
+        long[] totals = nested.get();
+        totals[0] += wall;
+        totals[1] += cpu;
+    }
+
+    /**
+     * @param analyzer identifies the analyzer, such as its version.
+     * @param nanos the time one analysis took.
+     */
+    public void recordAnalysis(String analyzer, long nanos) {
+        analyzers.computeIfAbsent(analyzer, key -> new Histogram()).record(nanos);
+    }
+
+    /**
+     * @param path the file's path relative to the scan root.
+     * @param bytesIn the file size.
+     * @param charsOut the length of the content emitted for it.
+     * @param nanos the time taken to read and analyze it, or 0 if it was not read.
+     */
+    public void recordFile(String path, long bytesIn, long charsOut, long nanos) {
+        Language language = languages.computeIfAbsent(languageOf(path), key -> new Language());
+        language.files.increment();
+        language.bytesIn.add(bytesIn);
+        language.charsOut.add(charsOut);
+        if (slowestCount > 0 && nanos > slowestThreshold) {
+            synchronized (slowest) {
+                slowest.add(new SlowFile(path, nanos));
+                if (slowest.size() > slowestCount) {
+                    slowest.poll();
+                }
+                slowestThreshold = slowest.size() == slowestCount ? slowest.peek().nanos() : 0;
+            }
+        }
+    }
+
+    /**
+     * @param chars the characters saved by writing a file as a reference to an identical file:
+     *              its content and markup, less the reference.
+     */
+    public void recordDuplicate(long chars) {
+        duplicateFiles.increment();
+        duplicateChars.add(chars);
+    }
+
+    public long getWallNanos(Phase phase) {
+        return phases.get(phase).wall.sum();
+    }
+
+    /**
+     * @return the CPU time of a phase, excluding time spent on virtual threads.
+     */
+    public long getCpuNanos(Phase phase) {
+        return phases.get(phase).cpu.sum();
+    }
+
+    /**
+     * @return the latency histogram of each analyzer that ran.
+     */
+    public Map<String, Histogram> getAnalyzers() {
+        return new TreeMap<>(analyzers);
+    }
+
+    /**
+     * @return the stats of each language, by file extension, largest input first.
+     */
+    public List<LanguageStats> getLanguages() {
+        List<LanguageStats> result = new ArrayList<>();
+        languages.forEach((name, language) -> result.add(
+                new LanguageStats(name, language.files.sum(), language.bytesIn.sum(), language.charsOut.sum())));
+        result.sort(Comparator.comparingLong(LanguageStats::bytesIn).reversed());
+        return result;
+    }
+
+    /**
+     * @return the slowest files, slowest first.
+     */
+    public List<SlowFile> getSlowestFiles() {
+        List<SlowFile> result;
+        synchronized (slowest) {
+            result = new ArrayList<>(slowest);
+        }
+        result.sort(Comparator.comparingLong(SlowFile::nanos).reversed());
+        return result;
+    }
+
+    /**
+     * @return the number of files written as references to identical files.
+     */
+    public long getDuplicateFiles() {
+        return duplicateFiles.sum();
+    }
+
+    /**
+     * @return the characters not repeated thanks to references to identical files.
+     */
+    public long getDuplicateChars() {
+        return duplicateChars.sum();
+    }
+
+    /**
+     * @return the tokens saved by references to identical files, estimated at
+     *         {@link TokenBudgetPlanner#DEFAULT_CHARS_PER_TOKEN}.
+     */
+    public long getDuplicateTokens() {
+        return Math.round(duplicateChars.sum() / TokenBudgetPlanner.DEFAULT_CHARS_PER_TOKEN);
+    }
+
+    /**
+     * @return a human-readable report of all measurements.
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-10s %10s %10s%n", "Phase", "Wall ms", "CPU ms"));
+        for (Phase phase : Phase.values()) {
+            PhaseTime time = phases.get(phase);
+            long cpu = time.cpu.sum();
+            sb.append(String.format(Locale.ROOT, "%-10s %10.1f %10s%n", phase.name().toLowerCase(Locale.ROOT), time.wall.sum() / 1e6,
+                    cpu > 0 ? String.format(Locale.ROOT, "%.1f", cpu / 1e6) : "-"));
+        }
+        getAnalyzers().forEach((name, histogram) -> sb.append(String.format(Locale.ROOT,
+                "Analyzer %s: %d files, mean %.2f ms, p50 <%d us, p90 <%d us, p99 <%d us%n", name, histogram.count(),
+                histogram.totalNanos() / 1e6 / Math.max(1, histogram.count()), histogram.percentileMicros(0.5),
+                histogram.percentileMicros(0.9), histogram.percentileMicros(0.99))));
+        sb.append(String.format(Locale.ROOT, "%-12s %8s %12s %12s %7s%n", "Language", "Files", "Bytes in", "Chars out", "Ratio"));
+        for (LanguageStats language : getLanguages()) {
+            sb.append(String.format(Locale.ROOT, "%-12s %8d %12d %12d %6.0f%%%n", language.language(), language.files(), language.bytesIn(),
+                    language.charsOut(), language.bytesIn() > 0 ? 100.0 * language.charsOut() / language.bytesIn() : 100.0));
+        }
+        if (getDuplicateFiles() > 0) {
+            sb.append(String.format(Locale.ROOT, "Duplicates: %d files written as references, %d chars (about %d tokens) saved%n",
+                    getDuplicateFiles(), getDuplicateChars(), getDuplicateTokens()));
+        }
+        List<SlowFile> files = getSlowestFiles();
+        if (!files.isEmpty()) {
+            sb.append("Slowest files:").append(System.lineSeparator());
+            for (SlowFile file : files) {
+                sb.append(String.format(Locale.ROOT, "%10.1f ms  %s%n", file.nanos() / 1e6, file.path()));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the lower case extension of the file name, or the whole name for files without one, such as Makefile.
+     */
+    static String languageOf(String path) {
+        int slash = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+        String name = path.substring(slash + 1);
+        int dot = name.lastIndexOf('.');
+        return (dot > 0 ? name.substring(dot + 1) : name).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,230 @@
+package org.roxycode.jsmashy.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.roxycode.jsmashy.languages.AnalysisResult;
+import org.roxycode.jsmashy.languages.SourceSymbols;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk, content-addressed cache of analyzer results.
+ * <p>
+ * Entries are keyed by analyzer version and the git blob id of the source, so identical sources
+ * are analyzed once no matter which checkout, branch or process they come from. The cache is
+ * bounded by total size; the least recently used entries are evicted first. Recency survives
+ * restarts because hits refresh the entry's modification time. Entries keep the symbols the
+ * analyzer collected, so a {@link SymbolIndex} can be filled from the cache too.
+ */
+public class SkeletonCache {
+    private static final Logger logger = LoggerFactory.getLogger(SkeletonCache.class);
+    private static final int ENTRY_MAGIC = 0x534B4C32; // "SKL2"
+
+    /**
+     * Default size bound of the shared cache.
+     */
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static SkeletonCache defaultCache;
+
+    private final Path directory;
+    private final long maxBytes;
+    // Access-ordered: iteration starts at the least recently used entry
+    private final LinkedHashMap<Path, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    private boolean indexLoaded;
+    private long totalBytes;
+
+    /**
+     * @param directory the cache directory; created on first write.
+     * @param maxBytes the maximum total size of cached entries.
+     */
+    public SkeletonCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cache shared by all jsmashy tools of the current user, located in
+     * {@code ~/.jsmashy/skeleton-cache}.
+     * @return the shared cache.
+     */
+    public static synchronized SkeletonCache getDefault() {
+        if (defaultCache == null) {
+            defaultCache = new SkeletonCache(Paths.get(System.getProperty("user.home"), ".jsmashy", "skeleton-cache"), DEFAULT_MAX_BYTES);
+        }
+        return defaultCache;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Looks up a cached result.
+     * @param analyzerVersion the version of the analyzer that produced the result.
+     * @param contentHash the git blob id of the analyzed source.
+     * @return the cached result, or null on a miss.
+     */
+    public AnalysisResult get(String analyzerVersion, String contentHash) {
+        Path file = entryFile(analyzerVersion, contentHash);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != ENTRY_MAGIC) {
+                return null;
+            }
+            String skeleton = readString(in);
+            int errorCount = in.readInt();
+            List<String> errors = new ArrayList<>(errorCount);
+            for (int i = 0; i < errorCount; i++) {
+                errors.add(readString(in));
+            }
+            SourceSymbols symbols = in.readBoolean() ? SymbolIndex.readSymbols(in) : null;
+            touch(file);
+            return new AnalysisResult(skeleton, errors, symbols);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.debug("Ignoring unreadable cache entry {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores a result, evicting least recently used entries if the cache grows beyond its bound.
+     * Failures are logged and otherwise ignored, since the cache is only an optimization.
+     * @param analyzerVersion the version of the analyzer that produced the result.
+     * @param contentHash the git blob id of the analyzed source.
+     * @param result the result to store.
+     */
+    public void put(String analyzerVersion, String contentHash, AnalysisResult result) {
+        Path file = entryFile(analyzerVersion, contentHash);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), contentHash, ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    out.writeInt(ENTRY_MAGIC);
+                    writeString(out, result.skeleton() != null ? result.skeleton() : "");
+                    List<String> errors = result.errors() != null ? result.errors() : List.of();
+                    out.writeInt(errors.size());
+                    for (String error : errors) {
+                        writeString(out, error);
+                    }
+                    out.writeBoolean(result.symbols() != null);
+                    if (result.symbols() != null) {
+                        SymbolIndex.writeSymbols(out, result.symbols());
+                    }
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            record(file, Files.size(file));
+        } catch (IOException e) {
+            logger.warn("Failed to write skeleton cache entry {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Path entryFile(String analyzerVersion, String contentHash) {
+        String versionDir = analyzerVersion.replaceAll("[^A-Za-z0-9._-]", "_");
+        return directory.resolve(versionDir).resolve(contentHash.substring(0, 2)).resolve(contentHash.substring(2));
+    }
+
+    private void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Recency is best effort
+        }
+        synchronized (index) {
+            index.get(file);
+        }
+    }
+
+    private void record(Path file, long size) {
+        List<Path> evicted = new ArrayList<>();
+        synchronized (index) {
+            loadIndex();
+            Long previous = index.put(file, size);
+            totalBytes += size - (previous != null ? previous : 0);
+            Iterator<Map.Entry<Path, Long>> it = index.entrySet().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                Map.Entry<Path, Long> eldest = it.next();
+                if (eldest.getKey().equals(file)) {
+                    continue;
+                }
+                totalBytes -= eldest.getValue();
+                evicted.add(eldest.getKey());
+                it.remove();
+            }
+        }
+        for (Path path : evicted) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                logger.debug("Failed to evict cache entry {}: {}", path, e.getMessage());
+            }
+        }
+        if (!evicted.isEmpty()) {
+            logger.debug("Evicted {} skeleton cache entries", evicted.size());
+        }
+    }
+
+    // Rebuilds the LRU order from modification times the first time the cache is written to
+    private void loadIndex() {
+        if (indexLoaded) {
+            return;
+        }
+        indexLoaded = true;
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        record EntryInfo(Path path, long size, long lastModified) {
+        }
+        List<EntryInfo> entries = new ArrayList<>();
+        try (Stream<Path> stream = Files.walk(directory)) {
+            stream.filter(Files::isRegularFile).forEach(path -> {
+                try {
+                    entries.add(new EntryInfo(path, Files.size(path), Files.getLastModifiedTime(path).toMillis()));
+                } catch (IOException e) {
+                    // Removed concurrently
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Failed to index skeleton cache {}: {}", directory, e.getMessage());
+        }
+        entries.sort(Comparator.comparingLong(EntryInfo::lastModified));
+        for (EntryInfo entry : entries) {
+            index.put(entry.path(), entry.size());
+            totalBytes += entry.size();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
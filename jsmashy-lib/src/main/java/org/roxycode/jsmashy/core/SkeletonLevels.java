@@ -0,0 +1,83 @@
+package org.roxycode.jsmashy.core;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import org.roxycode.jsmashy.languages.SkeletonLevel;
+
+/**
+ * Selects the {@link SkeletonLevel} of each file by path glob, such as {@code src/test/**} for
+ * {@link SkeletonLevel#PUBLIC_API}. Globs use the syntax of {@link java.nio.file.FileSystem#getPathMatcher}
+ * and are matched against the path relative to the scan root. The first matching glob wins; files
+ * matching none get the default level.
+ */
+public final class SkeletonLevels {
+
+    private record Rule(String glob, PathMatcher matcher, SkeletonLevel level) {
+    }
+
+    private final List<Rule> rules = new ArrayList<>();
+    private SkeletonLevel defaultLevel = SkeletonLevel.SIGNATURES_WITH_DOCS;
+
+    /**
+     * @return the level of files matching no glob.
+     */
+    public SkeletonLevel getDefaultLevel() {
+        return defaultLevel;
+    }
+
+    /**
+     * @param defaultLevel the level of files matching no glob.
+     */
+    public void setDefaultLevel(SkeletonLevel defaultLevel) {
+        this.defaultLevel = defaultLevel;
+    }
+
+    /**
+     * Adds a rule, checked after the rules added before it.
+     * @param glob the path glob.
+     * @param level the level of files matching the glob.
+     * @throws IllegalArgumentException if the glob is invalid.
+     */
+    public void add(String glob, SkeletonLevel level) {
+        rules.add(new Rule(glob, FileSystems.getDefault().getPathMatcher("glob:" + glob), level));
+    }
+
+    /**
+     * @param relativePath the path relative to the scan root.
+     * @return the level for the file.
+     */
+    public SkeletonLevel levelFor(String relativePath) {
+        if (!rules.isEmpty()) {
+            Path path = Path.of(relativePath);
+            for (Rule rule : rules) {
+                if (rule.matcher().matches(path)) {
+                    return rule.level();
+                }
+            }
+        }
+        return defaultLevel;
+    }
+
+    /**
+     * @return true if every file gets {@link SkeletonLevel#SIGNATURES_WITH_DOCS}.
+     */
+    public boolean isDefault() {
+        return rules.isEmpty() && defaultLevel == SkeletonLevel.SIGNATURES_WITH_DOCS;
+    }
+
+    /**
+     * Describes the rules, so results of scans with other rules can be told apart.
+     * @return the rules as {@code glob=LEVEL} pairs followed by the default level.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Rule rule : rules) {
+            sb.append(rule.glob()).append('=').append(rule.level()).append(';');
+        }
+        return sb.append(defaultLevel).toString();
+    }
+}
@@ -1,7 +1,60 @@
 package org.roxycode.jsmashy.core;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 public interface SmashFormatter {
-    String format(List<ProjectFile> files);
-}
\ No newline at end of file
+
+    /**
+     * Formats the files into a single in-memory document.
+     * Prefer the streaming variants for large codebases.
+     * @param files the scanned files.
+     * @return the formatted document.
+     */
+    default String format(List<ProjectFile> files) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            format(files, sb);
+        } catch (IOException e) {
+            // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Streams the formatted document to the given output.
+     * @param files the scanned files; may be iterated more than once.
+     * @param out the destination.
+     * @throws IOException if writing to the destination fails.
+     */
+    void format(Iterable<ProjectFile> files, Appendable out) throws IOException;
+
+    /**
+     * Starts a document that receives its files one at a time, in {@link ProjectFile#TREE_ORDER},
+     * and writes them out as they arrive.
+     * @param out the destination.
+     * @return the writer for the document.
+     * @throws IOException if writing to the destination fails.
+     */
+    SmashWriter open(Appendable out) throws IOException;
+
+    /**
+     * Streams the formatted document to the given output stream as UTF-8.
+     * The stream is flushed but not closed.
+     * @param files the scanned files; may be iterated more than once.
+     * @param out the destination.
+     * @throws IOException if writing to the destination fails.
+     */
+    default void format(Iterable<ProjectFile> files, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        format(files, writer);
+        writer.flush();
+    }
+}
@@ -0,0 +1,24 @@
+package org.roxycode.jsmashy.core;
+
+import java.io.IOException;
+
+/**
+ * Writes a document incrementally, one file at a time, without collecting the files first.
+ * Obtained from {@link SmashFormatter#open(Appendable)}.
+ */
+public interface SmashWriter {
+
+    /**
+     * Appends a file to the document.
+     * @param file the next file; files must arrive in {@link ProjectFile#TREE_ORDER}.
+     * @throws IOException if writing to the destination fails.
+     * @throws IllegalArgumentException if the file is out of order.
+     */
+    void write(ProjectFile file) throws IOException;
+
+    /**
+     * Completes the document. The destination is not closed.
+     * @throws IOException if writing to the destination fails.
+     */
+    void finish() throws IOException;
+}
@@ -0,0 +1,70 @@
+package org.roxycode.jsmashy.core;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Walks a file tree like {@link Files#walkFileTree(Path, FileVisitor)} without following links,
+ * but visits the entries of every directory sorted by name. Files are therefore visited in
+ * {@link ProjectFile#TREE_ORDER}, which lets consumers process them as a stream.
+ */
+final class SortedTreeWalker {
+
+    private SortedTreeWalker() {
+    }
+
+    static void walk(Path start, FileVisitor<Path> visitor) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(start, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        visit(start, attrs, visitor);
+    }
+
+    private static FileVisitResult visit(Path path, BasicFileAttributes attrs, FileVisitor<Path> visitor) throws IOException {
+        if (!attrs.isDirectory()) {
+            return visitor.visitFile(path, attrs);
+        }
+        FileVisitResult result = visitor.preVisitDirectory(path, attrs);
+        if (result != FileVisitResult.CONTINUE) {
+            return result == FileVisitResult.SKIP_SUBTREE ? FileVisitResult.CONTINUE : result;
+        }
+
+        List<Path> entries = new ArrayList<>();
+        IOException failure = null;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+            stream.forEach(entries::add);
+        } catch (IOException e) {
+            failure = e;
+        }
+        if (failure == null) {
+            entries.sort(Comparator.comparing(entry -> entry.getFileName().toString()));
+            for (Path entry : entries) {
+                BasicFileAttributes entryAttrs;
+                try {
+                    entryAttrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException e) {
+                    result = visitor.visitFileFailed(entry, e);
+                    if (result == FileVisitResult.TERMINATE) {
+                        return result;
+                    }
+                    continue;
+                }
+                result = visit(entry, entryAttrs, visitor);
+                if (result == FileVisitResult.TERMINATE) {
+                    return result;
+                }
+                if (result == FileVisitResult.SKIP_SIBLINGS) {
+                    break;
+                }
+            }
+        }
+        return visitor.postVisitDirectory(path, failure);
+    }
+}
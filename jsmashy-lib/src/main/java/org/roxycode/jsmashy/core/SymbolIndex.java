@@ -0,0 +1,319 @@
+package org.roxycode.jsmashy.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.roxycode.jsmashy.languages.SourceSymbols;
+import org.roxycode.jsmashy.languages.Symbol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the declarations in a scanned codebase, answering "where is X declared" and
+ * "what extends or implements Y" without reading any source.
+ * <p>
+ * Each file's symbols are stored with its content hash. A scan builds the next index from the
+ * previous one with {@link #next()}, so files whose content is unchanged keep their symbols
+ * without being parsed again. Lookups go through maps from simple names to declarations, which
+ * are built on the first lookup after a change.
+ */
+public class SymbolIndex {
+    private static final Logger logger = LoggerFactory.getLogger(SymbolIndex.class);
+    private static final int FORMAT_VERSION = 1;
+    private static final SourceSymbols NONE = new SourceSymbols("", List.of(), List.of());
+
+    /**
+     * A symbol and the file declaring it.
+     * @param path the file path relative to the scan root.
+     * @param symbol the declared symbol.
+     */
+    public record Declaration(String path, Symbol symbol) {
+    }
+
+    private record Entry(String contentHash, SourceSymbols symbols) {
+    }
+
+    // Simple name of the symbol, and simple names of the supertypes of types
+    private record Lookup(Map<String, List<Declaration>> byName, Map<String, List<Declaration>> bySupertype) {
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, SourceSymbols> previous;
+    private volatile Lookup lookup;
+
+    public SymbolIndex() {
+        this(Map.of());
+    }
+
+    private SymbolIndex(Map<String, SourceSymbols> previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * @return an empty index that reuses the symbols of this one for content it has seen, see {@link #previous(String)}.
+     */
+    public SymbolIndex next() {
+        Map<String, SourceSymbols> byHash = new HashMap<>();
+        entries.values().forEach(entry -> byHash.put(entry.contentHash(), entry.symbols()));
+        return new SymbolIndex(byHash);
+    }
+
+    /**
+     * @param contentHash the git blob id of a file's content.
+     * @return the symbols of that content in the index this one was created from, or null if it was not indexed.
+     */
+    public SourceSymbols previous(String contentHash) {
+        return previous.get(contentHash);
+    }
+
+    /**
+     * Records the symbols of a file, replacing those it had.
+     * @param path the file path relative to the scan root.
+     * @param contentHash the git blob id of the file content.
+     * @param symbols the symbols, or null if the file could not be parsed.
+     */
+    public void put(String path, String contentHash, SourceSymbols symbols) {
+        entries.put(path, new Entry(contentHash, symbols != null ? symbols : NONE));
+        lookup = null;
+    }
+
+    /**
+     * @param path the file path relative to the scan root.
+     * @return the symbols of the file, or null if it is not indexed.
+     */
+    public SourceSymbols get(String path) {
+        Entry entry = entries.get(path);
+        return entry != null ? entry.symbols() : null;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Finds the declarations of a name.
+     * @param name a simple name such as {@code List}, or a qualified name such as {@code java.util.List}
+     *             or {@code ProjectService.getSymbolIndex}, matched against the end of qualified names.
+     * @return the matching declarations, ordered by path and position.
+     */
+    public List<Declaration> findDeclarations(String name) {
+        List<Declaration> candidates = lookup().byName().getOrDefault(simpleName(name), List.of());
+        if (name.indexOf('.') < 0) {
+            return candidates;
+        }
+        List<Declaration> found = new ArrayList<>();
+        for (Declaration declaration : candidates) {
+            String qualified = declaration.symbol().qualifiedName();
+            if (qualified.equals(name) || qualified.endsWith("." + name)) {
+                found.add(declaration);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the types that directly extend or implement a type.
+     * @param type a simple name, which matches any type of that name, or a qualified name, which a
+     *             supertype written in a file must resolve to through the file's package or imports.
+     * @return the declarations of the subtypes, ordered by path and position.
+     */
+    public List<Declaration> findSubtypes(String type) {
+        List<Declaration> candidates = lookup().bySupertype().getOrDefault(simpleName(type), List.of());
+        if (type.indexOf('.') < 0) {
+            return candidates;
+        }
+        List<Declaration> found = new ArrayList<>();
+        for (Declaration declaration : candidates) {
+            SourceSymbols file = get(declaration.path());
+            for (String supertype : declaration.symbol().supertypes()) {
+                if (resolvesTo(supertype, type, file)) {
+                    found.add(declaration);
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Loads an index from disk.
+     * @param file the index file.
+     * @return the stored index, or an empty one if the file is missing or unreadable.
+     */
+    public static SymbolIndex load(Path file) {
+        SymbolIndex index = new SymbolIndex();
+        if (!Files.exists(file)) {
+            return index;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                logger.info("Ignoring symbol index with unsupported format: {}", file);
+                return index;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                String hash = in.readUTF();
+                index.entries.put(path, new Entry(hash, readSymbols(in)));
+            }
+            return index;
+        } catch (IOException e) {
+            logger.warn("Failed to read symbol index {}, starting from scratch: {}", file, e.getMessage());
+            return new SymbolIndex();
+        }
+    }
+
+    /**
+     * Writes the index to disk, replacing any previous version atomically.
+     * @param file the index file.
+     * @throws IOException if the index cannot be written.
+     */
+    public void save(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(FORMAT_VERSION);
+                Map<String, Entry> sorted = new TreeMap<>(entries);
+                out.writeInt(sorted.size());
+                for (Map.Entry<String, Entry> entry : sorted.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue().contentHash());
+                    writeSymbols(out, entry.getValue().symbols());
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static void writeSymbols(DataOutputStream out, SourceSymbols symbols) throws IOException {
+        writeString(out, symbols.packageName());
+        writeStrings(out, symbols.imports());
+        out.writeInt(symbols.symbols().size());
+        for (Symbol symbol : symbols.symbols()) {
+            out.writeByte(symbol.kind().ordinal());
+            writeString(out, symbol.name());
+            writeString(out, symbol.container());
+            writeString(out, symbol.signature());
+            out.writeInt(symbol.startLine());
+            out.writeInt(symbol.endLine());
+            writeStrings(out, symbol.supertypes());
+        }
+    }
+
+    static SourceSymbols readSymbols(DataInputStream in) throws IOException {
+        String packageName = readString(in);
+        List<String> imports = readStrings(in);
+        int count = in.readInt();
+        List<Symbol> symbols = new ArrayList<>(count);
+        Symbol.Kind[] kinds = Symbol.Kind.values();
+        for (int i = 0; i < count; i++) {
+            int kind = in.readUnsignedByte();
+            if (kind >= kinds.length) {
+                throw new IOException("Unknown symbol kind " + kind);
+            }
+            symbols.add(new Symbol(kinds[kind], readString(in), readString(in), readString(in), in.readInt(), in.readInt(), readStrings(in)));
+        }
+        return new SourceSymbols(packageName, imports, List.copyOf(symbols));
+    }
+
+    private Lookup lookup() {
+        Lookup current = lookup;
+        if (current == null) {
+            Map<String, List<Declaration>> byName = new HashMap<>();
+            Map<String, List<Declaration>> bySupertype = new HashMap<>();
+            for (Map.Entry<String, Entry> entry : new TreeMap<>(entries).entrySet()) {
+                for (Symbol symbol : entry.getValue().symbols().symbols()) {
+                    Declaration declaration = new Declaration(entry.getKey(), symbol);
+                    byName.computeIfAbsent(symbol.name(), name -> new ArrayList<>()).add(declaration);
+                    for (String supertype : symbol.supertypes()) {
+                        bySupertype.computeIfAbsent(simpleName(supertype), name -> new ArrayList<>()).add(declaration);
+                    }
+                }
+            }
+            current = new Lookup(byName, bySupertype);
+            lookup = current;
+        }
+        return current;
+    }
+
+    /**
+     * Checks whether a type name as written in a file denotes a qualified type. The first part of the
+     * written name must be imported, declared in the file, or be in the file's package or java.lang.
+     */
+    private static boolean resolvesTo(String written, String qualified, SourceSymbols file) {
+        if (written.equals(qualified)) {
+            return true;
+        }
+        if (!qualified.endsWith("." + written)) {
+            return false;
+        }
+        String prefix = qualified.substring(0, qualified.length() - written.length() - 1);
+        int dot = written.indexOf('.');
+        String first = dot < 0 ? written : written.substring(0, dot);
+        if (prefix.equals(file.packageName()) || prefix.equals("java.lang")) {
+            return true;
+        }
+        for (String imported : file.imports()) {
+            if (imported.equals(prefix + "." + first) || imported.equals(prefix + ".*")) {
+                return true;
+            }
+        }
+        for (Symbol symbol : file.symbols()) {
+            if (symbol.kind().isType() && symbol.qualifiedName().equals(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String simpleName(String name) {
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(in));
+        }
+        return List.copyOf(values);
+    }
+
+    // writeUTF is limited to 64KB, which a long signature could exceed
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,203 @@
+package org.roxycode.jsmashy.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.roxycode.jsmashy.languages.AnalysisResult;
+import org.roxycode.jsmashy.languages.LanguageAnalyzer;
+import org.roxycode.jsmashy.languages.SkeletonLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lowers the {@link Fidelity} of files until a formatted codebase fits a token budget.
+ * <p>
+ * Files start as the scan produced them: at the skeleton level {@link SkeletonLevels} selects for
+ * them, or with their content if no analyzer supports them. The planner never adds content back.
+ * While the estimate exceeds the budget, files are reduced one level at a time, least important
+ * first: skeletons to signatures, then every file to its path. If the paths alone still do not
+ * fit, the least important files are left out.
+ * <p>
+ * Token counts are estimated from character counts, including an allowance for the markup of
+ * each file and of the document.
+ */
+public class TokenBudgetPlanner {
+    private static final Logger logger = LoggerFactory.getLogger(TokenBudgetPlanner.class);
+
+    /**
+     * Characters per token assumed by default; close to what Gemini models report for source code.
+     */
+    public static final double DEFAULT_CHARS_PER_TOKEN = 2.7;
+
+    private static final int FILE_MARKUP_CHARS = 40;
+    private static final int DOCUMENT_MARKUP_CHARS = 600;
+
+    /**
+     * A file considered for the budget.
+     * @param file the file as scanned.
+     * @param tokens the estimated tokens of the file as scanned.
+     */
+    public record Candidate(ProjectFile file, long tokens) {
+    }
+
+    private static class Slot {
+        final Candidate candidate;
+        ProjectFile current;
+        long tokens;
+        Fidelity fidelity;
+
+        Slot(Candidate candidate, Fidelity fidelity) {
+            this.candidate = candidate;
+            this.current = candidate.file();
+            this.tokens = candidate.tokens();
+            this.fidelity = fidelity;
+        }
+    }
+
+    private final List<LanguageAnalyzer> analyzers;
+    private final SkeletonCache skeletonCache;
+    private final SkeletonLevels skeletonLevels;
+    private final Comparator<Candidate> priority;
+    private final double charsPerToken;
+
+    /**
+     * @param analyzers the analyzers producing skeletons and signatures.
+     * @param skeletonCache the cache for analysis results, or null.
+     * @param skeletonLevels the level each file was scanned at; signatures are {@link SkeletonLevel#ALL_SIGNATURES}.
+     * @param priority orders files from most to least important, see {@link FilePriority}.
+     * @param charsPerToken the characters per token used for estimates.
+     */
+    public TokenBudgetPlanner(List<LanguageAnalyzer> analyzers, SkeletonCache skeletonCache, SkeletonLevels skeletonLevels, Comparator<Candidate> priority, double charsPerToken) {
+        this.analyzers = analyzers;
+        this.skeletonCache = skeletonCache;
+        this.skeletonLevels = skeletonLevels;
+        this.priority = priority;
+        this.charsPerToken = charsPerToken;
+    }
+
+    /**
+     * Fits files into a token budget.
+     * @param files the files as scanned.
+     * @param tokenBudget the maximum estimated tokens of the formatted codebase.
+     * @return the files in their original order, each as scanned or reduced as far as the budget requires.
+     */
+    public List<ProjectFile> fit(List<ProjectFile> files, long tokenBudget) {
+        List<Slot> slots = new ArrayList<>(files.size());
+        long total = estimate(DOCUMENT_MARKUP_CHARS);
+        for (ProjectFile file : files) {
+            Slot slot = new Slot(new Candidate(file, estimate(file)), findAnalyzer(file.getPath()) != null ? Fidelity.SKELETON : Fidelity.FULL);
+            slots.add(slot);
+            total += slot.tokens;
+        }
+        if (total <= tokenBudget) {
+            return files;
+        }
+        long scannedTotal = total;
+
+        List<Slot> leastImportantFirst = new ArrayList<>(slots);
+        leastImportantFirst.sort(Comparator.comparing((Slot slot) -> slot.candidate, priority).reversed());
+        for (Fidelity fidelity : new Fidelity[]{Fidelity.SIGNATURES, Fidelity.PATH_ONLY}) {
+            for (Slot slot : leastImportantFirst) {
+                if (total <= tokenBudget) {
+                    break;
+                }
+                ProjectFile reduced = render(slot.current, fidelity);
+                if (reduced == null) {
+                    continue;
+                }
+                long tokens = estimate(reduced);
+                if (tokens < slot.tokens) {
+                    total += tokens - slot.tokens;
+                    slot.current = reduced;
+                    slot.tokens = tokens;
+                    slot.fidelity = fidelity;
+                }
+            }
+        }
+
+        int dropped = 0;
+        for (Slot slot : leastImportantFirst) {
+            if (total <= tokenBudget) {
+                break;
+            }
+            total -= slot.tokens;
+            slot.current = null;
+            dropped++;
+        }
+        if (dropped > 0) {
+            logger.warn("Token budget {} is too small to list every path; left out {} files", tokenBudget, dropped);
+        }
+        logger.info("Fitted {} estimated tokens into a budget of {}: {}", scannedTotal, tokenBudget, summarize(slots));
+
+        List<ProjectFile> fitted = new ArrayList<>(slots.size());
+        for (Slot slot : slots) {
+            if (slot.current != null) {
+                fitted.add(slot.current);
+            }
+        }
+        return fitted;
+    }
+
+    private String summarize(List<Slot> slots) {
+        int[] counts = new int[Fidelity.values().length];
+        for (Slot slot : slots) {
+            if (slot.current != null) {
+                counts[slot.fidelity.ordinal()]++;
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Fidelity fidelity : Fidelity.values()) {
+            if (!sb.isEmpty()) {
+                sb.append(", ");
+            }
+            sb.append(counts[fidelity.ordinal()]).append(' ').append(fidelity);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Signatures are taken from the scanned skeleton, which declares the same members as the source.
+     * @return the file at a lower fidelity, or null if its analyzer cannot produce it or it is already that small.
+     */
+    private ProjectFile render(ProjectFile file, Fidelity fidelity) {
+        if (fidelity == Fidelity.PATH_ONLY) {
+            return ProjectFile.omitted(file.getPath());
+        }
+        LanguageAnalyzer analyzer = findAnalyzer(file.getPath());
+        SkeletonLevel scanned = skeletonLevels.levelFor(file.getPath());
+        if (analyzer == null || scanned == SkeletonLevel.ALL_SIGNATURES || scanned == SkeletonLevel.PUBLIC_API) {
+            return null;
+        }
+        String content = file.getContent();
+        String version = analyzer.version(SkeletonLevel.ALL_SIGNATURES);
+        String hash = skeletonCache != null ? ContentHash.of(content.getBytes(StandardCharsets.UTF_8)) : null;
+        AnalysisResult result = skeletonCache != null ? skeletonCache.get(version, hash) : null;
+        if (result == null) {
+            result = analyzer.analyze(content, SkeletonLevel.ALL_SIGNATURES);
+            if (skeletonCache != null) {
+                skeletonCache.put(version, hash, result);
+            }
+        }
+        return !result.hasSkeleton() ? null : new ProjectFile(file.getPath(), result.skeleton());
+    }
+
+    private LanguageAnalyzer findAnalyzer(String path) {
+        String fileName = path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1);
+        for (LanguageAnalyzer analyzer : analyzers) {
+            if (analyzer.supports(fileName)) {
+                return analyzer;
+            }
+        }
+        return null;
+    }
+
+    private long estimate(ProjectFile file) {
+        int content = file.isContentOmitted() ? 0 : file.getContent().length();
+        return estimate(content + file.getPath().length() + FILE_MARKUP_CHARS);
+    }
+
+    private long estimate(long chars) {
+        return (long) Math.ceil(chars / charsPerToken);
+    }
+}
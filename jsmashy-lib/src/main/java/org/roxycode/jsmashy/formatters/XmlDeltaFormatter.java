@@ -0,0 +1,72 @@
+package org.roxycode.jsmashy.formatters;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import org.roxycode.jsmashy.core.CodebaseDelta;
+
+/**
+ * Formats a {@link CodebaseDelta} as a {@code <codebase_delta>} document, which updates a
+ * {@code <codebase>} document produced by {@link XmlSmashFormatter} that the reader has already seen.
+ */
+public class XmlDeltaFormatter {
+
+    /**
+     * Formats the delta into an in-memory document.
+     * @param delta the changes.
+     * @return the formatted document.
+     */
+    public String format(CodebaseDelta delta) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            format(delta, sb);
+        } catch (IOException e) {
+            // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Streams the formatted delta to the given output.
+     * @param delta the changes.
+     * @param out the destination.
+     * @throws IOException if writing to the destination fails.
+     */
+    public void format(CodebaseDelta delta, Appendable out) throws IOException {
+        XmlEmitter xml = new XmlEmitter(out);
+        xml.text("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.text("<codebase_delta>\n");
+        xml.text("<summary>\n");
+        xml.text("<agent_instructions>\n");
+        xml.text("This document updates the <codebase> you received earlier; files not listed are unchanged.\n");
+        xml.text("<added path=\"p\"> is a new file and <modified path=\"p\"> replaces the content of a file, both containing CDATA content.\n");
+        xml.text("<deleted path=\"p\"/> is a file that no longer exists.\n");
+        xml.text("An empty <added path=\"p\"/> or <modified path=\"p\"/> is a file whose content was left out to save space.\n");
+        xml.text("</agent_instructions>\n");
+        xml.text("</summary>\n\n");
+
+        xml.text("<changes>\n");
+        for (CodebaseDelta.Change change : delta.getChanges()) {
+            String path = change.path().replace('\\', '/');
+            switch (change.type()) {
+                case ADDED -> appendFile(xml, "added", path, change);
+                case MODIFIED -> appendFile(xml, "modified", path, change);
+                case DELETED -> xml.text("<deleted path=\"").attribute(path).text("\"/>\n");
+            }
+        }
+        xml.text("</changes>\n");
+        xml.text("</codebase_delta>");
+        xml.flush();
+    }
+
+    private void appendFile(XmlEmitter xml, String element, String path, CodebaseDelta.Change change) throws IOException {
+        xml.text('<').text(element).text(" path=\"").attribute(path);
+        if (change.file().isContentOmitted()) {
+            xml.text("\"/>\n");
+            return;
+        }
+        xml.text("\"><![CDATA[");
+        xml.cdata(change.file().getContent());
+        xml.text("]]></").text(element).text(">\n");
+    }
+}
@@ -0,0 +1,148 @@
+package org.roxycode.jsmashy.formatters;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Writes XML through a reusable character buffer, escaping as it copies.
+ * <p>
+ * Text is copied straight from its strings into the buffer, so CDATA sections and attribute
+ * values never go through escaped or substring copies, and the destination sees a few large
+ * writes instead of many small appends. Nothing reaches the destination before {@link #flush()}.
+ */
+final class XmlEmitter {
+    private static final int BUFFER_SIZE = 8192;
+    private static final String CDATA_END = "]]>";
+    private static final String CDATA_END_ESCAPED = "]]]]><![CDATA[>";
+    // Two spaces per level; deeper levels are written in several copies
+    private static final char[] INDENT = new char[128];
+
+    static {
+        Arrays.fill(INDENT, ' ');
+    }
+
+    private final Appendable out;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int length;
+
+    XmlEmitter(Appendable out) {
+        this.out = out;
+    }
+
+    XmlEmitter text(String text) throws IOException {
+        copy(text, 0, text.length());
+        return this;
+    }
+
+    XmlEmitter text(char c) throws IOException {
+        if (length == buffer.length) {
+            flushBuffer();
+        }
+        buffer[length++] = c;
+        return this;
+    }
+
+    /**
+     * Writes the indentation of a nesting depth.
+     */
+    XmlEmitter indent(int depth) throws IOException {
+        int spaces = 2 * depth;
+        while (spaces > 0) {
+            int count = Math.min(spaces, INDENT.length);
+            copy(INDENT, count);
+            spaces -= count;
+        }
+        return this;
+    }
+
+    /**
+     * Writes an attribute value, escaping the characters that may not appear in a double-quoted value.
+     */
+    XmlEmitter attribute(String value) throws IOException {
+        return attribute(value, 0, value.length());
+    }
+
+    /**
+     * Writes part of a string as an attribute value, see {@link #attribute(String)}.
+     */
+    XmlEmitter attribute(String value, int start, int end) throws IOException {
+        for (int i = start; i < end; i++) {
+            String entity = switch (value.charAt(i)) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '"' -> "&quot;";
+                case '\n' -> "&#10;";
+                case '\r' -> "&#13;";
+                case '\t' -> "&#9;";
+                default -> null;
+            };
+            if (entity != null) {
+                copy(value, start, i);
+                text(entity);
+                start = i + 1;
+            }
+        }
+        copy(value, start, end);
+        return this;
+    }
+
+    /**
+     * Writes the content of an open CDATA section, splitting the section wherever the content
+     * contains the CDATA terminator.
+     */
+    XmlEmitter cdata(String content) throws IOException {
+        int start = 0;
+        int end;
+        while ((end = content.indexOf(CDATA_END, start)) >= 0) {
+            copy(content, start, end);
+            text(CDATA_END_ESCAPED);
+            start = end + CDATA_END.length();
+        }
+        copy(content, start, content.length());
+        return this;
+    }
+
+    /**
+     * Passes everything written so far to the destination. The destination itself is not flushed.
+     */
+    void flush() throws IOException {
+        flushBuffer();
+    }
+
+    private void copy(String text, int start, int end) throws IOException {
+        while (start < end) {
+            if (length == buffer.length) {
+                flushBuffer();
+            }
+            int count = Math.min(end - start, buffer.length - length);
+            text.getChars(start, start + count, buffer, length);
+            length += count;
+            start += count;
+        }
+    }
+
+    private void copy(char[] chars, int count) throws IOException {
+        if (buffer.length - length < count) {
+            flushBuffer();
+        }
+        System.arraycopy(chars, 0, buffer, length, count);
+        length += count;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (length == 0) {
+            return;
+        }
+        if (out instanceof Writer writer) {
+            writer.write(buffer, 0, length);
+        } else if (out instanceof StringBuilder builder) {
+            builder.append(buffer, 0, length);
+        } else {
+            out.append(CharBuffer.wrap(buffer, 0, length));
+        }
+        length = 0;
+    }
+}
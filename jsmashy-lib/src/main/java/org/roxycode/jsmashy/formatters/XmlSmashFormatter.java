@@ -1,100 +1,277 @@
 package org.roxycode.jsmashy.formatters;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import org.roxycode.jsmashy.core.ContentHash;
 import org.roxycode.jsmashy.core.ProjectFile;
+import org.roxycode.jsmashy.core.ScanStats;
 import org.roxycode.jsmashy.core.SmashFormatter;
+import org.roxycode.jsmashy.core.SmashWriter;
 
 public class XmlSmashFormatter implements SmashFormatter {
 
-    @Override
-    public String format(List<ProjectFile> files) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-        sb.append("<codebase>\n");
+    /**
+     * A length from which repeating a content costs clearly more than a reference to it, see {@link #useDeduplication(int)}.
+     */
+    public static final int DEFAULT_MIN_DUPLICATE_CHARS = 256;
+
+    private static final String AGENTS_FILE = "AGENTS.md";
+    // What follows the name of a file written with its content, and of a file written as a reference
+    private static final String CONTENT_MARKUP = "\"><![CDATA[]]></f>";
+    private static final String REFERENCE_MARKUP = "\" same-as=\"\"/>";
 
-        appendFileSummary(sb, files);
-        appendProjectTree(sb, files);
+    // Negative while deduplication is off
+    private int minDuplicateChars = -1;
+    private ScanStats stats;
 
-        sb.append("</codebase>");
-        return sb.toString();
+    /**
+     * Writes each content only once. A later file with the same content, at least as long as given,
+     * becomes {@code <f n="name" same-as="path"/>}, referring to the first file written with it.
+     * Contents are compared by their {@link ContentHash}.
+     * @param minChars the length of the shortest content replaced by a reference.
+     */
+    public void useDeduplication(int minChars) {
+        this.minDuplicateChars = minChars;
     }
 
-    private void appendFileSummary(StringBuilder sb, List<ProjectFile> files) {
-        sb.append("<summary>\n");
-        sb.append("<agent_instructions>\n");
-        sb.append("The <project_tree> section shows the directory hierarchy.\n");
-        sb.append("<d n=\"name\"> is a directory, <f n=\"name\"> is a file containing CDATA content.\n");
-        sb.append("</agent_instructions>\n");
+    /**
+     * Records the content saved by deduplication.
+     * @param stats the stats to add to, or null to record nothing.
+     */
+    public void useStats(ScanStats stats) {
+        this.stats = stats;
+    }
 
-        // AGENTS.md extraction
-        for (ProjectFile file : files) {
-            if (file.getPath().equalsIgnoreCase("AGENTS.md")) {
-                sb.append("<agent_custom_instructions>\n<![CDATA[\n");
-                sb.append(file.getContent().replace("]]>", "]]]]><![CDATA[>"));
-                sb.append("\n]]>\n</agent_custom_instructions>\n");
-                break;
+    /**
+     * Sorts the files once into tree order and streams them through {@link #open(Appendable)}, so
+     * directories are opened and closed by comparing consecutive paths and no tree is built.
+     * Of several files with the same path, the last one is written. The summary explains files
+     * without content only if there are any.
+     */
+    @Override
+    public void format(Iterable<ProjectFile> files, Appendable out) throws IOException {
+        List<ProjectFile> sorted = new ArrayList<>();
+        files.forEach(sorted::add);
+        // Stable, so files with the same path stay in their given order
+        sorted.sort(ProjectFile.TREE_ORDER);
+        boolean anyOmitted = sorted.stream().anyMatch(ProjectFile::isContentOmitted);
+        TreeWriter writer = new TreeWriter(new XmlEmitter(out), false, anyOmitted);
+        for (int i = 0; i < sorted.size(); i++) {
+            ProjectFile file = sorted.get(i);
+            if (i + 1 < sorted.size() && ProjectFile.TREE_ORDER.compare(file, sorted.get(i + 1)) == 0) {
+                continue;
             }
+            writer.write(file);
         }
+        writer.finish();
+    }
 
-        sb.append("</summary>\n\n");
+    /**
+     * The summary is written before the files it describes, so it does not explain files without
+     * content; use {@link #format(Iterable, Appendable)} for files that may have been left out.
+     */
+    @Override
+    public SmashWriter open(Appendable out) {
+        return new TreeWriter(new XmlEmitter(out), true, false);
     }
 
-    private void appendProjectTree(StringBuilder sb, List<ProjectFile> files) {
-        TreeNode root = new TreeNode("");
-        for (ProjectFile file : files) {
-            String[] parts = file.getPath().replace('\\', '/').split("/");
-            TreeNode current = root;
-            for (int i = 0; i < parts.length; i++) {
-                String part = parts[i];
-                if (part.isEmpty()) {
-                    continue;
-                }
-                current = current.children.computeIfAbsent(part, k -> new TreeNode(k));
-                if (i == parts.length - 1) {
-                    current.file = file;
-                }
-            }
+    private void appendFileSummary(XmlEmitter xml, ProjectFile agentsFile, boolean anyOmitted) throws IOException {
+        xml.text("<summary>\n");
+        xml.text("<agent_instructions>\n");
+        xml.text("The <project_tree> section shows the directory hierarchy.\n");
+        xml.text("<d n=\"name\"> is a directory, <f n=\"name\"> is a file containing CDATA content.\n");
+        if (anyOmitted) {
+            xml.text("<f n=\"name\"/> is a file whose content was left out to save space.\n");
+        }
+        if (minDuplicateChars >= 0) {
+            xml.text("<f n=\"name\" same-as=\"path\"/> is a file with the same content as the file at that path from the project root.\n");
+        }
+        xml.text("</agent_instructions>\n");
+
+        // AGENTS.md extraction
+        if (agentsFile != null) {
+            xml.text("<agent_custom_instructions>\n<![CDATA[\n");
+            xml.cdata(agentsFile.getContent());
+            xml.text("\n]]>\n</agent_custom_instructions>\n");
         }
 
-        sb.append("<project_tree>\n");
-        renderXmlTree(root, "", sb);
-        sb.append("</project_tree>\n");
+        xml.text("</summary>\n\n");
     }
 
-    private void renderXmlTree(TreeNode node, String indent, StringBuilder sb) {
-        List<String> sortedKeys = new ArrayList<>(node.children.keySet());
-        Collections.sort(sortedKeys);
-
-        for (String key : sortedKeys) {
-            TreeNode child = node.children.get(key);
-            if (child.file != null) {
-                // It's a file
-                sb.append(indent).append("<f n=\"").append(key).append("\">");
-                sb.append("<![CDATA[");
-                sb.append(child.file.getContent().replace("]]>", "]]]]><![CDATA[>"));
-                sb.append("]]>");
-                sb.append("</f>\n");
+    /**
+     * Writes files as they arrive in tree order. Each path is compared with the directories
+     * currently open: those it leaves are closed and the ones it enters are opened, so only the
+     * open directories are remembered.
+     * <p>
+     * The summary comes first but includes AGENTS.md, so files are held back until AGENTS.md
+     * arrives or tree order has passed the place where it would be.
+     */
+    private class TreeWriter implements SmashWriter {
+        private final XmlEmitter xml;
+        // Whether each file is passed on as soon as it is written, rather than when the buffer fills
+        private final boolean flushEachFile;
+        // Whether the summary explains files without content
+        private final boolean anyOmitted;
+        private final List<String> openDirs = new ArrayList<>();
+        // Start and end of each segment of the path being written
+        private int[] bounds = new int[32];
+        private List<ProjectFile> heldBack = new ArrayList<>();
+        private ProjectFile previous;
+        // Path of the first file written with each content hash, while deduplicating
+        private final Map<String, String> firstPaths = minDuplicateChars >= 0 ? new HashMap<>() : null;
+
+        TreeWriter(XmlEmitter xml, boolean flushEachFile, boolean anyOmitted) {
+            this.xml = xml;
+            this.flushEachFile = flushEachFile;
+            this.anyOmitted = anyOmitted;
+        }
+
+        @Override
+        public void write(ProjectFile file) throws IOException {
+            if (previous != null && ProjectFile.TREE_ORDER.compare(previous, file) >= 0) {
+                throw new IllegalArgumentException("File out of tree order: " + file.getPath() + " after " + previous.getPath());
+            }
+            previous = file;
+            if (heldBack == null) {
+                emit(file);
+                flushFile();
+                return;
+            }
+            heldBack.add(file);
+            if (file.getPath().equalsIgnoreCase(AGENTS_FILE)) {
+                startTree(file);
             } else {
-                // It's a directory
-                sb.append(indent).append("<d n=\"").append(key).append("\">\n");
-                renderXmlTree(child, indent + "  ", sb);
-                sb.append(indent).append("</d>\n");
+                // Every spelling of agents.md sorts at or before the lower case one
+                String path = file.getPath();
+                if (split(path) > 0 && path.substring(bounds[0], bounds[1]).compareTo(AGENTS_FILE.toLowerCase()) > 0) {
+                    startTree(null);
+                }
+            }
+            flushFile();
+        }
+
+        private void flushFile() throws IOException {
+            if (flushEachFile) {
+                xml.flush();
             }
         }
-    }
 
-    private static class TreeNode {
+        @Override
+        public void finish() throws IOException {
+            if (heldBack != null) {
+                startTree(null);
+            }
+            closeDirs(0);
+            xml.text("</project_tree>\n");
+            xml.text("</codebase>");
+            xml.flush();
+        }
+
+        private void startTree(ProjectFile agentsFile) throws IOException {
+            xml.text("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            xml.text("<codebase>\n");
+            appendFileSummary(xml, agentsFile, anyOmitted);
+            xml.text("<project_tree>\n");
+            List<ProjectFile> files = heldBack;
+            heldBack = null;
+            for (ProjectFile file : files) {
+                emit(file);
+            }
+        }
+
+        private void emit(ProjectFile file) throws IOException {
+            String path = file.getPath();
+            int count = split(path);
+            if (count == 0) {
+                return;
+            }
+            int depth = count - 1;
+            int common = 0;
+            while (common < openDirs.size() && common < depth && isSegment(path, common, openDirs.get(common))) {
+                common++;
+            }
+            closeDirs(common);
+            for (int i = common; i < depth; i++) {
+                String name = path.substring(bounds[2 * i], bounds[2 * i + 1]);
+                xml.indent(i).text("<d n=\"").attribute(name).text("\">\n");
+                openDirs.add(name);
+            }
+            appendFile(depth, path, bounds[2 * depth], bounds[2 * depth + 1], file);
+        }
+
+        /**
+         * Writes a file element named by part of its path, so names need not be cut out of paths.
+         */
+        private void appendFile(int depth, String path, int start, int end, ProjectFile file) throws IOException {
+            xml.indent(depth).text("<f n=\"").attribute(path, start, end);
+            if (file.isContentOmitted()) {
+                xml.text("\"/>\n");
+                return;
+            }
+            String content = file.getContent();
+            String original = firstPaths != null && content.length() >= minDuplicateChars ? firstWithContent(path, content) : null;
+            if (original != null) {
+                xml.text("\" same-as=\"").attribute(original).text("\"/>\n");
+                if (stats != null) {
+                    stats.recordDuplicate(content.length() + CONTENT_MARKUP.length() - REFERENCE_MARKUP.length() - original.length());
+                }
+                return;
+            }
+            xml.text("\"><![CDATA[");
+            xml.cdata(content);
+            xml.text("]]></f>\n");
+        }
+
+        /**
+         * @return the path of the first file written with the content, or null if this file is the first.
+         */
+        private String firstWithContent(String path, String content) {
+            String hash = ContentHash.of(content.getBytes(StandardCharsets.UTF_8));
+            String first = firstPaths.get(hash);
+            if (first == null) {
+                firstPaths.put(hash, path.replace('\\', '/'));
+            }
+            return first;
+        }
 
-        String name;
-        ProjectFile file;
-        Map<String, TreeNode> children = new HashMap<>();
+        /**
+         * Finds the non-empty segments of a path, separated by either kind of slash, and records their bounds.
+         * @return the number of segments.
+         */
+        private int split(String path) {
+            int count = 0;
+            int start = 0;
+            for (int i = 0; i <= path.length(); i++) {
+                if (i == path.length() || path.charAt(i) == '/' || path.charAt(i) == '\\') {
+                    if (i > start) {
+                        if (2 * count + 2 > bounds.length) {
+                            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                        }
+                        bounds[2 * count] = start;
+                        bounds[2 * count + 1] = i;
+                        count++;
+                    }
+                    start = i + 1;
+                }
+            }
+            return count;
+        }
 
-        TreeNode(String name) {
-            this.name = name;
+        private boolean isSegment(String path, int segment, String name) {
+            int start = bounds[2 * segment];
+            return bounds[2 * segment + 1] - start == name.length() && path.regionMatches(start, name, 0, name.length());
+        }
+
+        private void closeDirs(int keep) throws IOException {
+            for (int i = openDirs.size() - 1; i >= keep; i--) {
+                xml.indent(i).text("</d>\n");
+                openDirs.remove(i);
+            }
         }
     }
 }
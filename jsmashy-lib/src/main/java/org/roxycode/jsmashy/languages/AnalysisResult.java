@@ -4,12 +4,34 @@ import java.util.List;
 
 /**
  * Represents the results of a source code analysis.
+ * @param skeleton the skeletonized source.
+ * @param errors the syntax errors found.
+ * @param symbols the declarations found, or null if the analyzer does not collect them or could not parse the source.
  */
 public record AnalysisResult(
     String skeleton,
-    List<String> errors
+    List<String> errors,
+    SourceSymbols symbols
 ) {
+    public AnalysisResult(String skeleton, List<String> errors) {
+        this(skeleton, errors, null);
+    }
+
     public boolean hasErrors() {
         return errors != null && !errors.isEmpty();
     }
+
+    /**
+     * @return true if the source has errors but the analyzer still recovered a skeleton.
+     */
+    public boolean isPartial() {
+        return hasErrors() && skeleton != null && !skeleton.isEmpty();
+    }
+
+    /**
+     * @return true if the skeleton can stand in for the source, even if only partially.
+     */
+    public boolean hasSkeleton() {
+        return !hasErrors() || isPartial();
+    }
 }
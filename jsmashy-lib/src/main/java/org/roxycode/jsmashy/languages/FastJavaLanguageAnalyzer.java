@@ -0,0 +1,92 @@
+package org.roxycode.jsmashy.languages;
+
+import org.antlr.v4.runtime.*;
+import org.roxycode.jsmashy.languages.java.Java20Lexer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Skeletonizes Java source with the lexer alone, several times faster than {@link JavaLanguageAnalyzer}.
+ * <p>
+ * Member bodies are found by {@link JavaTokenSkeletonizer} and replaced as the parser-based
+ * analyzer replaces them, so valid sources get the same skeletons. Only lexical errors, such as an
+ * unterminated string, are reported; other syntax errors go unnoticed. {@link SkeletonLevel#PUBLIC_API}
+ * needs to know which declarations are visible and is delegated to {@link JavaLanguageAnalyzer}.
+ */
+public class FastJavaLanguageAnalyzer implements LanguageAnalyzer {
+    private static final Logger logger = LoggerFactory.getLogger(FastJavaLanguageAnalyzer.class);
+    private static final String VERSION = "java-lexer-1";
+
+    private final int shortBodyLines;
+    private final JavaLanguageAnalyzer parser;
+
+    public FastJavaLanguageAnalyzer() {
+        this(JavaLanguageAnalyzer.DEFAULT_SHORT_BODY_LINES);
+    }
+
+    /**
+     * @param shortBodyLines bodies spanning fewer lines, braces included, are kept by {@link SkeletonLevel#BODIES_UNDER_N_LINES}.
+     */
+    public FastJavaLanguageAnalyzer(int shortBodyLines) {
+        this.parser = new JavaLanguageAnalyzer(shortBodyLines);
+        this.shortBodyLines = shortBodyLines;
+    }
+
+    @Override
+    public boolean supports(String fileName) {
+        return fileName.endsWith(".java");
+    }
+
+    /**
+     * The lexer does not see declarations, so symbols are collected by {@link JavaLanguageAnalyzer}.
+     */
+    @Override
+    public LanguageAnalyzer symbolAnalyzer() {
+        return parser;
+    }
+
+    @Override
+    public String version() {
+        return VERSION;
+    }
+
+    @Override
+    public String version(SkeletonLevel level) {
+        if (level == SkeletonLevel.PUBLIC_API) {
+            return parser.version(level);
+        }
+        String version = LanguageAnalyzer.super.version(level);
+        return level == SkeletonLevel.BODIES_UNDER_N_LINES ? version + "/" + shortBodyLines : version;
+    }
+
+    @Override
+    public AnalysisResult analyze(String sourceCode) {
+        return analyze(sourceCode, SkeletonLevel.SIGNATURES_WITH_DOCS);
+    }
+
+    @Override
+    public AnalysisResult analyze(String sourceCode, SkeletonLevel level) {
+        if (level == SkeletonLevel.PUBLIC_API) {
+            return parser.analyze(sourceCode, level);
+        }
+        logger.debug("Analyzing Java source code with the lexer...");
+        Java20Lexer lexer = new Java20Lexer(CharStreams.fromString(sourceCode));
+        lexer.removeErrorListeners();
+        List<String> errors = new ArrayList<>();
+        lexer.addErrorListener(new BaseErrorListener() {
+            @Override
+            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+                errors.add("Lexer error at " + line + ":" + charPositionInLine + " - " + msg);
+            }
+        });
+        CommonTokenStream tokens = new CommonTokenStream(lexer);
+        String skeleton = JavaTokenSkeletonizer.skeletonize(tokens, level, shortBodyLines);
+        if (!errors.isEmpty() && skeleton.equals(sourceCode)) {
+            skeleton = "";
+        }
+        return new AnalysisResult(skeleton, errors);
+    }
+}
@@ -1,7 +1,11 @@
 package org.roxycode.jsmashy.languages;
 
 import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.RuleNode;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.roxycode.jsmashy.languages.java.Java20Lexer;
 import org.roxycode.jsmashy.languages.java.Java20Parser;
@@ -11,74 +15,213 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Analyzes Java source code using ANTLR4 to detect syntax errors and provide skeletonization.
+ * Files with syntax errors still get a partial skeleton from {@link JavaTokenSkeletonizer}.
+ * Files that parse cleanly also get their declarations, collected in the same walk of the tree.
  */
 public class JavaLanguageAnalyzer implements LanguageAnalyzer {
     private static final Logger logger = LoggerFactory.getLogger(JavaLanguageAnalyzer.class);
+    private static final String VERSION = "java-antlr-2";
+    private static final Set<Integer> MODIFIER_RULES = Set.of(
+            Java20Parser.RULE_classModifier, Java20Parser.RULE_interfaceModifier, Java20Parser.RULE_fieldModifier,
+            Java20Parser.RULE_methodModifier, Java20Parser.RULE_constructorModifier, Java20Parser.RULE_interfaceMethodModifier,
+            Java20Parser.RULE_constantModifier);
+
+    /**
+     * Default line count below which {@link SkeletonLevel#BODIES_UNDER_N_LINES} keeps a body.
+     */
+    public static final int DEFAULT_SHORT_BODY_LINES = 5;
+
+    private final int shortBodyLines;
+
+    public JavaLanguageAnalyzer() {
+        this(DEFAULT_SHORT_BODY_LINES);
+    }
+
+    /**
+     * @param shortBodyLines bodies spanning fewer lines, braces included, are kept by {@link SkeletonLevel#BODIES_UNDER_N_LINES}.
+     */
+    public JavaLanguageAnalyzer(int shortBodyLines) {
+        if (shortBodyLines <= 0) {
+            throw new IllegalArgumentException("Short body lines must be positive: " + shortBodyLines);
+        }
+        this.shortBodyLines = shortBodyLines;
+    }
 
     @Override
     public boolean supports(String fileName) {
         return fileName.endsWith(".java");
     }
 
+    @Override
+    public String version() {
+        return VERSION;
+    }
+
+    @Override
+    public String version(SkeletonLevel level) {
+        String version = LanguageAnalyzer.super.version(level);
+        return level == SkeletonLevel.BODIES_UNDER_N_LINES ? version + "/" + shortBodyLines : version;
+    }
+
     @Override
     public AnalysisResult analyze(String sourceCode) {
+        return analyze(sourceCode, SkeletonLevel.SIGNATURES_WITH_DOCS);
+    }
+
+    @Override
+    public AnalysisResult analyze(String sourceCode, SkeletonLevel level) {
         logger.debug("Analyzing Java source code...");
-        List<String> errors = new ArrayList<>();
-        
-        CharStream charStream = CharStreams.fromString(sourceCode);
-        Java20Lexer lexer = new Java20Lexer(charStream);
-        
-        lexer.removeErrorListeners();
-        lexer.addErrorListener(new BaseErrorListener() {
-            @Override
-            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
-                errors.add("Lexer error at " + line + ":" + charPositionInLine + " - " + msg);
+        ParsePipeline pipeline = new ParsePipeline(sourceCode);
+        CommonTokenStream tokens = pipeline.tokens;
+        ParseTree tree = pipeline.parse();
+
+        String skeleton;
+        SourceSymbols symbols = null;
+        if (pipeline.errors.isEmpty()) {
+            JavaSymbolCollector collector = new JavaSymbolCollector();
+            skeleton = skeletonize(tokens, tree, level, collector);
+            symbols = collector.getSymbols();
+        } else {
+            // Errors are usually local, so braces still show where the bodies are
+            skeleton = JavaTokenSkeletonizer.skeletonize(tokens, level, shortBodyLines);
+            if (skeleton.equals(sourceCode)) {
+                skeleton = "";
+            } else {
+                logger.debug("Recovered a partial skeleton despite {} errors", pipeline.errors.size());
             }
-        });
+        }
+        return new AnalysisResult(skeleton, pipeline.errors, symbols);
+    }
 
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
-        Java20Parser parser = new Java20Parser(tokens);
-        
-        parser.removeErrorListeners();
-        parser.addErrorListener(new BaseErrorListener() {
-            @Override
-            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
-                errors.add("Parser error at " + line + ":" + charPositionInLine + " - " + msg);
+    /**
+     * Drops the DFA that ANTLR shares between all lexers and parsers of the Java grammar.
+     * The DFA grows while new constructs are seen and makes later parses faster; clearing it
+     * frees that memory at the cost of warming up again. Must not be called while files are parsed.
+     */
+    public static void clearDFACache() {
+        Java20Lexer lexer = new Java20Lexer(CharStreams.fromString(""));
+        Java20Parser parser = new Java20Parser(new CommonTokenStream(lexer));
+        lexer.getInterpreter().clearDFA();
+        parser.getInterpreter().clearDFA();
+        logger.debug("Cleared Java parser DFA cache");
+    }
+
+    /**
+     * The lexer and parser of one file.
+     * <p>
+     * Files are first parsed in SLL mode, which is much faster but may report an error on valid
+     * input; the parser then bails out on the first error. Only in that case is the file parsed again
+     * with full LL prediction and the default error recovery, which yields the real error messages.
+     */
+    private static class ParsePipeline {
+        final List<String> errors = new ArrayList<>();
+        final Java20Lexer lexer;
+        final CommonTokenStream tokens;
+        final Java20Parser parser;
+
+        ParsePipeline(String sourceCode) {
+            lexer = new Java20Lexer(CharStreams.fromString(sourceCode));
+            tokens = new CommonTokenStream(lexer);
+            parser = new Java20Parser(tokens);
+            lexer.removeErrorListeners();
+            lexer.addErrorListener(new BaseErrorListener() {
+                @Override
+                public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+                    errors.add("Lexer error at " + line + ":" + charPositionInLine + " - " + msg);
+                }
+            });
+        }
+
+        ParseTree parse() {
+            parser.removeErrorListeners();
+            parser.setErrorHandler(new BailErrorStrategy());
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            try {
+                return parser.start_();
+            } catch (ParseCancellationException e) {
+                logger.debug("SLL parse failed, retrying with full LL prediction");
             }
-        });
 
-        ParseTree tree = parser.start_();
-        
-        String skeleton = "";
-        if (errors.isEmpty()) {
-            skeleton = skeletonize(tokens, tree);
+            // Tokens are buffered, so lexer errors are not reported twice
+            tokens.seek(0);
+            parser.setTokenStream(tokens);
+            parser.addErrorListener(new BaseErrorListener() {
+                @Override
+                public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+                    errors.add("Parser error at " + line + ":" + charPositionInLine + " - " + msg);
+                }
+            });
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            return parser.start_();
+        }
+    }
+
+    /**
+     * Walks the tree once for both the skeleton and the listener.
+     */
+    private static class TeeWalker extends ParseTreeWalker {
+        private final ParseTreeListener second;
+
+        TeeWalker(ParseTreeListener second) {
+            this.second = second;
+        }
+
+        @Override
+        protected void enterRule(ParseTreeListener listener, RuleNode r) {
+            super.enterRule(listener, r);
+            super.enterRule(second, r);
         }
 
-        return new AnalysisResult(skeleton, errors);
+        @Override
+        protected void exitRule(ParseTreeListener listener, RuleNode r) {
+            super.exitRule(second, r);
+            super.exitRule(listener, r);
+        }
     }
 
-    private String skeletonize(CommonTokenStream tokens, ParseTree tree) {
+    private String skeletonize(CommonTokenStream tokens, ParseTree tree, SkeletonLevel level, ParseTreeListener alongside) {
         TokenStreamRewriter rewriter = new TokenStreamRewriter(tokens);
-        ParseTreeWalker walker = new ParseTreeWalker();
-        
+        ParseTreeWalker walker = new TeeWalker(alongside);
+        boolean signaturesOnly = level == SkeletonLevel.ALL_SIGNATURES;
+        boolean publicApi = level == SkeletonLevel.PUBLIC_API;
+        String omittedBody = signaturesOnly ? "{}" : JavaTokenSkeletonizer.OMITTED_BODY;
+        if (signaturesOnly) {
+            JavaTokenSkeletonizer.removeComments(tokens, rewriter);
+        }
+
         walker.walk(new Java20ParserBaseListener() {
+            // The declaration or body being rewritten as a whole; nothing inside it is touched
             private ParserRuleContext activeOmission = null;
 
             @Override
-            public void enterMethodBody(Java20Parser.MethodBodyContext ctx) {
-                if (activeOmission == null && ctx.block() != null) {
-                    activeOmission = ctx;
-                    rewriter.replace(ctx.block().getStart(), ctx.block().getStop(), " { /* implementation omitted */ }");
+            public void exitEveryRule(ParserRuleContext ctx) {
+                if (activeOmission == ctx) {
+                    activeOmission = null;
                 }
             }
 
             @Override
-            public void exitMethodBody(Java20Parser.MethodBodyContext ctx) {
-                if (activeOmission == ctx) {
-                    activeOmission = null;
+            public void enterMethodBody(Java20Parser.MethodBodyContext ctx) {
+                if (activeOmission == null && ctx.block() != null) {
+                    activeOmission = ctx;
+                    if (isShort(ctx.block())) {
+                        return;
+                    }
+                    if (signaturesOnly) {
+                        // "void run() { ... }" becomes "void run();"
+                        int start = ctx.block().getStart().getTokenIndex();
+                        if (start > 0 && tokens.get(start - 1).getType() == Java20Lexer.WS) {
+                            start--;
+                        }
+                        rewriter.replace(start, ctx.block().getStop().getTokenIndex(), ";");
+                    } else {
+                        rewriter.replace(ctx.block().getStart(), ctx.block().getStop(), omittedBody);
+                    }
                 }
             }
 
@@ -86,48 +229,127 @@ public class JavaLanguageAnalyzer implements LanguageAnalyzer {
             public void enterConstructorBody(Java20Parser.ConstructorBodyContext ctx) {
                 if (activeOmission == null) {
                     activeOmission = ctx;
-                    rewriter.replace(ctx.getStart(), ctx.getStop(), " { /* implementation omitted */ }");
+                    if (!isShort(ctx)) {
+                        rewriter.replace(ctx.getStart(), ctx.getStop(), omittedBody);
+                    }
                 }
             }
 
             @Override
-            public void exitConstructorBody(Java20Parser.ConstructorBodyContext ctx) {
-                if (activeOmission == ctx) {
-                    activeOmission = null;
+            public void enterStaticInitializer(Java20Parser.StaticInitializerContext ctx) {
+                if (activeOmission == null && ctx.block() != null) {
+                    activeOmission = ctx;
+                    if (!isShort(ctx.block())) {
+                        rewriter.replace(ctx.block().getStart(), ctx.block().getStop(), omittedBody);
+                    }
                 }
             }
-            
+
             @Override
-            public void enterStaticInitializer(Java20Parser.StaticInitializerContext ctx) {
+            public void enterInstanceInitializer(Java20Parser.InstanceInitializerContext ctx) {
                 if (activeOmission == null && ctx.block() != null) {
                     activeOmission = ctx;
-                    rewriter.replace(ctx.block().getStart(), ctx.block().getStop(), " { /* implementation omitted */ }");
+                    if (!isShort(ctx.block())) {
+                        rewriter.replace(ctx.block().getStart(), ctx.block().getStop(), omittedBody);
+                    }
                 }
             }
 
             @Override
-            public void exitStaticInitializer(Java20Parser.StaticInitializerContext ctx) {
-                if (activeOmission == ctx) {
-                    activeOmission = null;
+            public void enterImportDeclaration(Java20Parser.ImportDeclarationContext ctx) {
+                if (publicApi) {
+                    remove(ctx);
                 }
             }
-            
+
             @Override
-            public void enterInstanceInitializer(Java20Parser.InstanceInitializerContext ctx) {
-                if (activeOmission == null && ctx.block() != null) {
-                    activeOmission = ctx;
-                    rewriter.replace(ctx.block().getStart(), ctx.block().getStop(), " { /* implementation omitted */ }");
+            public void enterTopLevelClassOrInterfaceDeclaration(Java20Parser.TopLevelClassOrInterfaceDeclarationContext ctx) {
+                if (publicApi && !hasModifier(ctx, "public")) {
+                    remove(ctx);
                 }
             }
 
             @Override
-            public void exitInstanceInitializer(Java20Parser.InstanceInitializerContext ctx) {
-                if (activeOmission == ctx) {
-                    activeOmission = null;
+            public void enterClassBodyDeclaration(Java20Parser.ClassBodyDeclarationContext ctx) {
+                if (publicApi && !hasModifier(ctx, "public") && !hasModifier(ctx, "protected")) {
+                    remove(ctx);
+                }
+            }
+
+            @Override
+            public void enterCompactConstructorDeclaration(Java20Parser.CompactConstructorDeclarationContext ctx) {
+                if (publicApi && !hasModifier(ctx, "public") && !hasModifier(ctx, "protected")) {
+                    remove(ctx);
+                }
+            }
+
+            @Override
+            public void enterInterfaceMemberDeclaration(Java20Parser.InterfaceMemberDeclarationContext ctx) {
+                // Interface members are public unless declared private
+                if (publicApi && hasModifier(ctx, "private")) {
+                    remove(ctx);
+                }
+            }
+
+            @Override
+            public void enterFieldDeclaration(Java20Parser.FieldDeclarationContext ctx) {
+                if (publicApi && activeOmission == null && !(hasModifier(ctx, "static") && hasModifier(ctx, "final"))) {
+                    activeOmission = ctx;
+                    for (Java20Parser.VariableDeclaratorContext declarator : ctx.variableDeclaratorList().variableDeclarator()) {
+                        if (declarator.variableInitializer() != null) {
+                            // "int count = 0" becomes "int count"
+                            rewriter.delete(declarator.variableDeclaratorId().getStop().getTokenIndex() + 1,
+                                    declarator.variableInitializer().getStop().getTokenIndex());
+                        }
+                    }
+                }
+            }
+
+            private boolean isShort(ParserRuleContext body) {
+                return level == SkeletonLevel.BODIES_UNDER_N_LINES
+                        && body.getStop().getLine() - body.getStart().getLine() + 1 < shortBodyLines;
+            }
+
+            /**
+             * Deletes a declaration with the comments and line break before it, keeping a comment
+             * that trails the previous declaration on its line.
+             */
+            private void remove(ParserRuleContext ctx) {
+                if (activeOmission != null) {
+                    return;
+                }
+                activeOmission = ctx;
+                int start = ctx.getStart().getTokenIndex();
+                int first = start;
+                while (first > 0 && tokens.get(first - 1).getChannel() != Token.DEFAULT_CHANNEL) {
+                    first--;
+                }
+                while (first < start && !(tokens.get(first).getType() == Java20Lexer.WS && tokens.get(first).getText().indexOf('\n') >= 0)) {
+                    first++;
                 }
+                rewriter.delete(first, ctx.getStop().getTokenIndex());
             }
         }, tree);
 
         return rewriter.getText();
     }
+
+    /**
+     * Checks the modifiers of a declaration, looking through the rules that only wrap it,
+     * such as a class member wrapping a method.
+     */
+    private static boolean hasModifier(ParserRuleContext ctx, String modifier) {
+        ParserRuleContext declaration = ctx;
+        while (declaration.getChildCount() == 1 && declaration.getChild(0) instanceof ParserRuleContext child) {
+            declaration = child;
+        }
+        for (int i = 0; i < declaration.getChildCount(); i++) {
+            if (declaration.getChild(i) instanceof ParserRuleContext child
+                    && MODIFIER_RULES.contains(child.getRuleIndex())
+                    && child.getText().equals(modifier)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,348 @@
+package org.roxycode.jsmashy.languages;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.roxycode.jsmashy.languages.java.Java20Parser;
+import org.roxycode.jsmashy.languages.java.Java20ParserBaseListener;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Collects the declarations of a Java parse tree while it is walked for the skeleton.
+ * <p>
+ * Only declarations that are visible from outside a body are collected: local and anonymous
+ * classes, and everything declared inside method bodies, initializers and enum constant bodies,
+ * are left out.
+ */
+class JavaSymbolCollector extends Java20ParserBaseListener {
+    private String packageName = "";
+    private final List<String> imports = new ArrayList<>();
+    private final List<Symbol> symbols = new ArrayList<>();
+    // Qualified names of the enclosing types
+    private final Deque<String> types = new ArrayDeque<>();
+    // Number of enclosing bodies whose declarations are not collected
+    private int hidden;
+
+    SourceSymbols getSymbols() {
+        return new SourceSymbols(packageName, List.copyOf(imports), List.copyOf(symbols));
+    }
+
+    @Override
+    public void enterPackageDeclaration(Java20Parser.PackageDeclarationContext ctx) {
+        packageName = join(ctx.identifier());
+    }
+
+    @Override
+    public void enterSingleTypeImportDeclaration(Java20Parser.SingleTypeImportDeclarationContext ctx) {
+        imports.add(ctx.typeName().getText());
+    }
+
+    @Override
+    public void enterTypeImportOnDemandDeclaration(Java20Parser.TypeImportOnDemandDeclarationContext ctx) {
+        imports.add(ctx.packageOrTypeName().getText() + ".*");
+    }
+
+    @Override
+    public void enterSingleStaticImportDeclaration(Java20Parser.SingleStaticImportDeclarationContext ctx) {
+        imports.add("static " + ctx.typeName().getText() + "." + ctx.identifier().getText());
+    }
+
+    @Override
+    public void enterStaticImportOnDemandDeclaration(Java20Parser.StaticImportOnDemandDeclarationContext ctx) {
+        imports.add("static " + ctx.typeName().getText() + ".*");
+    }
+
+    @Override
+    public void enterNormalClassDeclaration(Java20Parser.NormalClassDeclarationContext ctx) {
+        List<String> supertypes = new ArrayList<>();
+        if (ctx.classExtends() != null) {
+            supertypes.add(typeName(ctx.classExtends().classType()));
+        }
+        if (ctx.classImplements() != null) {
+            addAll(supertypes, ctx.classImplements().interfaceTypeList());
+        }
+        enterType(Symbol.Kind.CLASS, ctx, ctx.typeIdentifier(), ctx.classBody(), supertypes);
+    }
+
+    @Override
+    public void exitNormalClassDeclaration(Java20Parser.NormalClassDeclarationContext ctx) {
+        exitType();
+    }
+
+    @Override
+    public void enterEnumDeclaration(Java20Parser.EnumDeclarationContext ctx) {
+        List<String> supertypes = new ArrayList<>();
+        if (ctx.classImplements() != null) {
+            addAll(supertypes, ctx.classImplements().interfaceTypeList());
+        }
+        enterType(Symbol.Kind.ENUM, ctx, ctx.typeIdentifier(), ctx.enumBody(), supertypes);
+    }
+
+    @Override
+    public void exitEnumDeclaration(Java20Parser.EnumDeclarationContext ctx) {
+        exitType();
+    }
+
+    @Override
+    public void enterRecordDeclaration(Java20Parser.RecordDeclarationContext ctx) {
+        List<String> supertypes = new ArrayList<>();
+        if (ctx.classImplements() != null) {
+            addAll(supertypes, ctx.classImplements().interfaceTypeList());
+        }
+        enterType(Symbol.Kind.RECORD, ctx, ctx.typeIdentifier(), ctx.recordBody(), supertypes);
+    }
+
+    @Override
+    public void exitRecordDeclaration(Java20Parser.RecordDeclarationContext ctx) {
+        exitType();
+    }
+
+    @Override
+    public void enterNormalInterfaceDeclaration(Java20Parser.NormalInterfaceDeclarationContext ctx) {
+        List<String> supertypes = new ArrayList<>();
+        if (ctx.interfaceExtends() != null) {
+            addAll(supertypes, ctx.interfaceExtends().interfaceTypeList());
+        }
+        enterType(Symbol.Kind.INTERFACE, ctx, ctx.typeIdentifier(), ctx.interfaceBody(), supertypes);
+    }
+
+    @Override
+    public void exitNormalInterfaceDeclaration(Java20Parser.NormalInterfaceDeclarationContext ctx) {
+        exitType();
+    }
+
+    @Override
+    public void enterAnnotationInterfaceDeclaration(Java20Parser.AnnotationInterfaceDeclarationContext ctx) {
+        enterType(Symbol.Kind.ANNOTATION, ctx, ctx.typeIdentifier(), ctx.annotationInterfaceBody(), List.of());
+    }
+
+    @Override
+    public void exitAnnotationInterfaceDeclaration(Java20Parser.AnnotationInterfaceDeclarationContext ctx) {
+        exitType();
+    }
+
+    @Override
+    public void enterMethodDeclaration(Java20Parser.MethodDeclarationContext ctx) {
+        addMember(Symbol.Kind.METHOD, ctx.methodHeader().methodDeclarator().identifier().getText(), ctx, signature(ctx, ctx.methodBody()));
+    }
+
+    @Override
+    public void enterInterfaceMethodDeclaration(Java20Parser.InterfaceMethodDeclarationContext ctx) {
+        addMember(Symbol.Kind.METHOD, ctx.methodHeader().methodDeclarator().identifier().getText(), ctx, signature(ctx, ctx.methodBody()));
+    }
+
+    @Override
+    public void enterConstructorDeclaration(Java20Parser.ConstructorDeclarationContext ctx) {
+        addMember(Symbol.Kind.CONSTRUCTOR, ctx.constructorDeclarator().simpleTypeName().getText(), ctx, signature(ctx, ctx.constructorBody()));
+    }
+
+    @Override
+    public void enterCompactConstructorDeclaration(Java20Parser.CompactConstructorDeclarationContext ctx) {
+        addMember(Symbol.Kind.CONSTRUCTOR, ctx.simpleTypeName().getText(), ctx, signature(ctx, ctx.constructorBody()));
+    }
+
+    @Override
+    public void enterAnnotationInterfaceElementDeclaration(Java20Parser.AnnotationInterfaceElementDeclarationContext ctx) {
+        ParseTree end = ctx.defaultValue() != null ? ctx.defaultValue() : ctx.getChild(ctx.getChildCount() - 1);
+        addMember(Symbol.Kind.METHOD, ctx.identifier().getText(), ctx, signature(ctx, end));
+    }
+
+    @Override
+    public void enterFieldDeclaration(Java20Parser.FieldDeclarationContext ctx) {
+        addFields(ctx, ctx.variableDeclaratorList());
+    }
+
+    @Override
+    public void enterConstantDeclaration(Java20Parser.ConstantDeclarationContext ctx) {
+        addFields(ctx, ctx.variableDeclaratorList());
+    }
+
+    @Override
+    public void enterRecordComponent(Java20Parser.RecordComponentContext ctx) {
+        Java20Parser.IdentifierContext name = ctx.identifier() != null ? ctx.identifier() : ctx.variableArityRecordComponent().identifier();
+        addMember(Symbol.Kind.FIELD, name.getText(), ctx, signature(ctx, null));
+    }
+
+    @Override
+    public void enterEnumConstant(Java20Parser.EnumConstantContext ctx) {
+        String name = ctx.identifier().getText();
+        addMember(Symbol.Kind.FIELD, name, ctx, name);
+    }
+
+    @Override
+    public void enterClassBody(Java20Parser.ClassBodyContext ctx) {
+        // Anonymous classes and enum constant bodies
+        if (!(ctx.getParent() instanceof Java20Parser.NormalClassDeclarationContext)) {
+            hidden++;
+        }
+    }
+
+    @Override
+    public void exitClassBody(Java20Parser.ClassBodyContext ctx) {
+        if (!(ctx.getParent() instanceof Java20Parser.NormalClassDeclarationContext)) {
+            hidden--;
+        }
+    }
+
+    @Override
+    public void enterMethodBody(Java20Parser.MethodBodyContext ctx) {
+        hidden++;
+    }
+
+    @Override
+    public void exitMethodBody(Java20Parser.MethodBodyContext ctx) {
+        hidden--;
+    }
+
+    @Override
+    public void enterConstructorBody(Java20Parser.ConstructorBodyContext ctx) {
+        hidden++;
+    }
+
+    @Override
+    public void exitConstructorBody(Java20Parser.ConstructorBodyContext ctx) {
+        hidden--;
+    }
+
+    @Override
+    public void enterStaticInitializer(Java20Parser.StaticInitializerContext ctx) {
+        hidden++;
+    }
+
+    @Override
+    public void exitStaticInitializer(Java20Parser.StaticInitializerContext ctx) {
+        hidden--;
+    }
+
+    @Override
+    public void enterInstanceInitializer(Java20Parser.InstanceInitializerContext ctx) {
+        hidden++;
+    }
+
+    @Override
+    public void exitInstanceInitializer(Java20Parser.InstanceInitializerContext ctx) {
+        hidden--;
+    }
+
+    @Override
+    public void enterVariableInitializer(Java20Parser.VariableInitializerContext ctx) {
+        hidden++;
+    }
+
+    @Override
+    public void exitVariableInitializer(Java20Parser.VariableInitializerContext ctx) {
+        hidden--;
+    }
+
+    private void enterType(Symbol.Kind kind, ParserRuleContext ctx, ParserRuleContext name, ParseTree body, List<String> supertypes) {
+        if (hidden > 0) {
+            return;
+        }
+        String container = types.isEmpty() ? packageName : types.peek();
+        Symbol symbol = new Symbol(kind, name.getText(), container, signature(ctx, body),
+                ctx.getStart().getLine(), ctx.getStop().getLine(), List.copyOf(supertypes));
+        symbols.add(symbol);
+        types.push(symbol.qualifiedName());
+    }
+
+    private void exitType() {
+        if (hidden == 0) {
+            types.pop();
+        }
+    }
+
+    private void addMember(Symbol.Kind kind, String name, ParserRuleContext ctx, String signature) {
+        if (hidden > 0 || types.isEmpty()) {
+            return;
+        }
+        symbols.add(new Symbol(kind, name, types.peek(), signature, ctx.getStart().getLine(), ctx.getStop().getLine(), List.of()));
+    }
+
+    // "private int a = 1, b;" becomes the fields "private int a" and "private int b"
+    private void addFields(ParserRuleContext ctx, Java20Parser.VariableDeclaratorListContext declarators) {
+        String type = signature(ctx, declarators);
+        for (Java20Parser.VariableDeclaratorContext declarator : declarators.variableDeclarator()) {
+            StringBuilder signature = new StringBuilder(type).append(' ');
+            appendTokens(signature, declarator.variableDeclaratorId(), null, new int[] {-1});
+            addMember(Symbol.Kind.FIELD, declarator.variableDeclaratorId().identifier().getText(), ctx, signature.toString());
+        }
+    }
+
+    /**
+     * Returns the source of a declaration up to, but excluding, the given child, without
+     * annotations and comments and with all whitespace collapsed to single spaces.
+     */
+    private static String signature(ParserRuleContext ctx, ParseTree end) {
+        StringBuilder signature = new StringBuilder();
+        appendTokens(signature, ctx, end, new int[] {-1});
+        return signature.toString();
+    }
+
+    // Returns false once the end has been reached; lastStop holds the stop index of the previous token
+    private static boolean appendTokens(StringBuilder out, ParseTree node, ParseTree end, int[] lastStop) {
+        if (node == end) {
+            return false;
+        }
+        if (node instanceof TerminalNode terminal) {
+            Token token = terminal.getSymbol();
+            if (token.getType() == Token.EOF) {
+                return true;
+            }
+            if (lastStop[0] >= 0 && token.getStartIndex() > lastStop[0] + 1) {
+                out.append(' ');
+            }
+            out.append(token.getText());
+            lastStop[0] = token.getStopIndex();
+            return true;
+        }
+        if (node instanceof Java20Parser.AnnotationContext) {
+            return true;
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (!appendTokens(out, node.getChild(i), end, lastStop)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void addAll(List<String> supertypes, Java20Parser.InterfaceTypeListContext list) {
+        for (Java20Parser.InterfaceTypeContext type : list.interfaceType()) {
+            supertypes.add(typeName(type.classType()));
+        }
+    }
+
+    // "java.util.Map<K, V>" becomes "java.util.Map"
+    private static String typeName(Java20Parser.ClassTypeContext type) {
+        String text = type.getText();
+        StringBuilder name = new StringBuilder(text.length());
+        int depth = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '<') {
+                depth++;
+            } else if (c == '>') {
+                depth--;
+            } else if (depth == 0) {
+                name.append(c);
+            }
+        }
+        return name.toString();
+    }
+
+    private static String join(List<Java20Parser.IdentifierContext> identifiers) {
+        StringBuilder name = new StringBuilder();
+        for (Java20Parser.IdentifierContext identifier : identifiers) {
+            if (!name.isEmpty()) {
+                name.append('.');
+            }
+            name.append(identifier.getText());
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,298 @@
+package org.roxycode.jsmashy.languages;
+
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStreamRewriter;
+import org.roxycode.jsmashy.languages.java.Java20Lexer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Skeletonizes Java from its tokens alone, following braces instead of a parse tree.
+ * <p>
+ * A small state machine tracks whether each brace opens a type body, a member body or anything
+ * else, such as an array initializer or a lambda, and replaces member bodies the way
+ * {@link JavaLanguageAnalyzer} does. It needs no valid syntax beyond matching braces, so a syntax
+ * error only affects the declaration it occurs in. {@link SkeletonLevel#PUBLIC_API} needs a parse
+ * tree and is treated as {@link SkeletonLevel#SIGNATURES_WITH_DOCS}.
+ */
+final class JavaTokenSkeletonizer {
+    static final String OMITTED_BODY = " { /* implementation omitted */ }";
+
+    private enum Scope {
+        TYPE,
+        // An enum body before the semicolon ending its constants
+        ENUM_CONSTANTS,
+        OTHER
+    }
+
+    private enum BodyKind {
+        METHOD,
+        CONSTRUCTOR,
+        INITIALIZER
+    }
+
+    private record Frame(Scope scope, String typeName) {
+    }
+
+    private JavaTokenSkeletonizer() {
+    }
+
+    /**
+     * @param tokens the tokens of a Java file, on all channels.
+     * @param level how much of the file the skeleton keeps.
+     * @param shortBodyLines bodies spanning fewer lines are kept by {@link SkeletonLevel#BODIES_UNDER_N_LINES}.
+     * @return the skeleton.
+     */
+    static String skeletonize(CommonTokenStream tokens, SkeletonLevel level, int shortBodyLines) {
+        tokens.fill();
+        TokenStreamRewriter rewriter = new TokenStreamRewriter(tokens);
+        if (level == SkeletonLevel.ALL_SIGNATURES) {
+            removeComments(tokens, rewriter);
+        }
+
+        Deque<Frame> frames = new ArrayDeque<>();
+        List<Token> header = new ArrayList<>();
+        int parens = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            if (token.getChannel() != Token.DEFAULT_CHANNEL || token.getType() == Token.EOF) {
+                continue;
+            }
+            switch (token.getType()) {
+                case Java20Lexer.LPAREN -> {
+                    parens++;
+                    header.add(token);
+                }
+                case Java20Lexer.RPAREN -> {
+                    parens = Math.max(0, parens - 1);
+                    header.add(token);
+                }
+                case Java20Lexer.SEMI -> {
+                    if (parens > 0) {
+                        header.add(token);
+                    } else {
+                        header.clear();
+                        if (!frames.isEmpty() && frames.peek().scope() == Scope.ENUM_CONSTANTS) {
+                            frames.push(new Frame(Scope.TYPE, frames.pop().typeName()));
+                        }
+                    }
+                }
+                case Java20Lexer.RBRACE -> {
+                    frames.poll();
+                    header.clear();
+                    parens = 0;
+                }
+                case Java20Lexer.LBRACE -> {
+                    if (parens > 0) {
+                        // A lambda or array inside an argument list, such as an annotation's
+                        i = matchingBrace(tokens, i);
+                        continue;
+                    }
+                    Frame enclosing = frames.peek();
+                    Frame type = typeDeclaration(header);
+                    if (type != null) {
+                        frames.push(type);
+                    } else if (enclosing != null && enclosing.scope() == Scope.ENUM_CONSTANTS) {
+                        frames.push(new Frame(Scope.TYPE, null));
+                    } else if (enclosing != null && enclosing.scope() == Scope.TYPE && isMemberBody(header)) {
+                        int close = matchingBrace(tokens, i);
+                        elide(tokens, rewriter, i, close, bodyKind(header, enclosing.typeName()), level, shortBodyLines);
+                        i = close;
+                    } else if (isAnonymousClass(header)) {
+                        frames.push(new Frame(Scope.TYPE, null));
+                    } else {
+                        frames.push(new Frame(Scope.OTHER, null));
+                    }
+                    header.clear();
+                    parens = 0;
+                }
+                default -> header.add(token);
+            }
+        }
+        return rewriter.getText();
+    }
+
+    /**
+     * Deletes comments, and for a comment on a line of its own also the line break after it.
+     */
+    static void removeComments(CommonTokenStream tokens, TokenStreamRewriter rewriter) {
+        tokens.fill();
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            if (token.getType() != Java20Lexer.COMMENT && token.getType() != Java20Lexer.LINE_COMMENT) {
+                continue;
+            }
+            rewriter.delete(i);
+            boolean ownLine = i == 0 || (tokens.get(i - 1).getType() == Java20Lexer.WS && tokens.get(i - 1).getText().indexOf('\n') >= 0);
+            if (ownLine && i + 1 < tokens.size() && tokens.get(i + 1).getType() == Java20Lexer.WS) {
+                rewriter.delete(++i);
+            }
+        }
+    }
+
+    private static void elide(CommonTokenStream tokens, TokenStreamRewriter rewriter, int open, int close, BodyKind kind,
+                              SkeletonLevel level, int shortBodyLines) {
+        if (level == SkeletonLevel.BODIES_UNDER_N_LINES
+                && tokens.get(close).getLine() - tokens.get(open).getLine() + 1 < shortBodyLines) {
+            return;
+        }
+        if (level != SkeletonLevel.ALL_SIGNATURES) {
+            rewriter.replace(open, close, OMITTED_BODY);
+        } else if (kind == BodyKind.METHOD) {
+            int start = open > 0 && tokens.get(open - 1).getType() == Java20Lexer.WS ? open - 1 : open;
+            rewriter.replace(start, close, ";");
+        } else {
+            rewriter.replace(open, close, "{}");
+        }
+    }
+
+    /**
+     * @return the index of the brace closing the one at {@code open}, or of the last token if it is never closed.
+     */
+    private static int matchingBrace(CommonTokenStream tokens, int open) {
+        int depth = 0;
+        int last = open;
+        for (int i = open; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            if (token.getType() == Token.EOF) {
+                break;
+            }
+            last = i;
+            if (token.getChannel() != Token.DEFAULT_CHANNEL) {
+                continue;
+            }
+            if (token.getType() == Java20Lexer.LBRACE) {
+                depth++;
+            } else if (token.getType() == Java20Lexer.RBRACE && --depth == 0) {
+                return i;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * @return the frame of a class, interface, enum or record body, or null if the header declares none.
+     */
+    private static Frame typeDeclaration(List<Token> header) {
+        for (int i = 0; i < header.size(); i++) {
+            int type = header.get(i).getType();
+            boolean keyword = switch (type) {
+                case Java20Lexer.CLASS -> i == 0 || header.get(i - 1).getType() != Java20Lexer.DOT;
+                case Java20Lexer.INTERFACE, Java20Lexer.ENUM -> true;
+                // "record" is also a valid method or variable name
+                case Java20Lexer.RECORD -> i + 1 < header.size() && isIdentifier(header.get(i + 1).getType());
+                default -> false;
+            };
+            if (keyword) {
+                String name = i + 1 < header.size() ? header.get(i + 1).getText() : null;
+                return new Frame(type == Java20Lexer.ENUM ? Scope.ENUM_CONSTANTS : Scope.TYPE, name);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * In a type body, a brace opens a method, constructor or initializer body unless it belongs to
+     * a field's initial value or an annotation element's default.
+     */
+    private static boolean isMemberBody(List<Token> header) {
+        int parens = 0;
+        for (Token token : header) {
+            switch (token.getType()) {
+                case Java20Lexer.LPAREN -> parens++;
+                case Java20Lexer.RPAREN -> parens--;
+                // Not an annotation argument such as since = "1"
+                case Java20Lexer.ASSIGN -> {
+                    if (parens == 0) {
+                        return false;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return header.isEmpty() || header.get(header.size() - 1).getType() != Java20Lexer.DEFAULT;
+    }
+
+    private static BodyKind bodyKind(List<Token> header, String typeName) {
+        if (header.isEmpty() || (header.size() == 1 && header.get(0).getType() == Java20Lexer.STATIC)) {
+            return BodyKind.INITIALIZER;
+        }
+        int i = 0;
+        while (i < header.size()) {
+            int type = header.get(i).getType();
+            if (type == Java20Lexer.AT && i + 1 < header.size() && header.get(i + 1).getType() != Java20Lexer.INTERFACE) {
+                // Skip the annotation's name and arguments
+                i += 2;
+                while (i + 1 < header.size() && header.get(i).getType() == Java20Lexer.DOT && isIdentifier(header.get(i + 1).getType())) {
+                    i += 2;
+                }
+                if (i < header.size() && header.get(i).getType() == Java20Lexer.LPAREN) {
+                    i = matchingParen(header, i) + 1;
+                }
+            } else if (type == Java20Lexer.LPAREN) {
+                return i > 0 && header.get(i - 1).getText().equals(typeName) ? BodyKind.CONSTRUCTOR : BodyKind.METHOD;
+            } else {
+                i++;
+            }
+        }
+        // A record's compact constructor has no parameter list
+        return BodyKind.CONSTRUCTOR;
+    }
+
+    /**
+     * Recognizes {@code new Type<Args>(arguments)} right before a brace.
+     */
+    private static boolean isAnonymousClass(List<Token> header) {
+        int i = header.size() - 1;
+        if (i < 0 || header.get(i).getType() != Java20Lexer.RPAREN) {
+            return false;
+        }
+        int depth = 0;
+        for (; i >= 0; i--) {
+            int type = header.get(i).getType();
+            if (type == Java20Lexer.RPAREN) {
+                depth++;
+            } else if (type == Java20Lexer.LPAREN && --depth == 0) {
+                break;
+            }
+        }
+        for (i--; i >= 0; i--) {
+            int type = header.get(i).getType();
+            if (type == Java20Lexer.NEW) {
+                return true;
+            }
+            boolean typeToken = isIdentifier(type) || switch (type) {
+                case Java20Lexer.DOT, Java20Lexer.LT, Java20Lexer.GT, Java20Lexer.OACA, Java20Lexer.COMMA,
+                     Java20Lexer.QUESTION, Java20Lexer.EXTENDS, Java20Lexer.SUPER, Java20Lexer.AT -> true;
+                default -> false;
+            };
+            if (!typeToken) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static int matchingParen(List<Token> header, int open) {
+        int depth = 0;
+        for (int i = open; i < header.size(); i++) {
+            int type = header.get(i).getType();
+            if (type == Java20Lexer.LPAREN) {
+                depth++;
+            } else if (type == Java20Lexer.RPAREN && --depth == 0) {
+                return i;
+            }
+        }
+        return header.size() - 1;
+    }
+
+    // Contextual keywords such as "record" or "var" are also valid identifiers
+    private static boolean isIdentifier(int type) {
+        return type == Java20Lexer.Identifier || (type >= Java20Lexer.EXPORTS && type <= Java20Lexer.YIELD);
+    }
+}
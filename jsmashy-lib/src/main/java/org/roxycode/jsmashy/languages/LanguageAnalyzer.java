@@ -17,4 +17,43 @@ public interface LanguageAnalyzer {
      * @return The analysis result.
      */
     AnalysisResult analyze(String sourceCode);
-}
\ No newline at end of file
+
+    /**
+     * Analyzes the source code and returns a skeleton of the given level.
+     * Analyzers that only produce one kind of skeleton ignore the level.
+     * @param sourceCode The source code to analyze.
+     * @param level how much of the source the skeleton keeps.
+     * @return The analysis result.
+     */
+    default AnalysisResult analyze(String sourceCode, SkeletonLevel level) {
+        return analyze(sourceCode);
+    }
+
+    /**
+     * Returns the analyzer whose results carry the {@link AnalysisResult#symbols() symbols} of the
+     * sources this one supports, for analyzers that skeletonize without collecting them.
+     * @return this analyzer by default.
+     */
+    default LanguageAnalyzer symbolAnalyzer() {
+        return this;
+    }
+
+    /**
+     * Identifies the analyzer implementation and output format.
+     * Cached analysis results are keyed by this value, so it must change whenever the output for
+     * a given input changes.
+     * @return the analyzer version.
+     */
+    default String version() {
+        return getClass().getName();
+    }
+
+    /**
+     * Identifies the output for a skeleton level, like {@link #version()} does for the default level.
+     * @param level the skeleton level.
+     * @return the analyzer version for the level.
+     */
+    default String version(SkeletonLevel level) {
+        return level == SkeletonLevel.SIGNATURES_WITH_DOCS ? version() : version() + "/" + level;
+    }
+}
@@ -0,0 +1,30 @@
+package org.roxycode.jsmashy.languages;
+
+/**
+ * How much of a source file a skeleton keeps, from the most to the least.
+ */
+public enum SkeletonLevel {
+    /**
+     * Like {@link #SIGNATURES_WITH_DOCS}, but bodies shorter than a number of lines set on the
+     * analyzer are kept, so small helpers and accessors stay readable.
+     */
+    BODIES_UNDER_N_LINES,
+
+    /**
+     * Declarations with their comments; method, constructor and initializer bodies are omitted.
+     * This is the default skeleton.
+     */
+    SIGNATURES_WITH_DOCS,
+
+    /**
+     * Declarations only: bodies are omitted and comments are removed.
+     */
+    ALL_SIGNATURES,
+
+    /**
+     * What other packages can see: public and protected declarations with their comments and
+     * omitted bodies. Imports, initializers, other members and the initial values of fields that
+     * are not constants are removed.
+     */
+    PUBLIC_API
+}
@@ -0,0 +1,12 @@
+package org.roxycode.jsmashy.languages;
+
+import java.util.List;
+
+/**
+ * The symbol table of one source file.
+ * @param packageName the declared package, or empty for the default package.
+ * @param imports the imports as written, such as {@code java.util.List}, {@code java.util.*} or {@code static java.util.Map.entry}.
+ * @param symbols the declarations, in source order; members of anonymous and local classes are left out.
+ */
+public record SourceSymbols(String packageName, List<String> imports, List<Symbol> symbols) {
+}
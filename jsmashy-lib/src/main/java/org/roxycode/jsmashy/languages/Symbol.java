@@ -0,0 +1,39 @@
+package org.roxycode.jsmashy.languages;
+
+import java.util.List;
+
+/**
+ * A declaration found in a source file.
+ * Record components and enum constants are fields of their type.
+ * @param kind what is declared.
+ * @param name the simple name; constructors have the name of their type.
+ * @param container the qualified name of the enclosing type, or the package of a top level type; empty in the default package.
+ * @param signature the declaration without annotations, comments, body or initializer, such as {@code public static int max(int a, int b)}.
+ * @param startLine the first line of the declaration, counting from 1.
+ * @param endLine the last line of the declaration.
+ * @param supertypes the types a type extends or implements as written, without type arguments; empty for members.
+ */
+public record Symbol(Kind kind, String name, String container, String signature, int startLine, int endLine, List<String> supertypes) {
+
+    public enum Kind {
+        CLASS,
+        INTERFACE,
+        ENUM,
+        RECORD,
+        ANNOTATION,
+        CONSTRUCTOR,
+        METHOD,
+        FIELD;
+
+        public boolean isType() {
+            return ordinal() <= ANNOTATION.ordinal();
+        }
+    }
+
+    /**
+     * @return the container and the name, separated by a dot.
+     */
+    public String qualifiedName() {
+        return container.isEmpty() ? name : container + "." + name;
+    }
+}
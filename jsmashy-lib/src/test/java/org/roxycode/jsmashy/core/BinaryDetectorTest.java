@@ -0,0 +1,61 @@
+package org.roxycode.jsmashy.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryDetectorTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testBinaryExtensions() {
+        assertTrue(BinaryDetector.hasBinaryExtension("lib.jar"));
+        assertTrue(BinaryDetector.hasBinaryExtension("Logo.PNG"));
+        assertFalse(BinaryDetector.hasBinaryExtension("Main.java"));
+        assertFalse(BinaryDetector.hasBinaryExtension("Makefile"));
+        assertFalse(BinaryDetector.hasBinaryExtension("trailing."));
+    }
+
+    @Test
+    void testContentSniffing() {
+        byte[] text = "Grüße, 世界 😀\n".getBytes(StandardCharsets.UTF_8);
+        assertFalse(BinaryDetector.looksBinary(text, text.length, true));
+
+        byte[] withNul = {'a', 0, 'b'};
+        assertTrue(BinaryDetector.looksBinary(withNul, withNul.length, true));
+
+        byte[] latin1 = "Grüße".getBytes(StandardCharsets.ISO_8859_1);
+        assertTrue(BinaryDetector.looksBinary(latin1, latin1.length, true));
+
+        // A multi-byte character cut off by the prefix window is only malformed if the file ends there
+        byte[] cut = {'a', (byte) 0xE4, (byte) 0xB8};
+        assertFalse(BinaryDetector.looksBinary(cut, cut.length, false));
+        assertTrue(BinaryDetector.looksBinary(cut, cut.length, true));
+    }
+
+    @Test
+    void testScanSkipsBinaryAndOversizedFiles() throws IOException {
+        Files.writeString(tempDir.resolve("readme.txt"), "hello");
+        Files.writeString(tempDir.resolve("image.png"), "not really an image");
+        Files.write(tempDir.resolve("data.dat"), new byte[]{1, 2, 0, 3});
+        byte[] large = new byte[BinaryDetector.PREFIX_SIZE * 2];
+        Arrays.fill(large, (byte) 'x');
+        // Malformed past the sniffed prefix, rejected when the whole file is decoded
+        large[large.length - 1] = (byte) 0xFF;
+        Files.write(tempDir.resolve("late.txt"), large);
+        Files.writeString(tempDir.resolve("big.txt"), "x".repeat(40000));
+
+        ScanOptions options = new ScanOptions();
+        options.setMaxFileSize(32 * 1024);
+        List<ProjectFile> files = new RepositoryScanner(options).scan(tempDir);
+
+        assertEquals(List.of("readme.txt"), files.stream().map(ProjectFile::getPath).toList());
+    }
+}
@@ -0,0 +1,189 @@
+package org.roxycode.jsmashy.core;
+
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.roxycode.jsmashy.formatters.XmlSmashFormatter;
+import org.roxycode.jsmashy.languages.AnalysisResult;
+import org.roxycode.jsmashy.languages.JavaLanguageAnalyzer;
+import org.roxycode.jsmashy.languages.LanguageAnalyzer;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GitWalkerTest {
+    @TempDir
+    Path tempDir;
+
+    private static List<String> paths(List<ProjectFile> files) {
+        return files.stream().map(ProjectFile::getPath).toList();
+    }
+
+    private Path createRepository() throws Exception {
+        Path repo = Files.createDirectory(tempDir.resolve("repo"));
+        Files.writeString(repo.resolve(".gitignore"), "build/\n*.log\n");
+        Files.writeString(repo.resolve("App.java"), "public class App { void run() { int x = 1; } }");
+        Files.writeString(repo.resolve("app.properties"), "name=app");
+        Path src = Files.createDirectories(repo.resolve("src/util"));
+        Files.writeString(src.resolve("Strings.java"), "public class Strings { void trim() { int y = 2; } }");
+        Files.writeString(src.resolve(".jsmashyignore"), "secret.txt\n");
+        Files.writeString(src.resolve("secret.txt"), "hidden");
+        Files.createDirectories(repo.resolve("build/classes"));
+        Files.writeString(repo.resolve("build/classes/App.txt"), "output");
+        try (Git git = Git.init().setDirectory(repo.toFile()).call()) {
+            git.add().addFilepattern(".").call();
+        }
+        // Untracked files, one of them ignored
+        Files.writeString(repo.resolve("Notes.md"), "# Notes");
+        Files.writeString(repo.resolve("debug.log"), "log");
+        return repo;
+    }
+
+    @Test
+    void testGitIndexScanMatchesFileSystemScan() throws Exception {
+        Path repo = createRepository();
+        ScanOptions options = new ScanOptions();
+        options.setGitIndex(true);
+
+        List<ProjectFile> fromIndex = new RepositoryScanner(options).scan(repo);
+        List<ProjectFile> fromFileSystem = new RepositoryScanner().scan(repo);
+
+        assertEquals(List.of(".gitignore", "App.java", "Notes.md", "app.properties", "src/util/Strings.java"), paths(fromIndex));
+        assertEquals(fromFileSystem.stream().map(ProjectFile::getContent).sorted().toList(),
+                fromIndex.stream().map(ProjectFile::getContent).sorted().toList());
+
+        List<ProjectFile> subdirectory = new RepositoryScanner(options).scan(repo.resolve("src"));
+        assertEquals(List.of("util/Strings.java"), paths(subdirectory).stream().map(p -> p.replace('\\', '/')).toList());
+    }
+
+    @Test
+    void testUnchangedFilesReuseCachedSkeletons() throws Exception {
+        Path repo = createRepository();
+        AtomicInteger analyzed = new AtomicInteger();
+        LanguageAnalyzer delegate = new JavaLanguageAnalyzer();
+        LanguageAnalyzer counting = new LanguageAnalyzer() {
+            @Override
+            public boolean supports(String fileName) {
+                return delegate.supports(fileName);
+            }
+
+            @Override
+            public AnalysisResult analyze(String sourceCode) {
+                analyzed.incrementAndGet();
+                return delegate.analyze(sourceCode);
+            }
+        };
+        ScanOptions options = new ScanOptions();
+        options.setGitIndex(true);
+        options.setSkeletonCache(new SkeletonCache(tempDir.resolve("cache"), SkeletonCache.DEFAULT_MAX_BYTES));
+        RepositoryScanner scanner = new RepositoryScanner(List.of(counting), options);
+
+        scanner.scan(repo);
+        assertEquals(2, analyzed.get());
+
+        Files.writeString(repo.resolve("App.java"), "public class App { void changed() { int x = 1; } }");
+        analyzed.set(0);
+        List<ProjectFile> files = scanner.scan(repo);
+
+        assertEquals(1, analyzed.get(), "Only the file modified since it was staged should be analyzed");
+        assertTrue(files.stream().anyMatch(f -> f.getContent().contains("changed()")));
+    }
+
+    @Test
+    void testRevisionScanIgnoresWorkTree() throws Exception {
+        Path repo = createRepository();
+        try (Git git = Git.open(repo.toFile())) {
+            git.commit().setMessage("Initial").setSign(false).call();
+            git.tag().setName("v1").setSigned(false).call();
+        }
+        Files.writeString(repo.resolve("App.java"), "public class App { void edited() { int x = 2; } }");
+        Files.delete(repo.resolve("app.properties"));
+        ScanOptions options = new ScanOptions();
+        options.setSkeletonCache(new SkeletonCache(tempDir.resolve("cache"), SkeletonCache.DEFAULT_MAX_BYTES));
+        RepositoryScanner scanner = new RepositoryScanner(options);
+
+        List<ProjectFile> files = scanner.scan(repo, "v1");
+
+        assertEquals(List.of(".gitignore", "App.java", "app.properties", "src/util/Strings.java"), paths(files));
+        assertTrue(files.stream().anyMatch(f -> f.getContent().contains("void run()")));
+        assertTrue(files.stream().noneMatch(f -> f.getContent().contains("edited")));
+
+        StringBuilder out = new StringBuilder();
+        scanner.scanAndFormat(repo, "v1", new XmlSmashFormatter(), out);
+        assertEquals(new XmlSmashFormatter().format(files), out.toString());
+
+        assertThrows(IOException.class, () -> scanner.scan(repo, "no-such-branch"));
+    }
+
+    @Test
+    void testRevisionDelta() throws Exception {
+        Path repo = createRepository();
+        try (Git git = Git.open(repo.toFile())) {
+            git.commit().setMessage("Initial").setSign(false).call();
+            Files.writeString(repo.resolve("App.java"), "public class App { void edited() { int x = 2; } }");
+            Files.delete(repo.resolve("app.properties"));
+            Files.writeString(repo.resolve("src/util/Added.java"), "public class Added { }");
+            Files.writeString(repo.resolve("src/util/secret.txt"), "still hidden");
+            git.add().addFilepattern(".").call();
+            git.add().setUpdate(true).addFilepattern(".").call();
+            git.commit().setMessage("Change").setSign(false).call();
+        }
+
+        CodebaseDelta delta = new RepositoryScanner().scanDelta(repo, "HEAD~1", "HEAD");
+
+        // The ignored file changed, but it was never sent, so it is not reported
+        assertEquals(List.of("App.java", "Notes.md", "app.properties", "src/util/Added.java"),
+                delta.getChanges().stream().map(c -> c.path().replace('\\', '/')).toList());
+        assertEquals(List.of(CodebaseDelta.ChangeType.MODIFIED, CodebaseDelta.ChangeType.ADDED, CodebaseDelta.ChangeType.DELETED,
+                        CodebaseDelta.ChangeType.ADDED),
+                delta.getChanges().stream().map(CodebaseDelta.Change::type).toList());
+        assertTrue(delta.getChanges().get(0).file().getContent().contains("edited()"));
+    }
+
+    @Test
+    void testRevisionDeltaOnlyReportsFilesThatWereScanned() throws Exception {
+        Path repo = createRepository();
+        Files.write(repo.resolve("image.dat"), new byte[] {1, 0, 2, 0});
+        try (Git git = Git.open(repo.toFile())) {
+            git.add().addFilepattern("image.dat").call();
+            git.commit().setMessage("Initial").setSign(false).call();
+            Files.write(repo.resolve("image.dat"), new byte[] {3, 0, 4, 0});
+            Files.writeString(repo.resolve("app.properties"), "name=\0binary");
+            git.add().addFilepattern("image.dat").addFilepattern("app.properties").call();
+            git.commit().setMessage("Change").setSign(false).call();
+        }
+
+        CodebaseDelta delta = new RepositoryScanner().scanDelta(repo, "HEAD~1", "HEAD");
+
+        // The binary file was never sent; the file that became binary was, so it is deleted
+        assertEquals(List.of(new CodebaseDelta.Change(CodebaseDelta.ChangeType.DELETED, "app.properties", null)), delta.getChanges());
+    }
+
+    @Test
+    void testRevisionDeltaFollowsIgnoreRuleChanges() throws Exception {
+        Path repo = createRepository();
+        try (Git git = Git.open(repo.toFile())) {
+            git.commit().setMessage("Initial").setSign(false).call();
+            Files.writeString(repo.resolve(".gitignore"), "build/\n*.log\n*.properties\n");
+            Files.writeString(repo.resolve("src/util/.jsmashyignore"), "");
+            git.add().addFilepattern(".gitignore").addFilepattern("src/util/.jsmashyignore").call();
+            git.commit().setMessage("Change rules").setSign(false).call();
+        }
+
+        ScanOptions options = new ScanOptions();
+        options.setStats(new ScanStats());
+        CodebaseDelta delta = new RepositoryScanner(options).scanDelta(repo, "HEAD~1", "HEAD");
+
+        // Listing both revisions is not counted, only reading the changed files
+        assertEquals(2, options.getStats().getLanguages().stream().mapToLong(ScanStats.LanguageStats::files).sum());
+        // .jsmashyignore files are never scanned themselves
+        assertEquals(List.of(".gitignore", "app.properties", "src/util/secret.txt"),
+                delta.getChanges().stream().map(c -> c.path().replace('\\', '/')).toList());
+        assertEquals(List.of(CodebaseDelta.ChangeType.MODIFIED, CodebaseDelta.ChangeType.DELETED, CodebaseDelta.ChangeType.ADDED),
+                delta.getChanges().stream().map(CodebaseDelta.Change::type).toList());
+        assertEquals("hidden", delta.getChanges().get(2).file().getContent());
+    }
+}
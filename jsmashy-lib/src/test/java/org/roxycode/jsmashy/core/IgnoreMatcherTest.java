@@ -0,0 +1,179 @@
+package org.roxycode.jsmashy.core;
+
+import org.eclipse.jgit.ignore.IgnoreNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IgnoreMatcherTest {
+    @TempDir
+    Path tempDir;
+
+    private static final String[] NAMES = {"a", "b", "build", "src", "x.log", "y.txt", "Z.java", "out.tmp"};
+    private static final String[] PATTERNS = {
+            "a", "b", "build", "src", "x.log", "*.log", "*.txt", "*.java", "*.tmp", "*",
+            "build/", "src/", "a/", "/a", "/build", "/build/", "/*.log", "!a", "!*.log", "!build/",
+            "!x.log", "!/b", "a/b", "src/*.java", "build/**", "**/a", "**/build/", "a/**/b", "?", "?.log",
+            "[ab]", "[xy].*", "*.[lt]*", "b*", "*d", "src/**/Z.java", "!src/", "\\!a", "a\\*", "# comment"
+    };
+
+    @Test
+    void testLiteralSuffixAndAnchoredRules() throws IOException {
+        Files.writeString(tempDir.resolve(".gitignore"), "/build\n*.log\ntarget/\n");
+        Files.createDirectories(tempDir.resolve("build"));
+        Files.createDirectories(tempDir.resolve("sub/build"));
+        Files.createDirectories(tempDir.resolve("sub/target"));
+        Files.createFile(tempDir.resolve("target"));
+        Files.writeString(tempDir.resolve("build/a.txt"), "a");
+        Files.writeString(tempDir.resolve("sub/build/b.txt"), "b");
+        Files.writeString(tempDir.resolve("sub/target/c.txt"), "c");
+        Files.writeString(tempDir.resolve("sub/d.log"), "d");
+
+        assertEquals(List.of(".gitignore", "sub/build/b.txt", "target"), scan(tempDir));
+    }
+
+    @Test
+    void testLastMatchingRuleWinsAcrossRuleKinds() throws IOException {
+        Files.writeString(tempDir.resolve(".gitignore"), "keep.log\n*.log\n!keep.log\nsrc/*.log\n");
+        Files.createDirectories(tempDir.resolve("src"));
+        Files.writeString(tempDir.resolve("keep.log"), "1");
+        Files.writeString(tempDir.resolve("other.log"), "2");
+        Files.writeString(tempDir.resolve("src/keep.log"), "3");
+
+        assertEquals(List.of(".gitignore", "keep.log"), scan(tempDir));
+    }
+
+    @Test
+    void testMatchesJGitOnRandomTrees() throws IOException {
+        Random random = new Random(42);
+        for (int round = 0; round < 60; round++) {
+            Path root = Files.createDirectory(tempDir.resolve("round" + round));
+            Files.createDirectory(root.resolve(".git"));
+            Path scanRoot = root.resolve("project");
+            createRandomTree(scanRoot, random, 0);
+            if (random.nextBoolean()) {
+                writeRandomIgnoreFile(root.resolve(".gitignore"), random);
+            }
+            Files.writeString(root.resolve("outside.txt"), "outside");
+
+            List<String> expected = referenceScan(scanRoot);
+            assertEquals(expected, scan(scanRoot), "Round " + round + " differs from JGit");
+        }
+    }
+
+    private void createRandomTree(Path dir, Random random, int depth) throws IOException {
+        Files.createDirectories(dir);
+        if (random.nextInt(3) > 0) {
+            writeRandomIgnoreFile(dir.resolve(random.nextInt(4) == 0 ? ".jsmashyignore" : ".gitignore"), random);
+        }
+        int entries = 2 + random.nextInt(5);
+        for (int i = 0; i < entries; i++) {
+            Path entry = dir.resolve(NAMES[random.nextInt(NAMES.length)]);
+            if (Files.exists(entry)) {
+                continue;
+            }
+            if (depth < 3 && random.nextInt(3) == 0) {
+                createRandomTree(entry, random, depth + 1);
+            } else {
+                Files.writeString(entry, entry.toString());
+            }
+        }
+    }
+
+    private void writeRandomIgnoreFile(Path file, Random random) throws IOException {
+        StringBuilder content = new StringBuilder();
+        int rules = 1 + random.nextInt(6);
+        for (int i = 0; i < rules; i++) {
+            content.append(PATTERNS[random.nextInt(PATTERNS.length)]).append('\n');
+        }
+        Files.writeString(file, content.toString());
+    }
+
+    private List<String> scan(Path root) throws IOException {
+        List<String> paths = new ArrayList<>();
+        for (ProjectFile file : new RepositoryScanner().scan(root)) {
+            paths.add(file.getPath().replace('\\', '/'));
+        }
+        return new ArrayList<>(new TreeSet<>(paths));
+    }
+
+    /**
+     * Evaluates every entry against the ignore files of all enclosing directories with JGit's IgnoreNode.
+     */
+    private List<String> referenceScan(Path root) throws IOException {
+        Deque<ReferenceNode> stack = new ArrayDeque<>();
+        TreeSet<String> result = new TreeSet<>();
+        // The git repository is the scan root's parent
+        loadReference(stack, root.getParent());
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (isIgnoredByReference(dir, true)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                loadReference(stack, dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                while (!stack.isEmpty() && stack.peek().dir().equals(dir)) {
+                    stack.pop();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!isIgnoredByReference(file, false)) {
+                    result.add(root.relativize(file).toString().replace('\\', '/'));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            private boolean isIgnoredByReference(Path path, boolean isDir) {
+                String name = path.getFileName().toString();
+                if (name.equals(".git") || name.equals(".jsmashyignore")) return true;
+                for (ReferenceNode entry : stack) {
+                    String pathString = entry.dir().relativize(path).toString().replace('\\', '/');
+                    if (pathString.isEmpty()) continue;
+                    if (isDir) pathString += "/";
+                    IgnoreNode.MatchResult match = entry.node().isIgnored(pathString, isDir);
+                    if (match == IgnoreNode.MatchResult.IGNORED) return true;
+                    if (match == IgnoreNode.MatchResult.NOT_IGNORED) return false;
+                }
+                return false;
+            }
+        });
+        return new ArrayList<>(result);
+    }
+
+    private record ReferenceNode(Path dir, IgnoreNode node) {
+    }
+
+    private static void loadReference(Deque<ReferenceNode> stack, Path dir) throws IOException {
+        for (String fileName : new String[]{".gitignore", ".jsmashyignore"}) {
+            Path file = dir.resolve(fileName);
+            if (Files.exists(file)) {
+                IgnoreNode node = new IgnoreNode();
+                try (InputStream in = Files.newInputStream(file)) {
+                    node.parse(in);
+                }
+                stack.push(new ReferenceNode(dir, node));
+            }
+        }
+    }
+}
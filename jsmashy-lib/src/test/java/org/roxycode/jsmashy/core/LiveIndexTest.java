@@ -0,0 +1,67 @@
+package org.roxycode.jsmashy.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import org.roxycode.jsmashy.languages.JavaLanguageAnalyzer;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LiveIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testIndexFollowsChanges() throws Exception {
+        Files.writeString(tempDir.resolve(".gitignore"), "build/\n");
+        Files.writeString(tempDir.resolve("App.java"), "public class App { void run() { int x = 1; } }");
+        Files.writeString(tempDir.resolve("notes.txt"), "notes");
+        Files.createDirectories(tempDir.resolve("build"));
+
+        try (LiveIndex index = new LiveIndex(tempDir, List.of(new JavaLanguageAnalyzer()), new ScanOptions(), Duration.ofMillis(50))) {
+            index.start();
+            assertEquals(3, index.getTotals().files());
+            assertTrue(index.get("App.java").getContent().contains("implementation omitted"));
+            assertEquals(5, index.get("notes.txt").getContent().length());
+
+            Files.createDirectories(tempDir.resolve("src/main"));
+            Files.writeString(tempDir.resolve("src/main/Lib.java"), "class Lib {}");
+            Files.writeString(tempDir.resolve("notes.txt"), "more notes");
+            Files.writeString(tempDir.resolve("build/Out.java"), "class Out {}");
+            awaitTrue(() -> index.get(Path.of("src", "main", "Lib.java").toString()) != null && index.getTotals().bytes() > 0
+                    && "more notes".equals(index.get("notes.txt").getContent()));
+            assertNull(index.get(Path.of("build", "Out.java").toString()), "Ignored directories are not indexed");
+
+            deleteTree(tempDir.resolve("src"));
+            awaitTrue(() -> index.getTotals().files() == 3);
+
+            Files.writeString(tempDir.resolve(".gitignore"), "build/\n*.txt\n");
+            awaitTrue(() -> index.get("notes.txt") == null);
+            assertEquals(List.of(".gitignore", "App.java"), index.getFiles().stream().map(ProjectFile::getPath).toList());
+            LiveIndex.Totals totals = index.getTotals();
+            assertEquals(Files.size(tempDir.resolve(".gitignore")) + Files.size(tempDir.resolve("App.java")), totals.bytes());
+            assertTrue(totals.chars() > 0 && totals.tokens() > 0);
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(20).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Index did not catch up with the changes");
+            Thread.sleep(20);
+        }
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        try (var paths = Files.walk(dir)) {
+            for (Path path : paths.sorted((a, b) -> b.getNameCount() - a.getNameCount()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.roxycode.jsmashy.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProjectFileTest {
+    @TempDir
+    Path tempDir;
+
+    private static final String CONTENT = "Grüße, 世界\n";
+
+    @Test
+    void testUtf8ContentIsDecodedOnRead() {
+        ProjectFile file = ProjectFile.ofUtf8("a.txt", CONTENT.getBytes(StandardCharsets.UTF_8));
+        assertEquals("a.txt", file.getPath());
+        assertEquals(CONTENT, file.getContent());
+    }
+
+    @Test
+    void testLazyContentIsReadWhenRequested() throws IOException {
+        Path source = tempDir.resolve("a.txt");
+        Files.writeString(source, "old");
+        ProjectFile file = ProjectFile.lazy("a.txt", source);
+
+        Files.writeString(source, CONTENT);
+        assertEquals(CONTENT, file.getContent());
+
+        Files.delete(source);
+        assertThrows(UncheckedIOException.class, file::getContent);
+    }
+
+    @Test
+    void testMappedContent() throws IOException {
+        Path source = tempDir.resolve("a.txt");
+        Files.writeString(source, CONTENT);
+        Path empty = Files.createFile(tempDir.resolve("empty.txt"));
+
+        assertEquals(CONTENT, ProjectFile.mapped("a.txt", source).getContent());
+        assertEquals("", ProjectFile.mapped("empty.txt", empty).getContent());
+    }
+
+    @Test
+    void testScanWithLazyContentKeepsSkeletons() throws IOException {
+        Files.writeString(tempDir.resolve("notes.txt"), "first");
+        Files.writeString(tempDir.resolve("Test.java"), "public class Test { void m() { int x = 1; } }");
+
+        ScanOptions options = new ScanOptions();
+        options.setContentMode(ContentMode.LAZY);
+        List<ProjectFile> files = new RepositoryScanner(options).scan(tempDir);
+        Files.writeString(tempDir.resolve("notes.txt"), "second");
+        Files.writeString(tempDir.resolve("Test.java"), "");
+
+        ProjectFile notes = files.stream().filter(f -> f.getPath().equals("notes.txt")).findFirst().orElseThrow();
+        ProjectFile java = files.stream().filter(f -> f.getPath().equals("Test.java")).findFirst().orElseThrow();
+        assertEquals("second", notes.getContent());
+        assertTrue(java.getContent().contains("implementation omitted"));
+    }
+
+    @Test
+    void testTreeOrderComparesSegments() {
+        List<String> paths = new ArrayList<>(List.of("a-b", "a/b", "a\\a", "a.txt", "ab", "a", "b/c"));
+        paths.sort(ProjectFile::comparePaths);
+        assertEquals(List.of("a", "a\\a", "a/b", "a-b", "a.txt", "ab", "b/c"), paths);
+        assertEquals(0, ProjectFile.comparePaths("a/b", "a\\b"));
+    }
+}
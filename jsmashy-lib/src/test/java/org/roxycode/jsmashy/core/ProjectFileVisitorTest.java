@@ -8,6 +8,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import org.roxycode.jsmashy.languages.JavaLanguageAnalyzer;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -82,4 +83,21 @@ public class ProjectFileVisitorTest {
         assertEquals(1, files.size());
         assertEquals("included.txt", files.get(0).getPath());
     }
+
+    @Test
+    public void testCountsFilesWithSyntaxErrors() throws IOException {
+        Files.writeString(tempDir.resolve("Partial.java"), "class Partial { void run() { int x = ; } }");
+        Files.writeString(tempDir.resolve("Hopeless.java"), "int x = ;");
+
+        List<ProjectFile> files = new ArrayList<>();
+        ProjectFileVisitor visitor = new ProjectFileVisitor(tempDir, files, List.of(new JavaLanguageAnalyzer()));
+        Files.walkFileTree(tempDir, visitor);
+
+        assertEquals(2, files.size());
+        assertEquals(1, visitor.getPartialSkeletons());
+        assertEquals(1, visitor.getUnparsedFiles());
+        assertEquals("int x = ;".length(), visitor.getUnparsedChars());
+        ProjectFile partial = files.stream().filter(f -> f.getPath().equals("Partial.java")).findFirst().orElseThrow();
+        assertFalse(partial.getContent().contains("int x"));
+    }
 }
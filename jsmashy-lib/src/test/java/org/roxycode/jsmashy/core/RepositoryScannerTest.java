@@ -3,9 +3,19 @@ package org.roxycode.jsmashy.core;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.roxycode.jsmashy.formatters.XmlSmashFormatter;
+import org.roxycode.jsmashy.languages.AnalysisResult;
+import org.roxycode.jsmashy.languages.JavaLanguageAnalyzer;
+import org.roxycode.jsmashy.languages.LanguageAnalyzer;
+import org.roxycode.jsmashy.languages.SkeletonLevel;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class RepositoryScannerTest {
@@ -55,4 +65,211 @@ public class RepositoryScannerTest {
         assertFalse(foundBinary, "Binary file should be skipped");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testParallelScanMatchesSequentialOrder() throws IOException {
+        for (int i = 0; i < 20; i++) {
+            Path dir = Files.createDirectories(tempDir.resolve("pkg" + (i % 4)));
+            Files.writeString(dir.resolve("C" + i + ".java"), "public class C" + i + " { void m() { int x = " + i + "; } }");
+            Files.writeString(dir.resolve("notes" + i + ".txt"), "note " + i);
+        }
+
+        List<ProjectFile> sequential = new RepositoryScanner().scan(tempDir);
+
+        ScanOptions options = new ScanOptions();
+        options.setParallelism(4);
+        List<ProjectFile> parallel = new RepositoryScanner(options).scan(tempDir);
+
+        assertEquals(40, parallel.size());
+        assertEquals(sequential.stream().map(ProjectFile::getPath).toList(), parallel.stream().map(ProjectFile::getPath).toList());
+        assertEquals(sequential.stream().map(ProjectFile::getContent).toList(), parallel.stream().map(ProjectFile::getContent).toList());
+    }
+
+    @Test
+    public void testIncrementalScanOnlyAnalyzesChangedFiles() throws IOException {
+        AtomicInteger analyzed = new AtomicInteger();
+        JavaLanguageAnalyzer delegate = new JavaLanguageAnalyzer();
+        LanguageAnalyzer counting = new LanguageAnalyzer() {
+            @Override
+            public boolean supports(String fileName) {
+                return delegate.supports(fileName);
+            }
+
+            @Override
+            public AnalysisResult analyze(String sourceCode) {
+                analyzed.incrementAndGet();
+                return delegate.analyze(sourceCode);
+            }
+        };
+        Path root = Files.createDirectory(tempDir.resolve("repo"));
+        FileTime past = FileTime.fromMillis(System.currentTimeMillis() - 60_000);
+        for (String name : List.of("A", "B", "C")) {
+            Path file = root.resolve(name + ".java");
+            Files.writeString(file, "public class " + name + " { void m() { int x = 1; } }");
+            Files.setLastModifiedTime(file, past);
+        }
+        ScanOptions options = new ScanOptions();
+        options.setManifestFile(tempDir.resolve("cache/manifest.bin"));
+        RepositoryScanner scanner = new RepositoryScanner(List.of(counting), options);
+
+        scanner.scan(root);
+        assertEquals(3, analyzed.get());
+        assertTrue(Files.exists(tempDir.resolve("cache/manifest.bin")));
+
+        Files.writeString(root.resolve("B.java"), "public class B { void changed() { return; } }");
+        Files.delete(root.resolve("C.java"));
+        analyzed.set(0);
+        List<ProjectFile> files = scanner.scan(root);
+
+        assertEquals(1, analyzed.get(), "Only the modified file should be re-analyzed");
+        assertEquals(2, files.size());
+        assertTrue(files.stream().allMatch(f -> f.getContent().contains("/* implementation omitted */")));
+        assertTrue(files.stream().anyMatch(f -> f.getContent().contains("changed()")));
+    }
+
+    @Test
+    public void testManifestsKeptInMemory() throws IOException {
+        AtomicInteger analyzed = new AtomicInteger();
+        JavaLanguageAnalyzer delegate = new JavaLanguageAnalyzer();
+        LanguageAnalyzer counting = new LanguageAnalyzer() {
+            @Override
+            public boolean supports(String fileName) {
+                return delegate.supports(fileName);
+            }
+
+            @Override
+            public AnalysisResult analyze(String sourceCode) {
+                analyzed.incrementAndGet();
+                return delegate.analyze(sourceCode);
+            }
+        };
+        FileTime past = FileTime.fromMillis(System.currentTimeMillis() - 60_000);
+        Path file = tempDir.resolve("A.java");
+        Files.writeString(file, "public class A { void m() { int x = 1; } }");
+        Files.setLastModifiedTime(file, past);
+        Map<Path, ScanManifest> manifests = new ConcurrentHashMap<>();
+        ScanOptions options = new ScanOptions();
+        options.setManifests(manifests);
+        RepositoryScanner scanner = new RepositoryScanner(List.of(counting), options);
+
+        scanner.scan(tempDir);
+        List<ProjectFile> files = scanner.scan(tempDir);
+
+        assertEquals(1, analyzed.get(), "The second scan should reuse the skeleton");
+        assertEquals(1, manifests.get(tempDir.toAbsolutePath().normalize()).size());
+        assertTrue(files.get(0).getContent().contains("/* implementation omitted */"));
+    }
+
+    @Test
+    public void testScanAndFormatMatchesScanThenFormat() throws IOException {
+        for (int i = 0; i < 12; i++) {
+            Path dir = Files.createDirectories(tempDir.resolve("src/pkg" + (i % 3) + "/sub" + (i % 2)));
+            Files.writeString(dir.resolve("C" + i + ".java"), "public class C" + i + " { void m() { int x = " + i + "; } }");
+        }
+        Files.writeString(tempDir.resolve("AGENTS.md"), "Keep it short.");
+        Files.writeString(tempDir.resolve("README.md"), "# Readme");
+        ScanOptions options = new ScanOptions();
+        options.setParallelism(3);
+        options.setQueueDepth(2);
+        RepositoryScanner scanner = new RepositoryScanner(options);
+        XmlSmashFormatter formatter = new XmlSmashFormatter();
+
+        StringBuilder out = new StringBuilder();
+        int count = scanner.scanAndFormat(tempDir, formatter, out);
+
+        List<ProjectFile> files = scanner.scan(tempDir);
+        assertEquals(files.size(), count);
+        assertEquals(formatter.format(files), out.toString());
+    }
+
+    @Test
+    public void testScanAndFormatSkipsItsOwnOutput() throws IOException {
+        Files.writeString(tempDir.resolve("App.java"), "public class App {}");
+        Path cacheDir = Files.createDirectories(tempDir.resolve("roxy/cache"));
+        Files.writeString(cacheDir.resolve("manifest.bin"), "stale");
+        Path output = cacheDir.resolve("codebase_cache.xml");
+        Path symbolIndex = tempDir.resolve("symbol_index.bin");
+        Files.writeString(symbolIndex, "stale");
+        ScanOptions options = new ScanOptions();
+        options.setContentMode(ContentMode.LAZY);
+        options.setSymbolIndexFile(symbolIndex);
+        options.addExcludedPath(cacheDir);
+
+        try (Writer writer = Files.newBufferedWriter(output)) {
+            new RepositoryScanner(options).scanAndFormat(tempDir, new XmlSmashFormatter(), writer);
+        }
+
+        String document = Files.readString(output);
+        assertTrue(document.contains("<f n=\"App.java\">"), document);
+        assertFalse(document.contains("codebase_cache.xml"), document);
+        assertFalse(document.contains("<d n=\"roxy\">"), document);
+        assertFalse(document.contains("symbol_index.bin"), document);
+    }
+
+    @Test
+    public void testScanAndFormatReportsWriterFailure() throws IOException {
+        Files.writeString(tempDir.resolve("a.txt"), "a");
+        Appendable failing = new Appendable() {
+            @Override
+            public Appendable append(CharSequence csq) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public Appendable append(CharSequence csq, int start, int end) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public Appendable append(char c) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+
+        IOException e = assertThrows(IOException.class, () -> new RepositoryScanner().scanAndFormat(tempDir, new XmlSmashFormatter(), failing));
+        assertEquals("disk full", e.getMessage());
+    }
+
+    @Test
+    public void testTokenBudgetStartsFromSkeletons() throws IOException {
+        Path root = Files.createDirectories(tempDir.resolve("repo/src/test")).getParent().getParent();
+        Files.writeString(root.resolve("App.java"), "public class App { void run() { System.out.println(\"hi\"); } }");
+        Files.writeString(root.resolve("src/test/AppTest.java"), "public class AppTest { void test() { new App().run(); } }");
+        Files.writeString(root.resolve("README.md"), "# Readme\n".repeat(500));
+        String unlimited = new XmlSmashFormatter().format(new RepositoryScanner().scan(root));
+        ScanOptions options = new ScanOptions();
+        options.setManifestFile(tempDir.resolve("cache/manifest.bin"));
+        options.setTokenBudget(1_000_000);
+
+        StringBuilder out = new StringBuilder();
+        new RepositoryScanner(options).scanAndFormat(root, new XmlSmashFormatter(), out);
+
+        assertEquals(unlimited, out.toString(), "A budget that fits should not change the output");
+        assertTrue(unlimited.contains("/* implementation omitted */"));
+        assertFalse(unlimited.contains("left out to save space"));
+        assertTrue(Files.exists(tempDir.resolve("cache/manifest.bin")));
+
+        options.setTokenBudget(700);
+        StringBuilder reduced = new StringBuilder();
+        new RepositoryScanner(options).scanAndFormat(root, new XmlSmashFormatter(), reduced);
+        assertTrue(reduced.toString().contains("<f n=\"README.md\"/>"), reduced.toString());
+        assertTrue(reduced.toString().contains("left out to save space"));
+    }
+
+    @Test
+    public void testSkeletonLevelsByGlob() throws IOException {
+        String javaCode = "public class App {\n    // note\n    public void run() { System.out.println(\"hi\"); }\n}";
+        Files.createDirectories(tempDir.resolve("src/test"));
+        Files.writeString(tempDir.resolve("src/test/AppTest.java"), javaCode);
+        Files.writeString(tempDir.resolve("App.java"), javaCode);
+
+        ScanOptions options = new ScanOptions();
+        options.getSkeletonLevels().add("src/test/**", SkeletonLevel.ALL_SIGNATURES);
+        List<ProjectFile> files = new RepositoryScanner(options).scan(tempDir);
+        files.sort(ProjectFile.TREE_ORDER);
+
+        assertEquals("App.java", files.get(0).getPath());
+        assertTrue(files.get(0).getContent().contains("// note"));
+        assertTrue(files.get(1).getContent().contains("public void run();"));
+        assertFalse(files.get(1).getContent().contains("// note"));
+    }
+}
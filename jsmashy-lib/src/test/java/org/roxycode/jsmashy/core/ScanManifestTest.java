@@ -0,0 +1,62 @@
+package org.roxycode.jsmashy.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScanManifestTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSaveAndLoadRoundTrip() throws IOException {
+        Path file = tempDir.resolve("manifest.bin");
+        ScanManifest manifest = new ScanManifest("java", 1000L);
+        manifest.put(new ScanManifest.Entry("src/App.java", 42, 500L, "abc123", "class App { /* implementation omitted */ }"));
+        manifest.put(new ScanManifest.Entry("README.md", 7, 600L, "def456", null));
+        manifest.save(file);
+
+        ScanManifest loaded = ScanManifest.load(file, "java");
+
+        assertEquals(1000L, loaded.getTimestamp());
+        assertEquals(2, loaded.size());
+        assertEquals(manifest.get("src/App.java"), loaded.get("src/App.java"));
+        assertNull(loaded.get("README.md").skeleton());
+    }
+
+    @Test
+    void testFingerprintMismatchYieldsEmptyManifest() throws IOException {
+        Path file = tempDir.resolve("manifest.bin");
+        ScanManifest manifest = new ScanManifest("java", 1000L);
+        manifest.put(new ScanManifest.Entry("App.java", 1, 1L, "h", "s"));
+        manifest.save(file);
+
+        assertEquals(0, ScanManifest.load(file, "kotlin").size());
+        assertEquals(0, ScanManifest.load(tempDir.resolve("missing.bin"), "java").size());
+    }
+
+    @Test
+    void testEntriesModifiedDuringPreviousScanAreNotTrusted() {
+        ScanManifest manifest = new ScanManifest("java", 10_300L);
+        ScanManifest.Entry entry = new ScanManifest.Entry("App.java", 10, 8_299L, "h", null);
+        ScanManifest.Entry racy = new ScanManifest.Entry("Racy.java", 10, 10_300L, "h", null);
+        // Written during the scan, on a file system that rounds down to whole seconds
+        ScanManifest.Entry coarse = new ScanManifest.Entry("Coarse.java", 10, 10_000L, "h", null);
+
+        assertTrue(manifest.isUnchanged(entry, 10, 8_299L));
+        assertFalse(manifest.isUnchanged(entry, 11, 8_299L));
+        assertFalse(manifest.isUnchanged(racy, 10, 10_300L));
+        assertFalse(manifest.isUnchanged(coarse, 10, 10_000L));
+    }
+
+    @Test
+    void testContentHashMatchesGitBlobId() {
+        // `printf 'hello\n' | git hash-object --stdin`
+        assertEquals("ce013625030ba8dba906f756967f9e9ca394464a", ContentHash.of("hello\n".getBytes()));
+    }
+}
@@ -0,0 +1,74 @@
+package org.roxycode.jsmashy.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import org.roxycode.jsmashy.formatters.XmlSmashFormatter;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScanStatsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testScanRecordsPhasesLanguagesAndSlowestFiles() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            Files.writeString(tempDir.resolve("C" + i + ".java"), "public class C" + i + " { void m() { int x = " + i + "; } }");
+        }
+        Files.writeString(tempDir.resolve("README.md"), "# Readme");
+        ScanStats stats = new ScanStats(2);
+        ScanOptions options = new ScanOptions();
+        options.setStats(stats);
+
+        new RepositoryScanner(options).scanAndFormat(tempDir, new XmlSmashFormatter(), new StringBuilder());
+
+        assertTrue(stats.getWallNanos(ScanStats.Phase.WALK) > 0);
+        assertTrue(stats.getWallNanos(ScanStats.Phase.READ) > 0);
+        assertTrue(stats.getWallNanos(ScanStats.Phase.ANALYZE) > 0);
+        assertTrue(stats.getWallNanos(ScanStats.Phase.FORMAT) > 0);
+
+        Map<String, ScanStats.Histogram> analyzers = stats.getAnalyzers();
+        assertEquals(1, analyzers.size());
+        assertEquals(3, analyzers.values().iterator().next().count());
+
+        List<ScanStats.LanguageStats> languages = stats.getLanguages();
+        assertEquals("java", languages.get(0).language());
+        assertEquals(3, languages.get(0).files());
+        assertTrue(languages.get(0).charsOut() > 0);
+        ScanStats.LanguageStats markdown = languages.get(1);
+        assertEquals("md", markdown.language());
+        assertEquals(markdown.bytesIn(), markdown.charsOut(), "Files without a skeleton are emitted whole");
+
+        assertEquals(2, stats.getSlowestFiles().size());
+        assertTrue(stats.getSlowestFiles().get(0).nanos() >= stats.getSlowestFiles().get(1).nanos());
+        assertTrue(stats.report().contains("analyze"), stats.report());
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        ScanStats stats = new ScanStats();
+        for (int i = 0; i < 98; i++) {
+            stats.recordAnalysis("a", 3_000);
+        }
+        stats.recordAnalysis("a", 100_000);
+        stats.recordAnalysis("a", 5_000_000);
+
+        ScanStats.Histogram histogram = stats.getAnalyzers().get("a");
+        assertEquals(100, histogram.count());
+        assertEquals(4, histogram.percentileMicros(0.5));
+        assertEquals(128, histogram.percentileMicros(0.99));
+        assertEquals(8192, histogram.percentileMicros(1));
+    }
+
+    @Test
+    public void testLanguageOf() {
+        assertEquals("java", ScanStats.languageOf("src/main/App.JAVA"));
+        assertEquals("makefile", ScanStats.languageOf("build/Makefile"));
+        assertEquals(".gitignore", ScanStats.languageOf(".gitignore"));
+    }
+}
@@ -0,0 +1,108 @@
+package org.roxycode.jsmashy.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.roxycode.jsmashy.languages.AnalysisResult;
+import org.roxycode.jsmashy.languages.JavaLanguageAnalyzer;
+import org.roxycode.jsmashy.languages.LanguageAnalyzer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SkeletonCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testPutAndGetSurvivesReopen() {
+        SkeletonCache cache = new SkeletonCache(tempDir.resolve("cache"), SkeletonCache.DEFAULT_MAX_BYTES);
+        String hash = ContentHash.of("class A {}".getBytes());
+        cache.put("java-1", hash, new AnalysisResult("class A {}", List.of()));
+
+        SkeletonCache reopened = new SkeletonCache(tempDir.resolve("cache"), SkeletonCache.DEFAULT_MAX_BYTES);
+        AnalysisResult result = reopened.get("java-1", hash);
+
+        assertNotNull(result);
+        assertEquals("class A {}", result.skeleton());
+        assertFalse(result.hasErrors());
+        assertNull(reopened.get("java-2", hash), "Entries are scoped to the analyzer version");
+    }
+
+    @Test
+    void testErrorsAreCached() {
+        SkeletonCache cache = new SkeletonCache(tempDir.resolve("cache"), SkeletonCache.DEFAULT_MAX_BYTES);
+        String hash = ContentHash.of("class {".getBytes());
+        cache.put("java-1", hash, new AnalysisResult("", List.of("Parser error at 1:6")));
+
+        assertEquals(List.of("Parser error at 1:6"), cache.get("java-1", hash).errors());
+    }
+
+    @Test
+    void testSymbolsAreCached() {
+        SkeletonCache cache = new SkeletonCache(tempDir.resolve("cache"), SkeletonCache.DEFAULT_MAX_BYTES);
+        String source = "package p;\nimport java.util.List;\nclass A implements Runnable { public void run() {} }";
+        String hash = ContentHash.of(source.getBytes());
+        AnalysisResult analyzed = new JavaLanguageAnalyzer().analyze(source);
+        cache.put("java-1", hash, analyzed);
+
+        assertNotNull(analyzed.symbols());
+        assertEquals(analyzed.symbols(), cache.get("java-1", hash).symbols());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntriesAreEvicted() {
+        String body = "x".repeat(1000);
+        SkeletonCache cache = new SkeletonCache(tempDir.resolve("cache"), 2500);
+        String first = ContentHash.of("1".getBytes());
+        String second = ContentHash.of("2".getBytes());
+        String third = ContentHash.of("3".getBytes());
+
+        cache.put("v", first, new AnalysisResult(body, List.of()));
+        cache.put("v", second, new AnalysisResult(body, List.of()));
+        assertNotNull(cache.get("v", first));
+        cache.put("v", third, new AnalysisResult(body, List.of()));
+
+        assertNotNull(cache.get("v", first));
+        assertNull(cache.get("v", second), "Least recently used entry should be evicted");
+        assertNotNull(cache.get("v", third));
+    }
+
+    @Test
+    void testIdenticalSourcesAcrossCheckoutsAreAnalyzedOnce() throws IOException {
+        AtomicInteger analyzed = new AtomicInteger();
+        JavaLanguageAnalyzer delegate = new JavaLanguageAnalyzer();
+        LanguageAnalyzer counting = new LanguageAnalyzer() {
+            @Override
+            public boolean supports(String fileName) {
+                return delegate.supports(fileName);
+            }
+
+            @Override
+            public AnalysisResult analyze(String sourceCode) {
+                analyzed.incrementAndGet();
+                return delegate.analyze(sourceCode);
+            }
+        };
+        String source = "public class Shared { void m() { int x = 1; } }";
+        for (String checkout : List.of("main", "feature")) {
+            Files.createDirectories(tempDir.resolve(checkout));
+            Files.writeString(tempDir.resolve(checkout).resolve("Shared.java"), source);
+        }
+        ScanOptions options = new ScanOptions();
+        options.setSkeletonCache(new SkeletonCache(tempDir.resolve("cache"), SkeletonCache.DEFAULT_MAX_BYTES));
+        RepositoryScanner scanner = new RepositoryScanner(List.of(counting), options);
+
+        List<ProjectFile> main = scanner.scan(tempDir.resolve("main"));
+        List<ProjectFile> feature = scanner.scan(tempDir.resolve("feature"));
+
+        assertEquals(1, analyzed.get());
+        assertEquals(main.get(0).getContent(), feature.get(0).getContent());
+        assertTrue(feature.get(0).getContent().contains("/* implementation omitted */"));
+    }
+}
@@ -0,0 +1,122 @@
+package org.roxycode.jsmashy.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.roxycode.jsmashy.languages.AnalysisResult;
+import org.roxycode.jsmashy.languages.FastJavaLanguageAnalyzer;
+import org.roxycode.jsmashy.languages.JavaLanguageAnalyzer;
+import org.roxycode.jsmashy.languages.LanguageAnalyzer;
+import org.roxycode.jsmashy.languages.Symbol;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testScanBuildsIndexAndLookups() throws IOException {
+        Path root = Files.createDirectory(tempDir.resolve("repo"));
+        Files.writeString(root.resolve("Shape.java"), "package geo;\npublic interface Shape { double area(); }");
+        Files.writeString(root.resolve("Circle.java"), "package geo;\npublic class Circle implements Shape {\n  public double area() { return 3; }\n}");
+        Files.writeString(root.resolve("Other.java"), "package other;\nimport java.util.List;\nclass Other implements Shape, List<String> {}");
+        Files.writeString(root.resolve("Broken.java"), "class Broken { void m() { int x = ; } }");
+        Path indexFile = tempDir.resolve("cache/symbol_index.bin");
+        ScanOptions options = new ScanOptions();
+        options.setSymbolIndexFile(indexFile);
+
+        new RepositoryScanner(options).scan(root);
+        SymbolIndex index = SymbolIndex.load(indexFile);
+
+        assertEquals(4, index.size());
+        List<SymbolIndex.Declaration> area = index.findDeclarations("area");
+        assertEquals(List.of("Circle.java", "Shape.java"), area.stream().map(SymbolIndex.Declaration::path).toList());
+        assertEquals(3, area.get(0).symbol().startLine());
+        assertEquals(Symbol.Kind.INTERFACE, index.findDeclarations("geo.Shape").get(0).symbol().kind());
+        assertEquals(1, index.findDeclarations("Circle.area").size());
+        assertTrue(index.findDeclarations("other.Shape").isEmpty());
+
+        assertEquals(List.of("Circle.java", "Other.java"), index.findSubtypes("Shape").stream().map(SymbolIndex.Declaration::path).toList());
+        assertEquals(List.of("Circle.java"), index.findSubtypes("geo.Shape").stream().map(SymbolIndex.Declaration::path).toList());
+        assertEquals(List.of("Other.java"), index.findSubtypes("java.util.List").stream().map(SymbolIndex.Declaration::path).toList());
+        assertTrue(index.get("Broken.java").symbols().isEmpty(), "Files with errors are indexed without symbols");
+    }
+
+    @Test
+    void testUnchangedFilesKeepTheirSymbols() throws IOException {
+        AtomicInteger analyzed = new AtomicInteger();
+        JavaLanguageAnalyzer delegate = new JavaLanguageAnalyzer();
+        LanguageAnalyzer counting = new LanguageAnalyzer() {
+            @Override
+            public boolean supports(String fileName) {
+                return delegate.supports(fileName);
+            }
+
+            @Override
+            public AnalysisResult analyze(String sourceCode) {
+                analyzed.incrementAndGet();
+                return delegate.analyze(sourceCode);
+            }
+        };
+        Path root = Files.createDirectory(tempDir.resolve("repo"));
+        FileTime past = FileTime.fromMillis(System.currentTimeMillis() - 60_000);
+        for (String name : List.of("A", "B")) {
+            Path file = root.resolve(name + ".java");
+            Files.writeString(file, "public class " + name + " { void m() { int x = 1; } }");
+            Files.setLastModifiedTime(file, past);
+        }
+        ScanOptions options = new ScanOptions();
+        options.setManifestFile(tempDir.resolve("cache/manifest.bin"));
+        options.setSymbolIndexFile(tempDir.resolve("cache/symbol_index.bin"));
+        RepositoryScanner scanner = new RepositoryScanner(List.of(counting), options);
+
+        scanner.scan(root);
+        assertEquals(2, analyzed.get(), "Symbols come from the analysis producing the skeleton");
+
+        Files.writeString(root.resolve("B.java"), "public class B { void changed() {} }");
+        analyzed.set(0);
+        scanner.scan(root);
+
+        assertEquals(1, analyzed.get(), "Only the modified file should be parsed again");
+        SymbolIndex index = SymbolIndex.load(tempDir.resolve("cache/symbol_index.bin"));
+        assertEquals(1, index.findDeclarations("A.m").size());
+        assertTrue(index.findDeclarations("B.m").isEmpty());
+        assertEquals(1, index.findDeclarations("B.changed").size());
+    }
+
+    @Test
+    void testFastAnalyzerScanStillIndexesSymbols() throws IOException {
+        Path root = Files.createDirectory(tempDir.resolve("repo"));
+        Files.writeString(root.resolve("Foo.java"), "package p;\npublic class Foo { void bar() { int x = 1; } }");
+        ScanOptions options = new ScanOptions();
+        options.setSymbolIndexFile(tempDir.resolve("symbol_index.bin"));
+
+        List<ProjectFile> files = new RepositoryScanner(List.of(new FastJavaLanguageAnalyzer()), options).scan(root);
+
+        assertTrue(files.get(0).getContent().contains("/* implementation omitted */"));
+        SymbolIndex index = SymbolIndex.load(tempDir.resolve("symbol_index.bin"));
+        assertEquals(1, index.findDeclarations("p.Foo").size());
+        assertEquals(1, index.findDeclarations("Foo.bar").size());
+    }
+
+    @Test
+    void testTokenBudgetScanStillIndexesSymbols() throws IOException {
+        Path root = Files.createDirectory(tempDir.resolve("repo"));
+        Files.writeString(root.resolve("App.java"), "public class App { void run() {} }");
+        ScanOptions options = new ScanOptions();
+        options.setTokenBudget(1_000);
+        options.setSymbolIndexFile(tempDir.resolve("symbol_index.bin"));
+
+        new RepositoryScanner(options).scan(root);
+
+        assertEquals(1, SymbolIndex.load(tempDir.resolve("symbol_index.bin")).findDeclarations("App.run").size());
+    }
+}
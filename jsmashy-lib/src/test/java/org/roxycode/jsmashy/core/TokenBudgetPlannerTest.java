@@ -0,0 +1,81 @@
+package org.roxycode.jsmashy.core;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import org.roxycode.jsmashy.languages.JavaLanguageAnalyzer;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenBudgetPlannerTest {
+
+    private static final String JAVA = "public class App {\n" +
+            "    /** Runs the app. */\n" +
+            "    public void run() {\n" +
+            "        for (int i = 0; i < 10; i++) {\n" +
+            "            System.out.println(\"Hello number \" + i);\n" +
+            "        }\n" +
+            "    }\n" +
+            "}\n";
+
+    // Planners start from what the scan produced
+    private static final String SKELETON = new JavaLanguageAnalyzer().analyze(JAVA).skeleton();
+
+    // One character per token, so budgets can be computed from lengths
+    private final TokenBudgetPlanner planner = new TokenBudgetPlanner(List.of(new JavaLanguageAnalyzer()), null, new SkeletonLevels(), FilePriority.DEFAULT, 1);
+
+    private final List<ProjectFile> files = List.of(
+            new ProjectFile("AGENTS.md", "Be brief. ".repeat(20)),
+            new ProjectFile("src/main/java/App.java", SKELETON),
+            new ProjectFile("src/test/java/AppTest.java", SKELETON.replace("App", "AppTest")),
+            new ProjectFile("notes.txt", "Some notes. ".repeat(20)));
+
+    @Test
+    public void testFilesWithinBudgetAreUnchanged() {
+        assertSame(files, planner.fit(files, 1_000_000));
+    }
+
+    @Test
+    public void testTestsAreReducedBeforeMainCode() {
+        long full = 600;
+        for (ProjectFile file : files) {
+            full += file.getContent().length() + file.getPath().length() + 40;
+        }
+
+        List<ProjectFile> fitted = planner.fit(files, full - 1);
+
+        assertEquals(4, fitted.size());
+        assertEquals("src/test/java/AppTest.java", fitted.get(2).getPath());
+        String test = fitted.get(2).getContent();
+        assertTrue(test.contains("run()") && !test.contains("/* implementation omitted */") && !test.contains("Runs the app"),
+                "The test should be reduced to signatures: " + test);
+        assertEquals(SKELETON, fitted.get(1).getContent(), "Main code should keep its skeleton");
+        assertEquals(files.get(0).getContent(), fitted.get(0).getContent());
+    }
+
+    @Test
+    public void testPathsAreKeptWhenContentDoesNotFit() {
+        long paths = 600;
+        for (ProjectFile file : files) {
+            paths += file.getPath().length() + 40;
+        }
+
+        List<ProjectFile> fitted = planner.fit(files, paths);
+        assertEquals(4, fitted.size());
+        assertTrue(fitted.stream().allMatch(ProjectFile::isContentOmitted));
+        assertEquals("notes.txt", fitted.get(3).getPath());
+
+        List<ProjectFile> dropped = planner.fit(files, 700);
+        assertEquals("AGENTS.md", dropped.get(0).getPath(), "Agent instructions are the last to go");
+        assertTrue(dropped.size() < 4);
+    }
+
+    @Test
+    public void testIsTest() {
+        assertTrue(FilePriority.isTest("src/test/java/org/example/App.java"));
+        assertTrue(FilePriority.isTest("lib/AppTest.java"));
+        assertTrue(FilePriority.isTest("lib/AppIT.java"));
+        assertTrue(FilePriority.isTest("web/app.spec.ts"));
+        assertTrue(FilePriority.isTest("pkg/test_app.py"));
+        assertFalse(FilePriority.isTest("src/main/java/org/example/Contest.java"));
+        assertFalse(FilePriority.isTest("src/main/java/org/example/App.java"));
+    }
+}
@@ -0,0 +1,31 @@
+package org.roxycode.jsmashy.formatters;
+
+import org.junit.jupiter.api.Test;
+import org.roxycode.jsmashy.core.CodebaseDelta;
+import org.roxycode.jsmashy.core.ProjectFile;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class XmlDeltaFormatterTest {
+
+    @Test
+    void testFormat() {
+        CodebaseDelta delta = new CodebaseDelta(List.of(
+            new CodebaseDelta.Change(CodebaseDelta.ChangeType.DELETED, "old.txt", null),
+            new CodebaseDelta.Change(CodebaseDelta.ChangeType.ADDED, "src/New.java", new ProjectFile("src/New.java", "class New {}")),
+            new CodebaseDelta.Change(CodebaseDelta.ChangeType.MODIFIED, "README.md", new ProjectFile("README.md", "a]]>b"))
+        ));
+
+        String output = new XmlDeltaFormatter().format(delta);
+
+        assertTrue(output.startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<codebase_delta>\n"));
+        assertTrue(output.contains("<changes>\n"
+            + "<modified path=\"README.md\"><![CDATA[a]]]]><![CDATA[>b]]></modified>\n"
+            + "<deleted path=\"old.txt\"/>\n"
+            + "<added path=\"src/New.java\"><![CDATA[class New {}]]></added>\n"
+            + "</changes>\n"));
+        assertTrue(output.endsWith("</codebase_delta>"));
+    }
+}
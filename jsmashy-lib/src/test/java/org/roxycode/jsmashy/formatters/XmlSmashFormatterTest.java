@@ -2,9 +2,17 @@ package org.roxycode.jsmashy.formatters;
 
 import org.junit.jupiter.api.Test;
 import org.roxycode.jsmashy.core.ProjectFile;
+import org.roxycode.jsmashy.core.ScanStats;
+import org.roxycode.jsmashy.core.SmashWriter;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class XmlSmashFormatterTest {
@@ -32,4 +40,150 @@ class XmlSmashFormatterTest {
         assertTrue(output.contains("<f n=\"README.md\">"));
         assertTrue(output.contains("# Hello"));
     }
+
+    @Test
+    void testStreamingMatchesInMemoryFormat() throws IOException {
+        XmlSmashFormatter formatter = new XmlSmashFormatter();
+        List<ProjectFile> files = List.of(
+            new ProjectFile("src/Main.java", "public class Main {}"),
+            new ProjectFile("docs/\u00e9t\u00e9.md", "caf\u00e9")
+        );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        formatter.format(files, out);
+
+        assertEquals(formatter.format(files), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testFormatSortsPathsAndKeepsLastDuplicate() {
+        XmlSmashFormatter formatter = new XmlSmashFormatter();
+        List<ProjectFile> files = List.of(
+            new ProjectFile("b/x.txt", "old"),
+            new ProjectFile("a-b.txt", "dash"),
+            new ProjectFile("a/y.txt", "nested"),
+            new ProjectFile("b\\x.txt", "new")
+        );
+
+        String output = formatter.format(files);
+
+        assertTrue(output.contains("<d n=\"a\">\n  <f n=\"y.txt\"><![CDATA[nested]]></f>\n</d>\n<f n=\"a-b.txt\">"), output);
+        assertTrue(output.contains("<f n=\"x.txt\"><![CDATA[new]]></f>"), output);
+        assertTrue(!output.contains("old"), output);
+    }
+
+    @Test
+    void testDuplicatesAreWrittenAsReferences() throws IOException {
+        String license = "/* Licensed under the Apache License, Version 2.0 */\n".repeat(10);
+        List<ProjectFile> files = List.of(
+            new ProjectFile("vendor/lib/License.java", license),
+            new ProjectFile("src/License.java", license),
+            new ProjectFile("a/short.txt", "same"),
+            new ProjectFile("b/short.txt", "same")
+        );
+        XmlSmashFormatter formatter = new XmlSmashFormatter();
+        ScanStats stats = new ScanStats();
+        formatter.useDeduplication(XmlSmashFormatter.DEFAULT_MIN_DUPLICATE_CHARS);
+        formatter.useStats(stats);
+
+        String output = formatter.format(files);
+
+        // Tree order decides which copy is written whole
+        assertTrue(output.contains("<f n=\"License.java\"><![CDATA[" + license), output);
+        assertTrue(output.contains("<f n=\"License.java\" same-as=\"src/License.java\"/>"), output);
+        assertEquals(2, output.split("<f n=\"short.txt\"><!\\[CDATA\\[same]]></f>", -1).length - 1, "Short contents are repeated");
+        assertEquals(1, stats.getDuplicateFiles());
+        // The reference replacing the content is not saved
+        String written = "<f n=\"License.java\"><![CDATA[" + license + "]]></f>";
+        String reference = "<f n=\"License.java\" same-as=\"src/License.java\"/>";
+        assertEquals(written.length() - reference.length(), stats.getDuplicateChars());
+        assertTrue(stats.report().contains("Duplicates: 1 files"), stats.report());
+
+        StringBuilder streamed = new StringBuilder();
+        SmashWriter writer = formatter.open(streamed);
+        for (ProjectFile file : files.stream().sorted(ProjectFile.TREE_ORDER).toList()) {
+            writer.write(file);
+        }
+        writer.finish();
+        assertEquals(output, streamed.toString());
+        assertTrue(!new XmlSmashFormatter().format(files).contains("same-as"));
+    }
+
+    @Test
+    void testOmittedFilesAreOnlyExplainedWhenPresent() {
+        XmlSmashFormatter formatter = new XmlSmashFormatter();
+        ProjectFile main = new ProjectFile("src/Main.java", "public class Main {}");
+
+        String full = formatter.format(List.of(main));
+        String reduced = formatter.format(List.of(main, ProjectFile.omitted("data/big.csv")));
+
+        assertTrue(!full.contains("left out to save space"), full);
+        assertTrue(reduced.contains("<f n=\"name\"/> is a file whose content was left out to save space."), reduced);
+        assertTrue(reduced.contains("<f n=\"big.csv\"/>"), reduced);
+    }
+
+    @Test
+    void testWriterMatchesBatchFormat() throws IOException {
+        XmlSmashFormatter formatter = new XmlSmashFormatter();
+        List<ProjectFile> files = new ArrayList<>(List.of(
+            new ProjectFile("src/main/App.java", "class App {}"),
+            new ProjectFile("src/main/util/Strings.java", "class Strings {}"),
+            new ProjectFile("src/test/AppTest.java", "class AppTest {}"),
+            new ProjectFile("AGENTS.md", "Be brief."),
+            new ProjectFile("README.md", "# Readme"),
+            new ProjectFile("zeta.txt", "z")
+        ));
+        files.sort(ProjectFile.TREE_ORDER);
+
+        StringBuilder out = new StringBuilder();
+        SmashWriter writer = formatter.open(out);
+        for (ProjectFile file : files) {
+            writer.write(file);
+        }
+        writer.finish();
+
+        assertEquals(formatter.format(files), out.toString());
+        assertTrue(out.toString().contains("<agent_custom_instructions>\n<![CDATA[\nBe brief."));
+    }
+
+    @Test
+    void testWriterRejectsFilesOutOfOrder() throws IOException {
+        SmashWriter writer = new XmlSmashFormatter().open(new StringBuilder());
+        writer.write(new ProjectFile("b/B.java", "class B {}"));
+
+        assertThrows(IllegalArgumentException.class, () -> writer.write(new ProjectFile("a/A.java", "class A {}")));
+    }
+
+    @Test
+    void testCdataTerminatorIsSplit() {
+        XmlSmashFormatter formatter = new XmlSmashFormatter();
+        String output = formatter.format(List.of(new ProjectFile("a.txt", "x]]>y]]>")));
+
+        assertTrue(output.contains("<![CDATA[x]]]]><![CDATA[>y]]]]><![CDATA[>]]></f>"));
+    }
+
+    @Test
+    void testAttributeValuesAreEscaped() throws IOException {
+        XmlSmashFormatter formatter = new XmlSmashFormatter();
+        List<ProjectFile> files = List.of(new ProjectFile("R&D/say \"hi\" <now>.txt", "x"));
+
+        String output = formatter.format(files);
+        StringBuilder streamed = new StringBuilder();
+        SmashWriter writer = formatter.open(streamed);
+        writer.write(files.get(0));
+        writer.finish();
+
+        assertTrue(output.contains("<d n=\"R&amp;D\">\n  <f n=\"say &quot;hi&quot; &lt;now&gt;.txt\">"), output);
+        assertEquals(output, streamed.toString());
+    }
+
+    @Test
+    void testLargeContentIsCopiedWhole() {
+        // Longer than the emitter's buffer, with terminators on both sides of its boundaries
+        String content = "abc]]>def".repeat(5000);
+        String output = new XmlSmashFormatter().format(List.of(new ProjectFile("a/b/c/d.txt", content)));
+
+        String expected = content.replace("]]>", "]]]]><![CDATA[>");
+        assertTrue(output.contains("      <f n=\"d.txt\"><![CDATA[" + expected + "]]></f>\n"));
+    }
 }
@@ -0,0 +1,144 @@
+package org.roxycode.jsmashy.languages;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FastJavaLanguageAnalyzerTest {
+
+    private static final String TRICKY = "package com.example;\n" +
+            "import java.util.*;\n" +
+            "@Retention(RetentionPolicy.RUNTIME)\n" +
+            "@interface Tag { String[] value() default {}; Class<?> type() default Object.class; }\n" +
+            "/** Planets. */\n" +
+            "public enum Planet implements Runnable {\n" +
+            "    MERCURY(1) { @Override public void run() { System.out.println(\"hot\"); } },\n" +
+            "    EARTH(3) {\n" +
+            "        public void run() { System.out.println(\"home\"); }\n" +
+            "    };\n" +
+            "    private final int order;\n" +
+            "    Planet(int order) { this.order = order; }\n" +
+            "    public void run() {}\n" +
+            "}\n" +
+            "record Point(int x, int y) {\n" +
+            "    Point { if (x < 0) throw new IllegalArgumentException(); }\n" +
+            "    static Point origin() { return new Point(0, 0); }\n" +
+            "}\n" +
+            "interface Shape {\n" +
+            "    double area();\n" +
+            "    default String describe() { return \"area \" + area(); }\n" +
+            "    private void helper() { }\n" +
+            "}\n" +
+            "class Holder<T> {\n" +
+            "    static final int[] PRIMES = {2, 3, 5};\n" +
+            "    static final Runnable TASK = () -> { System.out.println(\"task\"); };\n" +
+            "    static final Comparator<String> ORDER = new Comparator<>() {\n" +
+            "        @Override\n" +
+            "        public int compare(String a, String b) { return a.compareTo(b); }\n" +
+            "    };\n" +
+            "    private final Map<String, List<T>> map = new HashMap<>();\n" +
+            "    static { System.out.println(\"loading\"); }\n" +
+            "    { map.clear(); }\n" +
+            "    @SuppressWarnings({\"unchecked\", \"rawtypes\"})\n" +
+            "    <U> Holder(U seed) throws Exception { super(); }\n" +
+            "    @Deprecated(since = \"1\") public synchronized <R extends Comparable<R>> R record(R record) {\n" +
+            "        Runnable r = new Runnable() { public void run() {} };\n" +
+            "        return record;\n" +
+            "    }\n" +
+            "    // trailing comment\n" +
+            "    class Inner extends Holder<String> { Inner() { super(\"x\"); } void go() { } }\n" +
+            "}\n";
+
+    // Constructs found in everyday sources, each compared separately so a mismatch names its snippet
+    private static final List<String> SNIPPETS = List.of(
+            "public class Service {\n" +
+            "    private static final Logger logger = LoggerFactory.getLogger(Service.class);\n" +
+            "    /**\n" +
+            "     * Runs it.\n" +
+            "     * @return the count.\n" +
+            "     */\n" +
+            "    public int run(List<String> args) throws IOException {\n" +
+            "        for (String arg : args) {\n" +
+            "            logger.info(\"{}\", arg);\n" +
+            "        }\n" +
+            "        return args.size();\n" +
+            "    }\n" +
+            "}\n",
+            "final class Text {\n" +
+            "    static final String BRACES = \"{ not a body }\";\n" +
+            "    static final char BRACE = '{';\n" +
+            "    String label(int kind) {\n" +
+            "        return switch (kind) {\n" +
+            "            case 1 -> \"one }\";\n" +
+            "            default -> { yield \"many\"; }\n" +
+            "        };\n" +
+            "    }\n" +
+            "}\n",
+            "sealed interface Node permits Leaf, Branch {\n" +
+            "    int size();\n" +
+            "    static Node of(Object value) {\n" +
+            "        if (value instanceof Node node) { return node; }\n" +
+            "        return new Leaf();\n" +
+            "    }\n" +
+            "}\n" +
+            "final class Leaf implements Node { public int size() { return 1; } }\n" +
+            "non-sealed class Branch implements Node {\n" +
+            "    /* a block comment { with a brace */\n" +
+            "    public int size() { return 2; } // trailing }\n" +
+            "}\n",
+            "class Visitor extends SimpleFileVisitor<Path> {\n" +
+            "    private final Deque<Future<ProjectFile>> pending = new ArrayDeque<>();\n" +
+            "    @Override\n" +
+            "    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)\n" +
+            "            throws IOException {\n" +
+            "        pending.removeIf(f -> { return f.isDone(); });\n" +
+            "        return FileVisitResult.CONTINUE;\n" +
+            "    }\n" +
+            "    private static <T extends Comparable<? super T>> T max(T a, T b) { return a.compareTo(b) >= 0 ? a : b; }\n" +
+            "}\n");
+
+    private final JavaLanguageAnalyzer parser = new JavaLanguageAnalyzer();
+    private final FastJavaLanguageAnalyzer lexer = new FastJavaLanguageAnalyzer();
+
+    @Test
+    void testMatchesParserOnTrickyDeclarations() {
+        assertSameSkeletons("Tricky.java", TRICKY);
+    }
+
+    @Test
+    void testMatchesParserOnEverydaySources() {
+        for (int i = 0; i < SNIPPETS.size(); i++) {
+            assertFalse(parser.analyze(SNIPPETS.get(i)).hasErrors(), "Snippet " + i + " must be valid Java");
+            assertSameSkeletons("Snippet" + i + ".java", SNIPPETS.get(i));
+        }
+    }
+
+    @Test
+    void testReportsLexerErrors() {
+        AnalysisResult result = lexer.analyze("class A { String s = \"unterminated; }");
+
+        assertTrue(result.hasErrors());
+        assertTrue(result.errors().get(0).startsWith("Lexer error"), result.errors().get(0));
+    }
+
+    private void assertSameSkeletons(String name, String source) {
+        List<String> mismatches = new ArrayList<>();
+        for (SkeletonLevel level : SkeletonLevel.values()) {
+            if (level == SkeletonLevel.PUBLIC_API) {
+                // Delegated to the parser
+                continue;
+            }
+            AnalysisResult expected = parser.analyze(source, level);
+            if (expected.hasErrors()) {
+                return;
+            }
+            AnalysisResult actual = lexer.analyze(source, level);
+            assertFalse(actual.hasErrors(), name + ": " + actual.errors());
+            if (!expected.skeleton().equals(actual.skeleton())) {
+                mismatches.add(level.name());
+            }
+        }
+        assertEquals(List.of(), mismatches, "Skeletons of " + name + " differ");
+    }
+}
@@ -1,6 +1,9 @@
 package org.roxycode.jsmashy.languages;
 
 import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class JavaLanguageAnalyzerTest {
@@ -99,4 +102,176 @@ class JavaLanguageAnalyzerTest {
         // System.out.println("DEBUG SKELETON:\n" + skeleton);
     }
 
-}
\ No newline at end of file
+    @Test
+    void testAnalyzerStartsCleanForEachFile() {
+        String invalid = "public class Broken { void m() { int x = ; } }";
+        String valid = "public class Fine { void m() { int x = 1; } }";
+
+        assertTrue(analyzer.analyze(invalid).hasErrors());
+        AnalysisResult result = analyzer.analyze(valid);
+        assertFalse(result.hasErrors(), "Errors must not leak between files: " + result.errors());
+        assertTrue(result.skeleton().startsWith("public class Fine"));
+
+        JavaLanguageAnalyzer.clearDFACache();
+        assertEquals(result, analyzer.analyze(valid));
+    }
+
+    @Test
+    void testAllSignaturesDropsBodiesAndComments() {
+        String sourceCode = "/** A greeter. */\n" +
+                "public class Greeter {\n" +
+                "    // the greeting\n" +
+                "    private String greeting = \"Hello\";\n" +
+                "    public Greeter() { greeting = \"Hi\"; }\n" +
+                "    /** Greets someone. */\n" +
+                "    public String greet(String name) { return greeting + name; }\n" +
+                "}";
+
+        AnalysisResult result = analyzer.analyze(sourceCode, SkeletonLevel.ALL_SIGNATURES);
+
+        assertFalse(result.hasErrors(), "Should not have errors: " + result.errors());
+        String skeleton = result.skeleton();
+        assertTrue(skeleton.contains("public String greet(String name);"), skeleton);
+        assertTrue(skeleton.contains("public Greeter() {}"), skeleton);
+        assertTrue(skeleton.contains("private String greeting"), skeleton);
+        assertFalse(skeleton.contains("Greets someone"), skeleton);
+        assertFalse(skeleton.contains("the greeting"), skeleton);
+        assertTrue(skeleton.length() < analyzer.analyze(sourceCode).skeleton().length());
+    }
+
+    @Test
+    void testPublicApiKeepsOnlyVisibleDeclarations() {
+        String sourceCode = "package com.example;\n" +
+                "import java.util.List;\n" +
+                "/** A counter. */\n" +
+                "public class Counter {\n" +
+                "    public static final int LIMIT = 10;\n" +
+                "    public int count = 0;\n" +
+                "    /** Not part of the API. */\n" +
+                "    private List<String> log;\n" +
+                "    static { System.out.println(\"loaded\"); }\n" +
+                "    /** Adds one. */\n" +
+                "    public void increment() { count++; }\n" +
+                "    protected void reset() { count = 0; }\n" +
+                "    void helper() {}\n" +
+                "}\n" +
+                "class Hidden {}\n";
+
+        AnalysisResult result = analyzer.analyze(sourceCode, SkeletonLevel.PUBLIC_API);
+
+        assertFalse(result.hasErrors(), "Should not have errors: " + result.errors());
+        String skeleton = result.skeleton();
+        assertEquals("package com.example;\n" +
+                "/** A counter. */\n" +
+                "public class Counter {\n" +
+                "    public static final int LIMIT = 10;\n" +
+                "    public int count;\n" +
+                "    /** Adds one. */\n" +
+                "    public void increment()  { /* implementation omitted */ }\n" +
+                "    protected void reset()  { /* implementation omitted */ }\n" +
+                "}\n", skeleton);
+    }
+
+    @Test
+    void testBodiesUnderNLinesKeepsShortBodies() {
+        String sourceCode = "public class Box {\n" +
+                "    private int value;\n" +
+                "    public int get() { return value; }\n" +
+                "    public void compute() {\n" +
+                "        value = 1;\n" +
+                "        value += 2;\n" +
+                "        value *= 3;\n" +
+                "    }\n" +
+                "}";
+
+        String skeleton = new JavaLanguageAnalyzer(3).analyze(sourceCode, SkeletonLevel.BODIES_UNDER_N_LINES).skeleton();
+
+        assertTrue(skeleton.contains("public int get() { return value; }"), skeleton);
+        assertFalse(skeleton.contains("value *= 3"), skeleton);
+        assertTrue(skeleton.contains("/* implementation omitted */"), skeleton);
+        assertNotEquals(new JavaLanguageAnalyzer(3).version(SkeletonLevel.BODIES_UNDER_N_LINES),
+                analyzer.version(SkeletonLevel.BODIES_UNDER_N_LINES));
+    }
+
+    @Test
+    void testPartialSkeletonForFileWithErrors() {
+        String sourceCode = "public class Broken {\n" +
+                "    private int[] values = {1, 2};\n" +
+                "    public void ok() { System.out.println(\"fine\"); }\n" +
+                "    public void broken() { int x = ; }\n" +
+                "    static class Inner {\n" +
+                "        Inner() { super(); }\n" +
+                "    }\n" +
+                "}";
+
+        AnalysisResult result = analyzer.analyze(sourceCode);
+
+        assertTrue(result.hasErrors());
+        assertTrue(result.isPartial());
+        assertEquals("public class Broken {\n" +
+                "    private int[] values = {1, 2};\n" +
+                "    public void ok()  { /* implementation omitted */ }\n" +
+                "    public void broken()  { /* implementation omitted */ }\n" +
+                "    static class Inner {\n" +
+                "        Inner()  { /* implementation omitted */ }\n" +
+                "    }\n" +
+                "}", result.skeleton());
+    }
+
+    @Test
+    void testSymbolsAreCollectedInTheSameWalk() {
+        String sourceCode = "package org.example;\n" +
+                "\n" +
+                "import java.util.List;\n" +
+                "import static java.util.Map.entry;\n" +
+                "\n" +
+                "/** Docs. */\n" +
+                "@Deprecated\n" +
+                "public class Repo<T> extends Base<T> implements Comparable<Repo<T>>, java.io.Serializable {\n" +
+                "    private int a = 1, b;\n" +
+                "    public Repo(List<T> items) { this.a = items.size(); }\n" +
+                "    @Override\n" +
+                "    public   int compareTo(Repo<T> other)\n" +
+                "            throws IllegalStateException {\n" +
+                "        Runnable r = new Runnable() { public void run() {} };\n" +
+                "        class Local {}\n" +
+                "        return 0;\n" +
+                "    }\n" +
+                "    enum Mode { FAST, SLOW { void tune() {} } }\n" +
+                "    record Pair(String left, int... right) {}\n" +
+                "    interface Listener { void changed(String path); }\n" +
+                "}";
+
+        SourceSymbols symbols = analyzer.analyze(sourceCode).symbols();
+
+        assertNotNull(symbols);
+        assertEquals("org.example", symbols.packageName());
+        assertEquals(List.of("java.util.List", "static java.util.Map.entry"), symbols.imports());
+        assertEquals(List.of("org.example.Repo", "org.example.Repo.a", "org.example.Repo.b", "org.example.Repo.Repo",
+                        "org.example.Repo.compareTo", "org.example.Repo.Mode", "org.example.Repo.Mode.FAST", "org.example.Repo.Mode.SLOW",
+                        "org.example.Repo.Pair", "org.example.Repo.Pair.left", "org.example.Repo.Pair.right",
+                        "org.example.Repo.Listener", "org.example.Repo.Listener.changed"),
+                symbols.symbols().stream().map(Symbol::qualifiedName).toList());
+
+        Symbol type = symbols.symbols().get(0);
+        assertEquals(Symbol.Kind.CLASS, type.kind());
+        assertEquals("public class Repo<T> extends Base<T> implements Comparable<Repo<T>>, java.io.Serializable", type.signature());
+        assertEquals(List.of("Base", "Comparable", "java.io.Serializable"), type.supertypes());
+        assertEquals(7, type.startLine());
+        assertEquals(21, type.endLine());
+        assertEquals("private int b", symbols.symbols().get(2).signature());
+        assertEquals(Symbol.Kind.CONSTRUCTOR, symbols.symbols().get(3).kind());
+        Symbol method = symbols.symbols().get(4);
+        assertEquals("public int compareTo(Repo<T> other) throws IllegalStateException", method.signature());
+        assertEquals(11, method.startLine());
+        assertEquals(17, method.endLine());
+        assertEquals(Symbol.Kind.RECORD, symbols.symbols().get(8).kind());
+        assertEquals("int... right", symbols.symbols().get(10).signature());
+        assertEquals(Symbol.Kind.INTERFACE, symbols.symbols().get(11).kind());
+    }
+
+    @Test
+    void testNoSymbolsForFileWithErrors() {
+        assertNull(analyzer.analyze("public class Broken { void m() { int x = ; } }").symbols());
+    }
+}
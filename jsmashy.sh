@@ -1,8 +1,9 @@
 #!/bin/bash
 
-if [ "$#" -lt 2 ]; then
-    echo "Usage: ./jsmashy.sh <input-dir> <output-file>"
+if [ "$#" -lt 2 ] && [ "$1" != "--daemon" ] && [ "$1" != "--stop-daemon" ]; then
+    echo "Usage: ./jsmashy.sh [options] <input-dir> <output-file>"
+    echo "       ./jsmashy.sh --daemon|--stop-daemon [--socket <file>]"
     exit 1
 fi
 
-mvn exec:java -pl jsmashy-cli -Dexec.mainClass="org.roxycode.jsmashy.cli.Main" -Dexec.args="$1 $2"
+mvn exec:java -pl jsmashy-cli -Dexec.mainClass="org.roxycode.jsmashy.cli.Main" -Dexec.args="$*"
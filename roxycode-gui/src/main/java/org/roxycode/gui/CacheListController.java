@@ -19,10 +19,10 @@ import jakarta.inject.Inject;
 import java.util.Map;
 import java.util.List;
 import java.util.stream.Collectors;
-import org.roxycode.jsmashy.core.ProjectFile;
 import org.roxycode.jsmashy.core.RepositoryScanner;
 import org.roxycode.jsmashy.formatters.XmlSmashFormatter;
 import java.io.File;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -204,26 +204,22 @@ public class CacheListController {
         localStatusLabel.setText("Status: Scanning...");
         CompletableFuture.runAsync(() -> {
             try {
-                RepositoryScanner scanner = new RepositoryScanner();
-                List<ProjectFile> files = scanner.scan(selectedDirectory.toPath());
-                Platform.runLater(() -> localStatusLabel.setText("Status: Formatting..."));
+                RepositoryScanner scanner = projectService.createScanner(selectedDirectory.toPath());
                 XmlSmashFormatter formatter = new XmlSmashFormatter();
-                String xml = formatter.format(files);
-                // Save to roxy/cache/codebase_cache.xml
-                try {
-                    Path cacheDir = selectedDirectory.toPath().resolve(ProjectService.ROXY_DIR).resolve(ProjectService.CACHE_DIR);
-                    if (!Files.exists(cacheDir)) {
-                        Files.createDirectories(cacheDir);
-                    }
-                    Files.writeString(cacheDir.resolve(ProjectService.CACHE_FILE), xml);
-                } catch (Exception e) {
-                    System.err.println("Failed to save local cache: " + e.getMessage());
+                // Vendored copies and boilerplate are sent once
+                formatter.useDeduplication(XmlSmashFormatter.DEFAULT_MIN_DUPLICATE_CHARS);
+                // Stream to roxy/cache/codebase_cache.xml
+                Path cacheDir = selectedDirectory.toPath().resolve(ProjectService.ROXY_DIR).resolve(ProjectService.CACHE_DIR);
+                Path cacheFile = cacheDir.resolve(ProjectService.CACHE_FILE);
+                Files.createDirectories(cacheDir);
+                try (Writer writer = Files.newBufferedWriter(cacheFile)) {
+                    scanner.scanAndFormat(selectedDirectory.toPath(), formatter, writer);
                 }
                 // Refresh ProjectService metadata
                 projectService.refreshLocalCacheInfo();
                 // Token estimation check
                 int minTokens = geminiService.getPrefs().getInt(SettingsController.CACHE_MIN_TOKENS, SettingsController.DEFAULT_MIN_TOKENS);
-                int estimatedTokens = (int) (xml.length() / SettingsController.BYTES_PER_TOKEN);
+                int estimatedTokens = (int) (Files.size(cacheFile) / SettingsController.BYTES_PER_TOKEN);
                 if (estimatedTokens < minTokens) {
                     Platform.runLater(() -> {
                         localStatusLabel.setText("Status: Too Small");
@@ -232,7 +228,8 @@ public class CacheListController {
                 }
                 Platform.runLater(() -> localStatusLabel.setText("Status: Caching..."));
                 String model = geminiService.getPrefs().get(SettingsController.GEMINI_MODEL, SettingsController.DEFAULT_MODEL);
-                CachedContent cache = geminiService.createCodebaseCache(xml, selectedDirectory.getName());
+                // The upload API takes the document as a single string, so it is only read back here
+                CachedContent cache = geminiService.createCodebaseCache(Files.readString(cacheFile), selectedDirectory.getName());
                 String cacheName = cache.name().get();
                 projectService.setCurrentCacheModel(model);
                 projectService.setCurrentCacheName(cacheName);
@@ -13,10 +13,9 @@ import jakarta.inject.Inject;
 import java.io.File;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import org.roxycode.gui.events.*;
-import org.roxycode.jsmashy.core.RepositoryScanner;
-import org.roxycode.jsmashy.core.ProjectFile;
-import org.roxycode.jsmashy.formatters.XmlSmashFormatter;
+import org.roxycode.jsmashy.core.LiveIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,6 +57,9 @@ public class CodebaseChatController {
     @FXML
     private Label historyLabel;
 
+    // A single instance, so indexing the same project again does not add another listener
+    private final Consumer<LiveIndex.Totals> statsListener = this::showCodebaseStats;
+
     @Inject
     private AgentService agentService;
 
@@ -275,22 +277,25 @@ public class CodebaseChatController {
     private void updateCodebaseStats(File directory) {
         CompletableFuture.runAsync(() -> {
             try {
-                RepositoryScanner scanner = new RepositoryScanner();
-                List<ProjectFile> files = scanner.scan(directory.toPath());
-                String xml = new XmlSmashFormatter().format(files);
-                long bytes = xml.length();
-                int tokens = (int) (bytes / SettingsController.BYTES_PER_TOKEN);
-                Platform.runLater(() -> {
-                    if (sizeLabel != null)
-                        sizeLabel.setText("Size: " + formatSize(bytes));
-                    if (tokenLabel != null)
-                        tokenLabel.setText("Tokens: " + String.format("%,d", tokens));
-                });
-            } catch (Exception ignored) {
+                // The index follows the project's changes, so the stats stay current without rescans
+                LiveIndex index = projectService.watchProject(directory.toPath());
+                index.addListener(statsListener);
+                showCodebaseStats(index.getTotals());
+            } catch (Exception e) {
+                LOG.warn("Failed to index {}: {}", directory, e.getMessage());
             }
         });
     }
 
+    private void showCodebaseStats(LiveIndex.Totals totals) {
+        Platform.runLater(() -> {
+            if (sizeLabel != null)
+                sizeLabel.setText("Size: " + formatSize(totals.chars()));
+            if (tokenLabel != null)
+                tokenLabel.setText("Tokens: " + String.format("%,d", totals.tokens()));
+        });
+    }
+
     private String formatSize(long bytes) {
         if (bytes < 1024)
             return bytes + " B";
@@ -8,16 +8,24 @@ import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.roxycode.jsmashy.core.ContentMode;
+import org.roxycode.jsmashy.core.LiveIndex;
+import org.roxycode.jsmashy.core.RepositoryScanner;
+import org.roxycode.jsmashy.core.ScanOptions;
+import org.roxycode.jsmashy.core.SkeletonCache;
+import org.roxycode.jsmashy.core.SymbolIndex;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.prefs.Preferences;
 
 /**
@@ -40,6 +48,10 @@ public class ProjectService {
 
     public static final String CACHE_FILE = "codebase_cache.xml";
 
+    public static final String MANIFEST_FILE = "scan_manifest.bin";
+
+    public static final String SYMBOL_INDEX_FILE = "symbol_index.bin";
+
     private final StringProperty projectPath = new SimpleStringProperty();
 
     private final Preferences prefs;
@@ -71,6 +83,14 @@ public class ProjectService {
 
     private final StringProperty currentCacheModel = new SimpleStringProperty();
 
+    private LiveIndex liveIndex;
+
+    private SymbolIndex symbolIndex;
+
+    private Path symbolIndexPath;
+
+    private FileTime symbolIndexTime;
+
     @Inject
     public ProjectService(Preferences prefs) {
         this.prefs = prefs;
@@ -167,6 +187,78 @@ public class ProjectService {
         }
     }
 
+    /**
+     * Creates a repository scanner configured from the scan preferences.
+     * Scans are incremental, keeping their manifest and symbol index under the project's cache directory,
+     * which they skip, and share the user-wide skeleton cache with the jsmashy CLI.
+     * @param projectDir the project root that will be scanned
+     * @return a new scanner
+     */
+    public RepositoryScanner createScanner(Path projectDir) {
+        ScanOptions options = new ScanOptions();
+        options.setParallelism(Math.max(0, prefs.getInt(SettingsController.SCAN_PARALLELISM, SettingsController.DEFAULT_SCAN_PARALLELISM)));
+        options.setTokenBudget(Math.max(0, prefs.getLong(SettingsController.CACHE_MAX_TOKENS, SettingsController.DEFAULT_MAX_TOKENS)));
+        options.setCharsPerToken(SettingsController.BYTES_PER_TOKEN);
+        options.setManifestFile(projectDir.resolve(ROXY_DIR).resolve(CACHE_DIR).resolve(MANIFEST_FILE));
+        options.setSymbolIndexFile(projectDir.resolve(ROXY_DIR).resolve(CACHE_DIR).resolve(SYMBOL_INDEX_FILE));
+        // The cached codebase is written there while the scan runs
+        options.addExcludedPath(projectDir.resolve(ROXY_DIR).resolve(CACHE_DIR));
+        options.setSkeletonCache(SkeletonCache.getDefault());
+        // Projects are usually git work trees; the index spares walking ignored build output
+        options.setGitIndex(true);
+        // Scan results are streamed to a file right away, so raw files are re-read instead of held
+        options.setContentMode(ContentMode.LAZY);
+        return new RepositoryScanner(options);
+    }
+
+    /**
+     * Returns the live index of a project, scanning it first unless it is already indexed.
+     * The index of the previously watched project is closed.
+     * @param projectDir the project root
+     * @return the started index
+     * @throws IOException if the initial scan fails
+     */
+    public synchronized LiveIndex watchProject(Path projectDir) throws IOException {
+        Path root = projectDir.toAbsolutePath().normalize();
+        if (liveIndex != null && liveIndex.getRootDir().equals(root)) {
+            return liveIndex;
+        }
+        if (liveIndex != null) {
+            liveIndex.close();
+            liveIndex = null;
+        }
+        LiveIndex index = createScanner(root).watch(root);
+        index.start();
+        liveIndex = index;
+        return index;
+    }
+
+    /**
+     * Returns the symbol index written by the last scan of the current project, for lookups such as
+     * {@code findDeclarations("ProjectService")} or {@code findSubtypes("Runnable")}.
+     * The index is read again only when a newer scan has rewritten it.
+     * @return the index, empty if the project has not been scanned, or null if no project is open
+     */
+    public synchronized SymbolIndex getSymbolIndex() {
+        String pathStr = getProjectPath();
+        if (pathStr == null) {
+            return null;
+        }
+        Path indexPath = Paths.get(pathStr, ROXY_DIR, CACHE_DIR, SYMBOL_INDEX_FILE);
+        FileTime time = null;
+        try {
+            time = Files.getLastModifiedTime(indexPath);
+        } catch (IOException e) {
+            // Not scanned yet
+        }
+        if (symbolIndex == null || !indexPath.equals(symbolIndexPath) || !Objects.equals(time, symbolIndexTime)) {
+            symbolIndex = SymbolIndex.load(indexPath);
+            symbolIndexPath = indexPath;
+            symbolIndexTime = time;
+        }
+        return symbolIndex;
+    }
+
     private void safeSetProperty(StringProperty prop, String value) {
         try {
             if (Platform.isFxApplicationThread()) {
@@ -23,6 +23,7 @@ public class SettingsController {
     public static final String GEMINI_API_KEY = "gemini_api_key";
     public static final String GEMINI_MODEL = "gemini_model";
     public static final String CACHE_MIN_TOKENS = "cache_min_tokens";
+    public static final String CACHE_MAX_TOKENS = "cache_max_tokens";
     public static final String CACHE_TTL_MINUTES = "cache_ttl_minutes";
     public static final String CONVERSATION_MAX_TURNS = "conversation_max_turns";
     public static final String THOUGHTS_VISIBILITY = "thoughts_visibility";
@@ -30,10 +31,13 @@ public class SettingsController {
     public static final String THOUGHTS_SHOW_COLLAPSED = "COLLAPSED";
     public static final String THOUGHTS_SHOW_FULL = "FULL";
     public static final String CAPTURE_TRANSCRIPTS = "capture_transcripts";
+    public static final String SCAN_PARALLELISM = "scan_parallelism";
 
     public static final int DEFAULT_MIN_TOKENS = 4096;
+    public static final long DEFAULT_MAX_TOKENS = 0;
     public static final int DEFAULT_TTL_MINUTES = 30;
     public static final int DEFAULT_MAX_TURNS = 5;
+    public static final int DEFAULT_SCAN_PARALLELISM = 0;
     public static final double BYTES_PER_TOKEN = 2.7;
     public static final String DEFAULT_MODEL = "models/gemini-2.5-flash";
 
@@ -63,12 +67,18 @@ public class SettingsController {
     @FXML
     private TextField minTokensField;
 
+    @FXML
+    private TextField maxTokensField;
+
     @FXML
     private TextField ttlMinutesField;
 
     @FXML
     private TextField maxTurnsField;
 
+    @FXML
+    private TextField scanParallelismField;
+
     @FXML
     private ComboBox<String> thoughtsComboBox;
 
@@ -81,8 +91,10 @@ public class SettingsController {
     public void initialize() {
         apiKeyField.setText(prefs.get(GEMINI_API_KEY, ""));
         minTokensField.setText(String.valueOf(prefs.getInt(CACHE_MIN_TOKENS, DEFAULT_MIN_TOKENS)));
+        maxTokensField.setText(String.valueOf(prefs.getLong(CACHE_MAX_TOKENS, DEFAULT_MAX_TOKENS)));
         ttlMinutesField.setText(String.valueOf(prefs.getInt(CACHE_TTL_MINUTES, DEFAULT_TTL_MINUTES)));
         maxTurnsField.setText(String.valueOf(prefs.getInt(CONVERSATION_MAX_TURNS, DEFAULT_MAX_TURNS)));
+        scanParallelismField.setText(String.valueOf(prefs.getInt(SCAN_PARALLELISM, DEFAULT_SCAN_PARALLELISM)));
         thoughtsComboBox.getItems().addAll(THOUGHTS_DONT_SHOW, THOUGHTS_SHOW_COLLAPSED, THOUGHTS_SHOW_FULL);
         String currentVisibility = prefs.get(THOUGHTS_VISIBILITY, THOUGHTS_SHOW_COLLAPSED);
         // Migration logic
@@ -144,15 +156,19 @@ public class SettingsController {
         prefs.put(GEMINI_API_KEY, newKey);
         try {
             prefs.putInt(CACHE_MIN_TOKENS, Integer.parseInt(minTokensField.getText()));
+            prefs.putLong(CACHE_MAX_TOKENS, Math.max(0, Long.parseLong(maxTokensField.getText())));
             prefs.putInt(CACHE_TTL_MINUTES, Integer.parseInt(ttlMinutesField.getText()));
             prefs.putInt(CONVERSATION_MAX_TURNS, Integer.parseInt(maxTurnsField.getText()));
+            prefs.putInt(SCAN_PARALLELISM, Math.max(0, Integer.parseInt(scanParallelismField.getText())));
             prefs.put(THOUGHTS_VISIBILITY, thoughtsComboBox.getValue());
             prefs.putBoolean(CAPTURE_TRANSCRIPTS, captureTranscriptsCheckBox.isSelected());
         } catch (NumberFormatException e) {
             // Use defaults if invalid
             prefs.putInt(CACHE_MIN_TOKENS, DEFAULT_MIN_TOKENS);
+            prefs.putLong(CACHE_MAX_TOKENS, DEFAULT_MAX_TOKENS);
             prefs.putInt(CACHE_TTL_MINUTES, DEFAULT_TTL_MINUTES);
             prefs.putInt(CONVERSATION_MAX_TURNS, DEFAULT_MAX_TURNS);
+            prefs.putInt(SCAN_PARALLELISM, DEFAULT_SCAN_PARALLELISM);
         }
         GeminiModel selected = modelComboBox.getValue();
         String newModel = oldModel;